@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.jst.server.core;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
@@ -54,8 +55,36 @@ public abstract class RuntimeClasspathProviderDelegate {
 		IClasspathAttribute[] attributes;
 	}
 
+	/**
+	 * The jar files found in a directory, along with the time stamps of
+	 * the directories that were searched.
+	 */
+	private static class JarFiles {
+		File[] dirs;
+		long[] lastModified;
+		IClasspathEntry[] entries;
+
+		protected boolean isValid() {
+			int size = dirs.length;
+			for (int i = 0; i < size; i++) {
+				if (dirs[i].lastModified() != lastModified[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	// time stamps can have a granularity of up to 2 seconds on some file systems
+	private static final long TIMESTAMP_GRANULARITY = 2000;
+
+	// directory path and depth -> jar files, entries are immutable and replaced when stale
+	private static final Map<String, JarFiles> jarFileCache = new ConcurrentHashMap<String, JarFiles>();
+
 	private volatile List<SourceAttachmentUpdate> sourceAttachments;
 
+	// runtime id -> entry path -> source attachment, rebuilt whenever sourceAttachments changes
+	private volatile Map<String, Map<IPath, SourceAttachmentUpdate>> sourceAttachmentMap;
+
 	private String extensionId;
 
 	private Map<String, IPath> runtimePathMap = Collections.synchronizedMap(new HashMap<String, IPath>());
@@ -141,18 +170,17 @@ public abstract class RuntimeClasspathProviderDelegate {
 			if (sourceAttachments == null)
 				load();
 		}
-		List<SourceAttachmentUpdate> srcAttachments = sourceAttachments;
+		Map<String, Map<IPath, SourceAttachmentUpdate>> srcAttachmentMap = sourceAttachmentMap;
 
-		if (srcAttachments != null) {
-			int size = entries.length;
-			int size2 = srcAttachments.size();
-			for (int i = 0; i < size; i++) {
-				for (int j = 0; j < size2; j++) {
-					SourceAttachmentUpdate sau = srcAttachments.get(j);
-					if (sau.runtimeId.equals(runtime.getId()) && sau.entry.equals(entries[i].getPath())) {
+		if (srcAttachmentMap != null) {
+			Map<IPath, SourceAttachmentUpdate> runtimeAttachments = srcAttachmentMap.get(runtime.getId());
+			if (runtimeAttachments != null) {
+				int size = entries.length;
+				for (int i = 0; i < size; i++) {
+					SourceAttachmentUpdate sau = runtimeAttachments.get(entries[i].getPath());
+					if (sau != null) {
 						IClasspathAttribute[] consolidatedClasspathAttributes = consolidateClasspathAttributes(sau.attributes, entries[i].getExtraAttributes());
 						entries[i] = JavaCore.newLibraryEntry(entries[i].getPath(), sau.sourceAttachmentPath, sau.sourceAttachmentRootPath, entries[i].getAccessRules(), consolidatedClasspathAttributes, false);
-						break;
 					}
 				}
 			}
@@ -218,11 +246,52 @@ public abstract class RuntimeClasspathProviderDelegate {
 		if (dir == null)
 			throw new IllegalArgumentException();
 		
+		String key = dir.getAbsolutePath() + File.pathSeparator + depth;
+		JarFiles jarFiles = jarFileCache.get(key);
+		if (jarFiles == null || !jarFiles.isValid()) {
+			jarFiles = findJarFiles(dir, depth);
+			
+			// don't cache if a directory may change again without its time stamp changing
+			boolean cache = true;
+			long time = System.currentTimeMillis() - TIMESTAMP_GRANULARITY;
+			for (long lastModified : jarFiles.lastModified) {
+				if (lastModified > time)
+					cache = false;
+			}
+			if (cache)
+				jarFileCache.put(key, jarFiles);
+			else
+				jarFileCache.remove(key);
+		}
+		
+		for (IClasspathEntry entry : jarFiles.entries)
+			list.add(entry);
+	}
+
+	private static JarFiles findJarFiles(File dir, int depth) {
+		List<File> dirs = new ArrayList<File>();
+		List<IClasspathEntry> entries = new ArrayList<IClasspathEntry>();
+		findJarFiles(dir, dirs, entries, depth);
+		
+		JarFiles jarFiles = new JarFiles();
+		int size = dirs.size();
+		jarFiles.dirs = dirs.toArray(new File[size]);
+		jarFiles.lastModified = new long[size];
+		// time stamps are taken after the search, so a directory changed during
+		// the search is not cached as unchanged
+		for (int i = 0; i < size; i++)
+			jarFiles.lastModified[i] = jarFiles.dirs[i].lastModified();
+		jarFiles.entries = entries.toArray(new IClasspathEntry[entries.size()]);
+		return jarFiles;
+	}
+
+	private static void findJarFiles(File dir, List<File> dirs, List<IClasspathEntry> list, int depth) {
+		dirs.add(dir);
 		File[] files = dir.listFiles();
 		if (files != null) {
 			for (File file : files) {
 				if (file.isDirectory() && depth > 0) {
-					addJarFiles(file, list, depth - 1);
+					findJarFiles(file, dirs, list, depth - 1);
 				} else if (file.getAbsolutePath().endsWith(".jar") || file.getAbsolutePath().endsWith(".zip")) {
 					IPath path = new Path(file.getAbsolutePath());
 					list.add(JavaCore.newLibraryEntry(path, null, null));
@@ -272,10 +341,28 @@ public abstract class RuntimeClasspathProviderDelegate {
 				srcAttachments.add(sau);
 			}
 		}
-		sourceAttachments = srcAttachments;
+		setSourceAttachments(srcAttachments);
 		save();
 	}
 
+	private void setSourceAttachments(List<SourceAttachmentUpdate> srcAttachments) {
+		Map<String, Map<IPath, SourceAttachmentUpdate>> map = new HashMap<String, Map<IPath, SourceAttachmentUpdate>>();
+		for (SourceAttachmentUpdate sau : srcAttachments) {
+			if (sau.runtimeId == null || sau.entry == null)
+				continue;
+			Map<IPath, SourceAttachmentUpdate> runtimeAttachments = map.get(sau.runtimeId);
+			if (runtimeAttachments == null) {
+				runtimeAttachments = new HashMap<IPath, SourceAttachmentUpdate>();
+				map.put(sau.runtimeId, runtimeAttachments);
+			}
+			// the first attachment for an entry wins
+			if (!runtimeAttachments.containsKey(sau.entry))
+				runtimeAttachments.put(sau.entry, sau);
+		}
+		sourceAttachmentMap = map;
+		sourceAttachments = srcAttachments;
+	}
+
 	/**
 	 * Load source attachment info.
 	 */
@@ -326,7 +413,7 @@ public abstract class RuntimeClasspathProviderDelegate {
 				Trace.trace(Trace.STRING_WARNING, "Could not load source path info", e);
 			}
 		}
-		sourceAttachments = srcAttachments;
+		setSourceAttachments(srcAttachments);
 	}
 
 	/**
@@ -1,55 +1,120 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2008 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     IBM Corporation - Initial API and implementation
  *******************************************************************************/
 package org.eclipse.jst.server.core.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jst.server.core.IEnterpriseApplication;
 import org.eclipse.jst.server.core.IJ2EEModule;
 import org.eclipse.jst.server.core.IWebModule;
 import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.IModuleType;
 import org.eclipse.wst.server.core.ServerUtil;
+import org.eclipse.wst.server.core.internal.ModuleFactory;
+import org.eclipse.wst.server.core.internal.ProjectModuleCache;
+import org.eclipse.wst.server.core.internal.ServerPlugin;
+import org.eclipse.wst.server.core.model.ModuleDelegate;
+import org.eclipse.wst.server.core.util.ProjectModuleFactoryDelegate;
 /**
  * Utility class for dealing with J2EE modules.
+ * <p>
+ * The enterprise applications and web modules that contain each module are
+ * kept in an index. The index is built the first time it is needed, and
+ * afterwards only the projects whose modules may have changed are indexed
+ * again. If the modules in a project are added or removed, or a module
+ * factory reports that its modules have changed, the whole index is rebuilt.
+ * </p>
+ * <p>
+ * Only modules from project module factories are kept in the index, since
+ * other factories have no way to tell us when their modules change. Projects
+ * with modules from other factories, and modules that are not in a project,
+ * are indexed again on every call.
+ * </p>
  */
 public class J2EEUtil {
 	private static final String EAR_MODULE = "jst.ear";
 	private static final String WEB_MODULE = "jst.web";
 
 	private static final IModule[] EMPTY_LIST = new IModule[0];
-	private static Map<IModule, List<IModule>> earCache;
-	private static Map<IJ2EEModule, List<IModule>> earCache2;
-	private static Map<IModule, List<IModule>> webCache;
-	protected static String cache;
+
+	/**
+	 * The enterprise applications and web modules in a project, and the
+	 * modules that they contain.
+	 */
+	private static class ProjectEntry {
+		IModule[] modules;
+		boolean cached;
+		List<IModule> ears = new ArrayList<IModule>(2);
+		List<IModule[]> earChildren = new ArrayList<IModule[]>(2);
+		// the module of each child's IJ2EEModule delegate; delegates are recreated
+		// whenever a factory clears its cache, but modules are equal by id
+		List<IModule[]> earChildModules = new ArrayList<IModule[]>(2);
+		List<IModule> webs = new ArrayList<IModule>(2);
+		List<IModule[]> webChildren = new ArrayList<IModule[]>(2);
+	}
+
+	/**
+	 * Reverse lookup maps, built from the project entries.
+	 */
+	private static class ReverseIndex {
+		Map<IModule, List<IModule>> earCache = new HashMap<IModule, List<IModule>>();
+		Map<IModule, List<IModule>> earCache2 = new HashMap<IModule, List<IModule>>();
+		Map<IModule, List<IModule>> webCache = new HashMap<IModule, List<IModule>>();
+	}
+
+	// guards the fields below; never held while calling into module factories or adapters
+	private static final Object lock = new Object();
+
+	// serializes index updates
+	private static final Object updateLock = new Object();
+
+	// project -> entry; the null key holds modules that are not in a project
+	private static Map<IProject, ProjectEntry> projects;
+	private static ReverseIndex reverseIndex;
+	private static Set<IProject> dirtyProjects = new HashSet<IProject>();
+	private static boolean rebuildAll = true;
+
+	private static ProjectModuleCache.IModuleChangeListener listener;
 
 	/**
 	 * Returns the enterprise applications that the module is contained within.
-	 * 
+	 *
 	 * @param module a J2EE module
 	 * @param monitor a progress monitor, or <code>null</code> if progress
 	 *    reporting and cancellation are not desired
 	 * @return a possibly empty array of enterprise applications
 	 */
 	public static IModule[] getEnterpriseApplications(IJ2EEModule module, IProgressMonitor monitor) {
-		if (shouldUseCache()) {
-			List<IModule> list = earCache2.get(module);
-			if (list == null)
-				return EMPTY_LIST;
-			return list.toArray(new IModule[list.size()]); 
-		}
-		
+		IModule key = null;
+		if (module instanceof ModuleDelegate)
+			key = ((ModuleDelegate) module).getModule();
+		if (key == null)
+			return findEnterpriseApplications(module, monitor);
+		return toArray(getReverseIndex(monitor).earCache2.get(key));
+	}
+
+	/**
+	 * Searches all enterprise applications for the given J2EE module. Used
+	 * for modules that are not module delegates, and so can't be indexed.
+	 */
+	private static IModule[] findEnterpriseApplications(IJ2EEModule module, IProgressMonitor monitor) {
 		List<IModule> list = new ArrayList<IModule>();
 		IModule[] modules = ServerUtil.getModules(EAR_MODULE);
 		if (modules != null) {
@@ -66,149 +131,324 @@ public class J2EEUtil {
 				}
 			}
 		}
-		
 		return list.toArray(new IModule[list.size()]);
 	}
 
 	/**
 	 * Returns the enterprise applications that the module is contained within.
-	 * 
+	 *
 	 * @param module a J2EE module or utility module
 	 * @param monitor a progress monitor, or <code>null</code> if progress
 	 *    reporting and cancellation are not desired
 	 * @return a possibly empty array of enterprise applications
 	 */
 	public static IModule[] getEnterpriseApplications(IModule module, IProgressMonitor monitor) {
-		if (shouldUseCache()) {
-			List<IModule> list = earCache.get(module);
-			if (list == null)
-				return EMPTY_LIST;
-			return list.toArray(new IModule[list.size()]); 
-		}
-		
-		List<IModule> list = new ArrayList<IModule>();
-		IModule[] modules = ServerUtil.getModules(EAR_MODULE);
-		if (modules != null) {
-			for (IModule module2 : modules) {
-				IEnterpriseApplication ear = (IEnterpriseApplication) module2.loadAdapter(IEnterpriseApplication.class, monitor);
-				if (ear != null) {
-					IModule[] modules2 = ear.getModules();
-					if (modules2 != null) {
-						for (IModule m : modules2) {
-							if (module.equals(m))
-								list.add(module2);
-						}
-					}
-				}
-			}
-		}
-		
-		return list.toArray(new IModule[list.size()]);
+		return toArray(getReverseIndex(monitor).earCache.get(module));
 	}
 
 	/**
 	 * Returns the web modules that the utility module is contained within.
-	 * 
+	 *
 	 * @param module a utility module
 	 * @param monitor a progress monitor, or <code>null</code> if progress
 	 *    reporting and cancellation are not desired
 	 * @return a possibly empty array of web modules
 	 */
 	public static IModule[] getWebModules(IModule module, IProgressMonitor monitor) {
-		if (shouldUseCache()) {
-			List<IModule> list = webCache.get(module);
-			if (list == null)
-				return EMPTY_LIST;
-			return list.toArray(new IModule[list.size()]);
+		return toArray(getReverseIndex(monitor).webCache.get(module));
+	}
+
+	private static IModule[] toArray(List<IModule> list) {
+		if (list == null)
+			return EMPTY_LIST;
+		return list.toArray(new IModule[list.size()]);
+	}
+
+	/**
+	 * Removes the module change listener and discards the index.
+	 */
+	protected static void shutdown() {
+		synchronized (lock) {
+			if (listener != null) {
+				ProjectModuleCache.removeModuleChangeListener(listener);
+				listener = null;
+			}
+			projects = null;
+			reverseIndex = null;
+			dirtyProjects.clear();
+			rebuildAll = true;
 		}
-		
-		List<IModule> list = new ArrayList<IModule>();
-		IModule[] modules = ServerUtil.getModules(WEB_MODULE);
-		if (modules != null) {
-			for (IModule module2 : modules) {
-				IWebModule web = (IWebModule) module2.loadAdapter(IWebModule.class, monitor);
-				if (web != null) {
-					IModule[] modules2 = web.getModules();
-					if (modules2 != null) {
-						for (IModule m : modules2) {
-							if (module.equals(m))
-								list.add(module2);
+	}
+
+	private static void addListener() {
+		synchronized (lock) {
+			if (listener != null)
+				return;
+
+			listener = new ProjectModuleCache.IModuleChangeListener() {
+				public void modulesChanged(IProject project) {
+					synchronized (lock) {
+						if (project == null)
+							rebuildAll = true;
+						else
+							dirtyProjects.add(project);
+						reverseIndex = null;
+					}
+				}
+			};
+			ProjectModuleCache.addModuleChangeListener(listener);
+		}
+	}
+
+	/**
+	 * Returns the reverse index, updating the index first if necessary.
+	 */
+	private static ReverseIndex getReverseIndex(IProgressMonitor monitor) {
+		synchronized (lock) {
+			if (reverseIndex != null)
+				return reverseIndex;
+		}
+
+		addListener();
+		synchronized (updateLock) {
+			for (int attempt = 0; ; attempt++) {
+				boolean full;
+				Set<IProject> dirty;
+				Map<IProject, ProjectEntry> current;
+				synchronized (lock) {
+					if (reverseIndex != null)
+						return reverseIndex;
+
+					full = rebuildAll || projects == null;
+					rebuildAll = false;
+					dirty = new HashSet<IProject>(dirtyProjects);
+					dirtyProjects.clear();
+					current = projects;
+				}
+
+				Map<IProject, ProjectEntry> updated;
+				if (full)
+					updated = buildIndex(monitor);
+				else {
+					updated = updateIndex(current, dirty, monitor);
+					if (updated == null) {
+						if (Trace.FINEST) {
+							Trace.trace(Trace.STRING_FINEST, "Modules added or removed, rebuilding J2EE module index");
 						}
+						updated = buildIndex(monitor);
+					}
+				}
+				ReverseIndex index = buildReverseIndex(updated);
+
+				// entries that can change without notice are indexed again next time
+				if (!isCached(updated)) {
+					synchronized (lock) {
+						projects = updated;
 					}
+					return index;
 				}
+
+				synchronized (lock) {
+					projects = updated;
+					if (!rebuildAll && dirtyProjects.isEmpty()) {
+						reverseIndex = index;
+						return index;
+					}
+				}
+				// something changed during the update; go around again, or leave
+				// the changes for the next call if modules keep changing
+				if (attempt >= 2)
+					return index;
 			}
 		}
-		
-		return list.toArray(new IModule[list.size()]);
 	}
 
-	private static void fillCache(IProgressMonitor monitor) {
-		earCache = new HashMap<IModule, List<IModule>>();
-		earCache2 = new HashMap<IJ2EEModule, List<IModule>>();
-		webCache = new HashMap<IModule, List<IModule>>();
-		
-		IModule[] modules = ServerUtil.getModules(EAR_MODULE);
-		if (modules != null) {
-			for (IModule module2 : modules) {
-				IEnterpriseApplication ear = (IEnterpriseApplication) module2.loadAdapter(IEnterpriseApplication.class, monitor);
+	/**
+	 * Indexes every project in the workspace.
+	 */
+	private static Map<IProject, ProjectEntry> buildIndex(IProgressMonitor monitor) {
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Building J2EE module index");
+		}
+		Map<IProject, ProjectEntry> map = new HashMap<IProject, ProjectEntry>();
+		IProject[] projects2 = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+		for (IProject project : projects2)
+			map.put(project, createProjectEntry(project, ServerUtil.getModules(project), monitor));
+
+		map.put(null, createEntryWithoutProject(monitor));
+		return map;
+	}
+
+	/**
+	 * Indexes the modules of a project. The entry is only kept if the modules
+	 * came from the project module cache, i.e. from project module factories.
+	 */
+	private static ProjectEntry createProjectEntry(IProject project, IModule[] modules, IProgressMonitor monitor) {
+		ProjectEntry entry = createEntry(modules, monitor);
+		entry.cached = ProjectModuleCache.get(project) != null;
+		return entry;
+	}
+
+	/**
+	 * Indexes the enterprise applications and web modules that are not in a
+	 * project. Project module factories only create modules in projects, so
+	 * only other factories are asked, and the entry is only kept if there are
+	 * no such factories.
+	 */
+	private static ProjectEntry createEntryWithoutProject(IProgressMonitor monitor) {
+		List<IModule> list = new ArrayList<IModule>();
+		boolean cached = true;
+		ModuleFactory[] factories = ServerPlugin.getModuleFactories();
+		if (factories != null) {
+			for (ModuleFactory factory : factories) {
+				if (!hasType(factory.getModuleTypes(), EAR_MODULE) && !hasType(factory.getModuleTypes(), WEB_MODULE))
+					continue;
+				if (factory.getDelegate(monitor) instanceof ProjectModuleFactoryDelegate)
+					continue;
+
+				cached = false;
+				IModule[] modules = factory.getModules(monitor);
+				if (modules == null)
+					continue;
+				for (IModule module : modules) {
+					IModuleType type = module.getModuleType();
+					if (module.getProject() == null && type != null
+							&& (EAR_MODULE.equals(type.getId()) || WEB_MODULE.equals(type.getId())))
+						list.add(module);
+				}
+			}
+		}
+		ProjectEntry entry = createEntry(list.toArray(new IModule[list.size()]), monitor);
+		entry.cached = cached;
+		return entry;
+	}
+
+	private static boolean hasType(IModuleType[] types, String id) {
+		if (types == null)
+			return false;
+		for (IModuleType type : types) {
+			if (type != null && id.equals(type.getId()))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isCached(Map<IProject, ProjectEntry> map) {
+		for (ProjectEntry entry : map.values()) {
+			if (!entry.cached)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Indexes the given projects again, and returns the updated index, or
+	 * null if the modules in one of the projects were added or removed, since
+	 * that may change the contents of other projects' modules.
+	 */
+	private static Map<IProject, ProjectEntry> updateIndex(Map<IProject, ProjectEntry> current, Set<IProject> dirty, IProgressMonitor monitor) {
+		Map<IProject, ProjectEntry> map = new HashMap<IProject, ProjectEntry>(current);
+		for (Map.Entry<IProject, ProjectEntry> me : current.entrySet()) {
+			if (me.getKey() != null && !me.getValue().cached)
+				dirty.add(me.getKey());
+		}
+		ProjectEntry entry2 = current.get(null);
+		if (entry2 == null || !entry2.cached)
+			map.put(null, createEntryWithoutProject(monitor));
+
+		for (IProject project : dirty) {
+			ProjectEntry entry = current.get(project);
+			IModule[] modules = ServerUtil.getModules(project);
+			if (entry == null || !sameModules(entry.modules, modules))
+				return null;
+
+			if (Trace.FINEST) {
+				Trace.trace(Trace.STRING_FINEST, "Updating J2EE module index for " + project.getName());
+			}
+			map.put(project, createProjectEntry(project, modules, monitor));
+		}
+		return map;
+	}
+
+	private static boolean sameModules(IModule[] a, IModule[] b) {
+		if (a == null || b == null)
+			return a == b;
+		return new HashSet<IModule>(Arrays.asList(a)).equals(new HashSet<IModule>(Arrays.asList(b)));
+	}
+
+	/**
+	 * Finds the modules contained in the given enterprise applications and
+	 * web modules. Other modules are ignored.
+	 */
+	private static ProjectEntry createEntry(IModule[] modules, IProgressMonitor monitor) {
+		ProjectEntry entry = new ProjectEntry();
+		entry.modules = modules;
+		if (modules == null)
+			return entry;
+
+		for (IModule module : modules) {
+			String type = module.getModuleType() == null ? null : module.getModuleType().getId();
+			if (EAR_MODULE.equals(type)) {
+				IEnterpriseApplication ear = (IEnterpriseApplication) module.loadAdapter(IEnterpriseApplication.class, monitor);
 				if (ear != null) {
-					IModule[] modules2 = ear.getModules();
-					if (modules2 != null) {
-						for (IModule mm : modules2) {
-							List<IModule> m = earCache.get(mm);
-							if (m == null) {
-								m = new ArrayList<IModule>(2);
-								earCache.put(mm, m);
-							}
-							m.add(module2);
-							
-							IJ2EEModule mod = (IJ2EEModule) mm.loadAdapter(IJ2EEModule.class, monitor);
-							if (mod != null) {
-								m = earCache2.get(mod);
-								if (m == null) {
-									m = new ArrayList<IModule>(2);
-									earCache2.put(mod, m);
-								}
-								m.add(module2);
-							}
+					IModule[] children = ear.getModules();
+					if (children != null) {
+						IModule[] childModules = new IModule[children.length];
+						for (int i = 0; i < children.length; i++) {
+							Object j2eeModule = children[i].loadAdapter(IJ2EEModule.class, monitor);
+							if (j2eeModule instanceof ModuleDelegate)
+								childModules[i] = ((ModuleDelegate) j2eeModule).getModule();
 						}
+						entry.ears.add(module);
+						entry.earChildren.add(children);
+						entry.earChildModules.add(childModules);
 					}
 				}
-			}
-		}
-		
-		modules = ServerUtil.getModules(WEB_MODULE);
-		if (modules != null) {
-			for (IModule module2 : modules) {
-				IWebModule web = (IWebModule) module2.loadAdapter(IWebModule.class, monitor);
+			} else if (WEB_MODULE.equals(type)) {
+				IWebModule web = (IWebModule) module.loadAdapter(IWebModule.class, monitor);
 				if (web != null) {
-					IModule[] modules2 = web.getModules();
-					if (modules2 != null) {
-						for (IModule mm : modules2) {
-							List<IModule> m = webCache.get(mm);
-							if (m == null) {
-								m = new ArrayList<IModule>(2);
-								webCache.put(mm, m);
-							}
-							m.add(module2);
-						}
+					IModule[] children = web.getModules();
+					if (children != null) {
+						entry.webs.add(module);
+						entry.webChildren.add(children);
 					}
 				}
 			}
 		}
+		return entry;
 	}
 
-	private static boolean shouldUseCache() {
-		String s = System.getProperty("J2EEcache");
-		if (s == null || "".equals(s) || "false".equals(s)) {
-			webCache = null;
-			earCache = null;
-			return false;
+	private static ReverseIndex buildReverseIndex(Map<IProject, ProjectEntry> map) {
+		ReverseIndex index = new ReverseIndex();
+		for (ProjectEntry entry : map.values()) {
+			int size = entry.ears.size();
+			for (int i = 0; i < size; i++) {
+				IModule ear = entry.ears.get(i);
+				IModule[] children = entry.earChildren.get(i);
+				IModule[] childModules = entry.earChildModules.get(i);
+				for (int j = 0; j < children.length; j++) {
+					add(index.earCache, children[j], ear);
+					if (childModules[j] != null)
+						add(index.earCache2, childModules[j], ear);
+				}
+			}
+
+			size = entry.webs.size();
+			for (int i = 0; i < size; i++) {
+				IModule web = entry.webs.get(i);
+				for (IModule child : entry.webChildren.get(i))
+					add(index.webCache, child, web);
+			}
 		}
-		if (cache == null || !cache.equals(s)) {
-			cache = s;
-			fillCache(null);
+		return index;
+	}
+
+	private static <K> void add(Map<K, List<IModule>> map, K key, IModule module) {
+		List<IModule> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<IModule>(2);
+			map.put(key, list);
 		}
-		return true;
+		list.add(module);
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -107,6 +107,7 @@ public class JavaServerPlugin extends Plugin {
 	 */
 	public void stop(BundleContext context2) throws Exception {
 		ServerCore.removeRuntimeLifecycleListener(runtimeListener);
+		J2EEUtil.shutdown();
 		super.stop(context2);
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005 BEA Systems, Inc. 
+ * Copyright (c) 2005, 2026 BEA Systems, Inc. 
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -78,11 +78,10 @@ public class ExternalServerBehaviour extends GenericServerBehaviour {
     
     private ServerPort portInUse() {
     	ServerPort[] ports = getServer().getServerPorts(null);
-    	ServerPort sp;
+    	boolean[] inUse = SocketUtil.arePortsInUse(ports, 5);
     	for(int i=0;i<ports.length;i++){
-    		sp = ports[i];
-    		if (SocketUtil.isPortInUse(sp.getPort(), 5)) {
-    			return sp;
+    		if (inUse[i]) {
+    			return ports[i];
     		}
     	}
     	return null;
@@ -1,5 +1,5 @@
 /***************************************************************************************************
- * Copyright (c) 2005 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
+ * Copyright (c) 2005, 2026 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
  * accompanying materials are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
@@ -402,9 +402,10 @@ public class GenericServerBehaviour extends ServerBehaviourDelegate {
     	ServerPort[] ports = getServer().getServerPorts(null);
     	ServerPort sp = null;
     	if(SocketUtil.isLocalhost(host)){
+    		boolean[] inUse = SocketUtil.arePortsInUse(ports, 5);
 	    	for(int i=0;i<ports.length;i++){
 	    		sp= ports[i];
-	    		if (SocketUtil.isPortInUse(ports[i].getPort(), 5))
+	    		if (inUse[i])
 	    			throw new CoreException(new Status(IStatus.ERROR, CorePlugin.PLUGIN_ID, 0, NLS.bind(GenericServerCoreMessages.errorPortInUse,Integer.toString(sp.getPort()),sp.getName()),null));
 	    	}
     	}
@@ -1,5 +1,5 @@
 /***************************************************************************************************
- * Copyright (c) 2005 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
+ * Copyright (c) 2005, 2026 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
  * accompanying materials are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
@@ -10,25 +10,89 @@
 package org.eclipse.jst.server.generic.core.internal;
 
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IExtensionDelta;
 import org.eclipse.core.runtime.IRegistryChangeEvent;
 import org.eclipse.core.runtime.IRegistryChangeListener;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jst.server.generic.internal.core.util.ExtensionPointUtil;
 import org.eclipse.jst.server.generic.internal.core.util.ServerRuntimeMergeUtil;
 import org.eclipse.jst.server.generic.internal.xml.XMLUtils;
 import org.eclipse.jst.server.generic.servertype.definition.ServerRuntime;
 /**
  * Manages the retrieaval of ServerTypeDefinitions.
+ * <p>
+ * The definitions parsed from .serverdef and .runtimedef files are templates
+ * that are never modified. Each request for a definition with a set of
+ * property values gets a copy of the template, merged with its runtime
+ * definition and resolved against those values. Copies are cached by server
+ * type, runtime type and the content of the property map, and must be treated
+ * as read-only by callers since they may be shared.
+ * </p>
  * 
  * @author Gorkem Ercan
  */
 
 public class ServerTypeDefinitionManager 
 {
-	private XMLUtils fXmlUtils;
+	// maximum number of resolved definitions that are cached
+	private static final int MAX_CACHED_DEFINITIONS = 64;
+
+	private final XMLUtils fXmlUtils;
+
+	// incremented when the definitions change, guarded by fDefinitions
+	private long fGeneration;
+
+	// resolved definitions, guarded by itself
+	private final Map<DefinitionKey, ServerRuntime> fDefinitions = new LinkedHashMap<DefinitionKey, ServerRuntime>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<DefinitionKey, ServerRuntime> eldest) {
+			return size() > MAX_CACHED_DEFINITIONS;
+		}
+	};
+
+	/**
+	 * The key of a resolved definition.
+	 */
+	private static class DefinitionKey {
+		private final String serverTypeId;
+		private final String runtimeTypeId;
+		private final Map<?, ?> properties;
+
+		DefinitionKey(String serverTypeId, String runtimeTypeId, Map<?, ?> properties) {
+			this.serverTypeId = serverTypeId;
+			this.runtimeTypeId = runtimeTypeId;
+			this.properties = properties;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DefinitionKey))
+				return false;
+			DefinitionKey key = (DefinitionKey) obj;
+			return equals(serverTypeId, key.serverTypeId) && equals(runtimeTypeId, key.runtimeTypeId)
+					&& properties.equals(key.properties);
+		}
+
+		public int hashCode() {
+			int hash = properties.hashCode();
+			if (serverTypeId != null)
+				hash = hash * 31 + serverTypeId.hashCode();
+			if (runtimeTypeId != null)
+				hash = hash * 31 + runtimeTypeId.hashCode();
+			return hash;
+		}
+
+		private static boolean equals(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
 	
 	/**
 	 * Watch for changes to serverdefinition and runtimedefinition extensions.
@@ -73,29 +137,38 @@ public class ServerTypeDefinitionManager
      * @return server runtime that is initialized with user properties 
      */
     public ServerRuntime getServerRuntimeDefinition(String serverTypeId, String runtimeTypeId, Map properties) {
+        Map<Object, Object> values = copyProperties(properties);
+        DefinitionKey key = new DefinitionKey(serverTypeId, runtimeTypeId, values);
+        long generation = getGeneration();
+        ServerRuntime definition = getCachedDefinition(key);
+        if (definition != null)
+            return definition;
         
         ServerRuntime serverdef = fXmlUtils.getServerTypeDefinition(serverTypeId);
-        
+        ServerRuntime runtimedef = null;
         if (serverdef != null) {
-            ServerRuntime runtimedef = fXmlUtils.getRuntimeTypeDefinition(runtimeTypeId);
+            runtimedef = fXmlUtils.getRuntimeTypeDefinition(runtimeTypeId);
             if (runtimedef == null) {
             	// Fall back to single .serverdef
                 serverdef = fXmlUtils.getServerTypeDefinition(runtimeTypeId);
             }
-            else {
-                serverdef = ServerRuntimeMergeUtil.combine(serverdef, runtimedef);
-            }
         }
         else {
             // Fall back to the single serverdef
             serverdef = fXmlUtils.getServerTypeDefinition(runtimeTypeId);
         }
         
-        if (serverdef != null) {
-            serverdef.setPropertyValues(properties);
-        }
+        if (serverdef == null)
+            return null;
         
-        return serverdef;
+        definition = copy(serverdef);
+        if (runtimedef != null) {
+            synchronized (runtimedef) {
+                ServerRuntimeMergeUtil.combine(definition, runtimedef);
+            }
+        }
+        definition.setPropertyValues(values);
+        return cacheDefinition(generation, key, definition);
     }
     
     /**
@@ -107,17 +180,74 @@ public class ServerTypeDefinitionManager
      * @return server runtime that is initialized with user properties 
      */
     public ServerRuntime getServerRuntimeDefinition(String runtimeTypeId, Map properties) {
-        ServerRuntime definition = fXmlUtils.getRuntimeTypeDefinition(runtimeTypeId);
+        Map<Object, Object> values = copyProperties(properties);
+        DefinitionKey key = new DefinitionKey(null, runtimeTypeId, values);
+        long generation = getGeneration();
+        ServerRuntime definition = getCachedDefinition(key);
+        if (definition != null)
+            return definition;
         
-        if (definition == null) {
+        ServerRuntime template = fXmlUtils.getRuntimeTypeDefinition(runtimeTypeId);
+        if (template == null) {
             // Fall back to the original usage
-            definition = fXmlUtils.getServerTypeDefinition(runtimeTypeId);
+            template = fXmlUtils.getServerTypeDefinition(runtimeTypeId);
         }
         
-        if (definition != null) {
-            definition.setPropertyValues(properties);
-        }
+        if (template == null)
+            return null;
         
+        definition = copy(template);
+        definition.setPropertyValues(values);
+        return cacheDefinition(generation, key, definition);
+    }
+
+    private static Map<Object, Object> copyProperties(Map<?, ?> properties) {
+        if (properties == null)
+            return new HashMap<Object, Object>();
+        return new HashMap<Object, Object>(properties);
+    }
+
+    private long getGeneration() {
+        synchronized (fDefinitions) {
+            return fGeneration;
+        }
+    }
+
+    private ServerRuntime getCachedDefinition(DefinitionKey key) {
+        synchronized (fDefinitions) {
+            return fDefinitions.get(key);
+        }
+    }
+
+    /**
+     * Caches a resolved definition, unless the definitions were reloaded while
+     * it was being created, and returns the definition to use.
+     */
+    private ServerRuntime cacheDefinition(long generation, DefinitionKey key, ServerRuntime definition) {
+        synchronized (fDefinitions) {
+            if (generation != fGeneration)
+                return definition;
+            ServerRuntime existing = fDefinitions.get(key);
+            if (existing != null)
+                return existing;
+            fDefinitions.put(key, definition);
+            return definition;
+        }
+    }
+
+    /**
+     * Returns a copy of a definition template. The id, file name and
+     * namespace are not part of the EMF model, and are copied separately.
+     */
+    private static ServerRuntime copy(ServerRuntime template) {
+        ServerRuntime definition;
+        // reading an EMF object may lazily create its feature maps
+        synchronized (template) {
+            definition = EcoreUtil.copy(template);
+        }
+        definition.setId(template.getId());
+        definition.setFilename(template.getFilename());
+        definition.setConfigurationElementNamespace(template.getConfigurationElementNamespace());
         return definition;
     }
 	
@@ -131,9 +261,21 @@ public class ServerTypeDefinitionManager
 		 return (ServerRuntime[])definitionList.toArray(new ServerRuntime[definitionList.size()]);
 	}
 	
+	/**
+	 * Reads the extensions again, and discards the resolved definitions that
+	 * use a server or runtime definition that changed.
+	 */
 	private void handleDefinitionsChanged(){	
-		XMLUtils utils = new XMLUtils();
-		fXmlUtils = utils;
+		Set<String> changed = fXmlUtils.refresh();
+		synchronized (fDefinitions) {
+			fGeneration++;
+			Iterator<DefinitionKey> iterator = fDefinitions.keySet().iterator();
+			while (iterator.hasNext()) {
+				DefinitionKey key = iterator.next();
+				if (changed.contains(key.serverTypeId) || changed.contains(key.runtimeTypeId))
+					iterator.remove();
+			}
+		}
 	}
 	
 }
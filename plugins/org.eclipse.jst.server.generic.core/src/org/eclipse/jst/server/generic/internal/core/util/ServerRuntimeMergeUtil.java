@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2006 Cape Clear Software. All rights reserved.
+ * Copyright (c) 2006, 2026 Cape Clear Software. All rights reserved.
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
@@ -9,6 +9,7 @@ package org.eclipse.jst.server.generic.internal.core.util;
 import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jst.server.generic.servertype.definition.Classpath;
 import org.eclipse.jst.server.generic.servertype.definition.Property;
 import org.eclipse.jst.server.generic.servertype.definition.ServerRuntime;
@@ -22,13 +23,18 @@ import org.eclipse.jst.server.generic.servertype.definition.ServerRuntime;
  * entries with a serverdef, if the serverdef does not already have 
  * them - contains check is done by id.
  * 
+ * The serverdef is modified, and must be a copy rather than a cached
+ * definition. The runtimedef is not modified; copies of its entries are
+ * added.
+ * 
  * @author <a href="mailto:david.black@capeclear.com">David Black</a>
  */
 public class ServerRuntimeMergeUtil {
 
     /**
      * Combines a runtime definition and a server definition 
-     * into a single logical <code>ServerRuntime</code>.
+     * into a single logical <code>ServerRuntime</code>, by adding
+     * copies of the runtime definition's entries to the server definition.
      * 
      * @param serverdef
      * @param runtimedef
@@ -39,9 +45,7 @@ public class ServerRuntimeMergeUtil {
          * Add properties from runtimedef to serverdef if not already present,
          * this ensures that:
          * 
-         * (1) while we are affecting the cached copy of serverdef, it is always
-         *     required to be combined with its runtimedef (if there is one), and
-         *     we check that the property has not already been added
+         * (1) the property is only added once, and
          *     
          * (2) serverdef properties can override runtimedef properties    
          */
@@ -58,9 +62,7 @@ public class ServerRuntimeMergeUtil {
          * Add classpaths from runtimedef to serverdef if not already present,
          * this ensures that:
          * 
-         * (1) while we are affecting the cached copy of serverdef, it is always
-         *     required to be combined with its runtimedef (if there is one), and
-         *     we check that the classpath has not already been added (by id)
+         * (1) the classpath is only added once (by id), and
          *     
          * (2) serverdef classpath can override runtimedef classpath by id    
          */
@@ -79,7 +81,7 @@ public class ServerRuntimeMergeUtil {
     @SuppressWarnings("unchecked")
 	private static void addClasspathIfNotPresent(List classpaths, Classpath classpath) {
         if (!containsClasspath(classpaths, classpath.getId())) {
-            classpaths.add(classpath);
+            classpaths.add(EcoreUtil.copy(classpath));
         }
     }
 
@@ -99,7 +101,7 @@ public class ServerRuntimeMergeUtil {
     @SuppressWarnings("unchecked")
 	private static void addPropertyIfNotPresent(List properties, Property prop) {
         if (!containsProperty(properties, prop.getId())) {
-            properties.add(prop);
+            properties.add(EcoreUtil.copy(prop));
         }
     }
 
@@ -1,5 +1,5 @@
 /***************************************************************************************************
- * Copyright (c) 2005 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
+ * Copyright (c) 2005, 2026 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
  * accompanying materials are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
@@ -11,16 +11,23 @@
 package org.eclipse.jst.server.generic.internal.xml;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.variables.IDynamicVariable;
 import org.eclipse.core.variables.VariablesPlugin;
 import org.eclipse.jst.server.generic.core.internal.CorePlugin;
+import org.eclipse.jst.server.generic.core.internal.Trace;
 import org.eclipse.jst.server.generic.servertype.definition.Property;
 import org.eclipse.jst.server.generic.servertype.definition.ServerRuntime;
 
@@ -28,6 +35,14 @@ import org.eclipse.jst.server.generic.servertype.definition.ServerRuntime;
  * Utility to resolve serverdef/runtimedef properties with the user provided data.
  * Resolver also looks through eclipse platform provided dynamic variables to 
  * resolve a property. 
+ * <p>
+ * Each string is compiled once into a sequence of literal text and property
+ * references, and compiled strings are shared by all resolvers. Resolved
+ * strings are cached by each resolver until its property values change,
+ * unless they refer to an eclipse variable, whose value may change at any
+ * time. Property values may refer to other properties; a property that
+ * refers to itself, directly or indirectly, is reported and left unresolved.
+ * </p>
  *
  * @author Gorkem Ercan
  */
@@ -36,8 +51,43 @@ public class Resolver {
 	private static final String PROP_START2 = "%{"; //$NON-NLS-1$
 	private static final String PROP_END = "}"; //$NON-NLS-1$
 	private static final String PROP_START = "${"; //$NON-NLS-1$
+
+	// maximum number of compiled strings, and of resolved strings per resolver, that are kept
+	private static final int MAX_COMPILED = 1024;
+
+	// compiled strings, shared by all resolvers; guarded by itself
+	private static final Map<String, Object[]> compiled = new LinkedHashMap<String, Object[]>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Object[]> eldest) {
+			return size() > MAX_COMPILED;
+		}
+	};
+
+	/**
+	 * A reference to a property in a compiled string.
+	 */
+	private static class PropertyRef {
+		final String key;
+		final String text;
+
+		PropertyRef(String key) {
+			this.key = key;
+			this.text = PROP_START + key + PROP_END;
+		}
+	}
+
 	private Map fPropertyValues = new HashMap();
 	private ServerRuntime server;
+
+	// property id -> value, built on first use; null when the values change
+	private volatile Map<String, String> values;
+
+	// resolved strings
+	private final Map<String, String> resolved = new ConcurrentHashMap<String, String>();
+
+	// properties that have already been reported as unresolved or cyclic
+	private final Set<String> reported = Collections.synchronizedSet(new HashSet<String>());
 	
     /**
 	 * @param runtime 
@@ -53,98 +103,163 @@ public class Resolver {
 	 * @return resolved string
 	 */
 	public String resolveProperties(String proppedString) {
-		HashMap<String, String> cache = new HashMap<String, String>(getProperties().size());
+		if (proppedString == null)
+			return null;
+
+		String str = resolved.get(proppedString);
+		if (str != null)
+			return str;
+
+		Map<String, String> values2 = getValues();
+		StringBuffer sb = new StringBuffer(proppedString.length() + 32);
+		boolean cacheable = resolve(compile(proppedString), values2, new ArrayList<String>(4), sb);
+		str = fixPassthroughProperties(sb.toString());
+
+		// don't cache if the property values were changed in the meantime
+		if (cacheable && values2 == values) {
+			if (resolved.size() >= MAX_COMPILED)
+				resolved.clear();
+			resolved.put(proppedString, str);
+		}
+		return str;
+	}
+
+	private Map<String, String> getValues() {
+		Map<String, String> values2 = values;
+		if (values2 != null)
+			return values2;
+
+		values2 = new HashMap<String, String>(getProperties().size() + 1);
+		Map<?, ?> propertyValues = fPropertyValues;
 		Iterator itr = getProperties().iterator();
 		while (itr.hasNext()) {
 			Property element =(Property) itr.next();
 			String value = element.getDefault();
-			if(fPropertyValues != null && fPropertyValues.containsKey(element.getId()))
-			    value=(String)fPropertyValues.get(element.getId());
-			if(Property.TYPE_DIRECTORY.equals(element.getType()) || Property.TYPE_FILE.equals(element.getType()))
+			if(propertyValues != null && propertyValues.containsKey(element.getId()))
+			    value=(String)propertyValues.get(element.getId());
+			if(value != null && (Property.TYPE_DIRECTORY.equals(element.getType()) || Property.TYPE_FILE.equals(element.getType())))
 				value = value.replace('\\','/');
-			 cache.put(element.getId(), value);
+			values2.put(element.getId(), value);
 		}
-		cache.put("pathChar", File.pathSeparator); //$NON-NLS-1$
-		String str = resolvePropertiesFromCache(proppedString, cache);
-		str = fixPassthroughProperties(str);
-		return str;
+		values2.put("pathChar", File.pathSeparator); //$NON-NLS-1$
+		values = values2;
+		return values2;
 	}
 
 	private List getProperties() {
 		return this.server.getProperty();
 	}
 
-	private String fixPassthroughProperties(String str) {
-		String resolvedString = str;
-		if (isPassPropertyLeft(resolvedString)) {
-			resolvedString = fixParam(resolvedString);
-			resolvedString = fixPassthroughProperties(resolvedString);
+	/**
+	 * Appends the resolved value of a compiled string, and returns false if
+	 * the result depends on an eclipse variable and can't be cached.
+	 *
+	 * @param segments a compiled string
+	 * @param values2 property values
+	 * @param stack the properties being resolved
+	 * @param sb the buffer to append to
+	 * @return true if the result can be cached
+	 */
+	private boolean resolve(Object[] segments, Map<String, String> values2, List<String> stack, StringBuffer sb) {
+		boolean cacheable = true;
+		for (Object segment : segments) {
+			if (segment instanceof String) {
+				sb.append((String) segment);
+				continue;
+			}
+
+			PropertyRef ref = (PropertyRef) segment;
+			if (values2.containsKey(ref.key)) {
+				String value = values2.get(ref.key);
+				if (value == null) {
+					sb.append(ref.text);
+					continue;
+				}
+				if (stack.contains(ref.key)) {
+					report(ref.key, "Property " + ref.key + " refers to itself: " + stack, IStatus.ERROR); //$NON-NLS-1$ //$NON-NLS-2$
+					sb.append(ref.text);
+					continue;
+				}
+				stack.add(ref.key);
+				cacheable &= resolve(compile(value), values2, stack, sb);
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+
+			// look in eclipse variables
+			IDynamicVariable dv = VariablesPlugin.getDefault().getStringVariableManager().getDynamicVariable(ref.key);
+			if (dv == null) {
+				report(ref.key, "Property " + ref.key + " is not defined", IStatus.WARNING); //$NON-NLS-1$ //$NON-NLS-2$
+				sb.append(ref.text);
+				continue;
+			}
+
+			cacheable = false;
+			String value = null;
+			try {
+				value = dv.getValue(null);
+			} catch (CoreException e) {
+				CorePlugin.getDefault().getLog().log(
+						new Status(IStatus.ERROR, CorePlugin.PLUGIN_ID, 1,
+								"Can not resolve eclipse variable", e)); //$NON-NLS-1$
+			}
+			sb.append(value == null ? ref.text : value);
 		}
-		return resolvedString;
+		return cacheable;
 	}
 
-	private String resolvePropertiesFromCache(
-		String proppedString,
-		HashMap cache) {
-		String resolvedString = proppedString;
-		int start = skipToProperty(resolvedString, cache);// see if there are properties to be resolved.
-		if (start >= 0) {
-			resolvedString = resolveProperty(resolvedString, cache);
-			resolvedString = resolvePropertiesFromCache(resolvedString, cache);
-		}
-		return resolvedString;
+	/**
+	 * Reports a problem with a property once. Undefined properties are only
+	 * traced, since they may be meant for the server's own scripts.
+	 */
+	private void report(String key, String message, int severity) {
+		if (!reported.add(key))
+			return;
+
+		if (severity == IStatus.ERROR)
+			CorePlugin.getDefault().getLog().log(new Status(severity, CorePlugin.PLUGIN_ID, 1, message, null));
+		else
+			Trace.trace(Trace.WARNING, message);
 	}
 
-	private int skipToProperty(String str,HashMap cache) {
-		if (str == null )return -1;
-		int start = -1; 
-		int end =  0;
-		String key=""; //$NON-NLS-1$
-		do {
-			start =  str.indexOf(PROP_START,end);
-			if( start < 0)
-				return start;
-			end = str.indexOf(PROP_END, start);
-			key = str.substring(start + 2, end);
+	/**
+	 * Returns the compiled form of a string: an array of literal strings and
+	 * property references.
+	 */
+	private static Object[] compile(String str) {
+		synchronized (compiled) {
+			Object[] segments = compiled.get(str);
+			if (segments != null)
+				return segments;
 		}
-		while( !cache.containsKey( key ) && VariablesPlugin.getDefault().getStringVariableManager().getDynamicVariable( key ) == null );
-		return start;
-	}
-	
-	private boolean isPassPropertyLeft(String str) {
-		return str.indexOf(PROP_START2) >= 0;
-	}
 
-	private String resolveProperty(String proppedString, HashMap cache) {
-		StringBuffer str = new StringBuffer(proppedString);
+		List<Object> list = new ArrayList<Object>(4);
+		int index = 0;
 		int start = str.indexOf(PROP_START);
-		int end = str.indexOf(PROP_END, start);
-		String key = str.substring(start + 2, end);
-        String value = (String)cache.get(key);
-        if(value == null ){// look in eclipse variables
-            IDynamicVariable dv =  VariablesPlugin.getDefault().getStringVariableManager().getDynamicVariable( key );
-            if (dv != null ){
-                try {
-                    value = dv.getValue( null );
-                } 
-                catch( CoreException e ){
-                    CorePlugin.getDefault().getLog().log(
-                    new Status(IStatus.ERROR, CorePlugin.PLUGIN_ID, 1,
-                            "Can not resolve eclipse variable", e)); //$NON-NLS-1$
-                }
-            }
-        }
-		if(value == null )
-			return str.toString();
-		return str.replace( start, end+1, value ).toString();
+		while (start >= 0) {
+			int end = str.indexOf(PROP_END, start + 2);
+			if (end < 0)
+				break;
+			if (start > index)
+				list.add(str.substring(index, start));
+			list.add(new PropertyRef(str.substring(start + 2, end)));
+			index = end + 1;
+			start = str.indexOf(PROP_START, index);
+		}
+		if (index < str.length())
+			list.add(str.substring(index));
+
+		Object[] segments = list.toArray();
+		synchronized (compiled) {
+			compiled.put(str, segments);
+		}
+		return segments;
 	}
 	
-	private String fixParam(String proppedString) {
-		String str = proppedString;
-		int start = str.indexOf(PROP_START2);
-		return str.substring(0, start)
-			+ PROP_START
-			+ str.substring(start+2);
+	private String fixPassthroughProperties(String str) {
+		if (str.indexOf(PROP_START2) < 0)
+			return str;
+		return str.replace(PROP_START2, PROP_START);
 	}
     
 	/**
@@ -155,5 +270,8 @@ public class Resolver {
 	 */
 	public void setPropertyValues(Map propertyValues) {
 		fPropertyValues = propertyValues;
+		values = null;
+		resolved.clear();
+		reported.clear();
 	}
 }
@@ -1,5 +1,5 @@
 /***************************************************************************************************
- * Copyright (c) 2005,2009 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
+ * Copyright (c) 2005, 2026 Eteration A.S. and Gorkem Ercan. All rights reserved. This program and the
  * accompanying materials are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
@@ -10,11 +10,15 @@
 
 package org.eclipse.jst.server.generic.internal.xml;
 
+import java.lang.ref.SoftReference;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
@@ -36,14 +40,48 @@ import org.osgi.framework.Bundle;
 
 /**
  * Utility for handling the xml data from .serverdef and .runtimedef files.
+ * <p>
+ * Only the extension metadata is read up front. A definition file is parsed
+ * the first time the definition is requested, and is kept through a soft
+ * reference so that it can be parsed again if memory runs low. A file that
+ * fails to parse is tried again after a short delay. When the extensions
+ * change, definitions whose contribution and bundle are unchanged are kept.
+ * </p>
  * 
  * @author Gorkem Ercan
  */
 public class XMLUtils {
 
-	
-    private ArrayList<ServerRuntime> serverDefinitions;
-    private ArrayList<ServerRuntime> runtimeDefinitions;
+	// time before a definition that failed to parse is tried again, in ms
+	private static final long RETRY_DELAY = 30000;
+
+	/**
+	 * A contributed definition file.
+	 */
+	private static class Definition {
+		final String id;
+		final String namespace;
+		final String definitionFile;
+		final long bundleId;
+		final long bundleModified;
+		private SoftReference<ServerRuntime> runtime;
+		private long failedTime;
+
+		Definition(String id, String namespace, String definitionFile, Bundle bundle) {
+			this.id = id;
+			this.namespace = namespace;
+			this.definitionFile = definitionFile;
+			this.bundleId = bundle == null ? -1 : bundle.getBundleId();
+			this.bundleModified = bundle == null ? -1 : bundle.getLastModified();
+		}
+
+		String getKey() {
+			return namespace + "/" + bundleId + "/" + bundleModified + "/" + definitionFile + "#" + id; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+	}
+
+    private volatile List<Definition> serverDefinitions;
+    private volatile List<Definition> runtimeDefinitions;
 
 
 	/**
@@ -54,56 +92,96 @@ public class XMLUtils {
 	}
 
 	/**
-	 * Load all the serverdefinition and runtimedefinition extensions.
+	 * Reads the serverdefinition and runtimedefinition extensions again.
+	 * Definitions that were already parsed are kept, unless their
+	 * contribution was removed or changed.
+	 * 
+	 * @return the ids of the definitions that were added, removed, or changed
 	 */
-	private void refresh() {
-        serverDefinitions = new ArrayList<ServerRuntime>();
-        
-        IExtension[] serverDefExtensions = ExtensionPointUtil.getGenericServerDefinitionExtensions();
-        
-        for (int i = 0; serverDefExtensions != null && i < serverDefExtensions.length; i++) {
-            java.net.URI definitionFile = null;
-            IExtension extension = serverDefExtensions[i];
-            IConfigurationElement[] elements = ExtensionPointUtil.getConfigurationElements(extension);
-            
-            for (int j = 0; j < elements.length; j++) {
-                IConfigurationElement element = elements[j];
-                definitionFile = getDefinitionFile(element);
-                ServerRuntime runtime = readFile(definitionFile);
-                if (runtime != null) {
-                    runtime.setId(element.getAttribute("id")); //$NON-NLS-1$
-                    runtime.setConfigurationElementNamespace(element.getNamespaceIdentifier());
-                    serverDefinitions.add(runtime);
-                }
-            }
-        }
+	public synchronized Set<String> refresh() {
+		Set<String> changed = new HashSet<String>();
+		serverDefinitions = index(ExtensionPointUtil.getGenericServerDefinitionExtensions(), serverDefinitions, changed);
+		runtimeDefinitions = index(ExtensionPointUtil.getGenericServerRuntimeDefinitionExtensions(), runtimeDefinitions, changed);
+		return changed;
+	}
 
-        runtimeDefinitions = new ArrayList<ServerRuntime>();
-        
-        IExtension[] runtimeDefExtensions = ExtensionPointUtil.getGenericServerRuntimeDefinitionExtensions();
-        
-        for (int i = 0; runtimeDefExtensions != null && i < runtimeDefExtensions.length; i++) {
-            java.net.URI definitionFile = null;
-            IExtension extension = runtimeDefExtensions[i];
-            IConfigurationElement[] elements = ExtensionPointUtil.getConfigurationElements(extension);
-            
-            for (int j = 0; j < elements.length; j++) {
-                IConfigurationElement element = elements[j];
-                definitionFile = getDefinitionFile(element);
-                ServerRuntime runtime = readFile(definitionFile);
-                if (runtime != null) {
-                    runtime.setId(element.getAttribute("id")); //$NON-NLS-1$
-                    runtime.setConfigurationElementNamespace(element.getNamespaceIdentifier());
-                    runtimeDefinitions.add(runtime);
-                }
-            }
-        }
-    }
+	private static List<Definition> index(IExtension[] extensions, List<Definition> oldDefinitions, Set<String> changed) {
+		Map<String, Definition> old = new HashMap<String, Definition>();
+		if (oldDefinitions != null) {
+			for (Definition definition : oldDefinitions)
+				old.put(definition.getKey(), definition);
+		}
+		
+		List<Definition> list = new ArrayList<Definition>();
+		for (int i = 0; extensions != null && i < extensions.length; i++) {
+			IConfigurationElement[] elements = ExtensionPointUtil.getConfigurationElements(extensions[i]);
+			for (int j = 0; elements != null && j < elements.length; j++) {
+				IConfigurationElement element = elements[j];
+				String namespace = element.getNamespaceIdentifier();
+				Definition definition = new Definition(element.getAttribute("id"), namespace, //$NON-NLS-1$
+						element.getAttribute("definitionfile"), Platform.getBundle(namespace)); //$NON-NLS-1$
+				Definition existing = old.remove(definition.getKey());
+				if (existing != null) {
+					synchronized (existing) {
+						existing.failedTime = 0;
+					}
+					list.add(existing);
+				} else {
+					list.add(definition);
+					if (oldDefinitions != null)
+						changed.add(definition.id);
+				}
+			}
+		}
+		
+		for (Definition definition : old.values())
+			changed.add(definition.id);
+		return list;
+	}
+
+	/**
+	 * Returns the parsed definition, parsing the file if necessary.
+	 */
+	private static ServerRuntime getRuntime(Definition definition) {
+		synchronized (definition) {
+			ServerRuntime runtime = definition.runtime == null ? null : definition.runtime.get();
+			if (runtime != null)
+				return runtime;
+			if (definition.failedTime > 0 && System.currentTimeMillis() - definition.failedTime < RETRY_DELAY)
+				return null;
+			
+			long time = System.currentTimeMillis();
+			java.net.URI definitionFile = getDefinitionFile(definition);
+			if (definitionFile != null)
+				runtime = readFile(definitionFile);
+			if (runtime == null) {
+				definition.failedTime = System.currentTimeMillis();
+				return null;
+			}
+			definition.failedTime = 0;
+			runtime.setId(definition.id);
+			runtime.setConfigurationElementNamespace(definition.namespace);
+			definition.runtime = new SoftReference<ServerRuntime>(runtime);
+			Trace.trace(Trace.PERFORMANCE, "Parsed definition " + definition.id + " in " //$NON-NLS-1$ //$NON-NLS-2$
+					+ (System.currentTimeMillis() - time) + " ms"); //$NON-NLS-1$
+			return runtime;
+		}
+	}
 
-    private java.net.URI getDefinitionFile(IConfigurationElement element) {
+	private static List<ServerRuntime> getRuntimes(List<Definition> definitions) {
+		List<ServerRuntime> list = new ArrayList<ServerRuntime>(definitions.size());
+		for (Definition definition : definitions) {
+			ServerRuntime runtime = getRuntime(definition);
+			if (runtime != null)
+				list.add(runtime);
+		}
+		return list;
+	}
+
+    private static java.net.URI getDefinitionFile(Definition definition) {
         
-        Bundle bundle = Platform.getBundle(element.getNamespaceIdentifier());
-        String definitionFile = element.getAttribute("definitionfile"); //$NON-NLS-1$
+        Bundle bundle = Platform.getBundle(definition.namespace);
+        String definitionFile = definition.definitionFile;
         Trace.trace(Trace.FINEST,"Loading serverdef file "+definitionFile+" from bundle "+bundle.getSymbolicName()); //$NON-NLS-1$ //$NON-NLS-2$
         
         URL url = bundle.getEntry(definitionFile);
@@ -123,7 +201,7 @@ public class XMLUtils {
         return null;
     }
 
-    private ServerRuntime readFile(java.net.URI file) {
+    private static ServerRuntime readFile(java.net.URI file) {
         // Create a resource set.
         ResourceSet resourceSet = new ResourceSetImpl();
 
@@ -161,10 +239,13 @@ public class XMLUtils {
     }
 
 	/**
+	 * Returns all server definitions. Every definition file is parsed, so
+	 * this method should be avoided where a single definition will do.
+	 * 
 	 * @return <code>java.util.List</code> of <code>ServerRuntime</code>s.
 	 */
 	public List getServerTypeDefinitions() {
-		return serverDefinitions;
+		return getRuntimes(serverDefinitions);
 	}
 
     /**
@@ -173,20 +254,17 @@ public class XMLUtils {
      * @return serverRuntime
      */
     public ServerRuntime getServerTypeDefinition(String id) {
-    	Iterator defs = getServerTypeDefinitions().iterator();
-        while (id != null && defs.hasNext()) {
-            ServerRuntime elem = (ServerRuntime) defs.next();
-            if ( elem.getId().equals( id ) )
-                return elem;
-        }
-        return null;
+        return getDefinition(serverDefinitions, id);
     }
 
     /**
+     * Returns all runtime definitions. Every definition file is parsed, so
+     * this method should be avoided where a single definition will do.
+     * 
      * @return <code>java.util.List</code> of <code>ServerRuntime</code>s.
      */
     public List getRuntimeTypeDefinitions() {
-        return runtimeDefinitions;
+        return getRuntimes(runtimeDefinitions);
     }
 
     /**
@@ -195,11 +273,18 @@ public class XMLUtils {
      * @return runtime 
      */
     public ServerRuntime getRuntimeTypeDefinition(String id) {
-        Iterator defs = getRuntimeTypeDefinitions().iterator();
-        while (defs.hasNext()) {
-            ServerRuntime elem = (ServerRuntime) defs.next();
-            if ( elem.getId().equals(id) )
-                return elem;
+        return getDefinition(runtimeDefinitions, id);
+    }
+
+    private static ServerRuntime getDefinition(List<Definition> definitions, String id) {
+        if (id == null)
+            return null;
+        for (Definition definition : definitions) {
+            if (id.equals(definition.id)) {
+                ServerRuntime runtime = getRuntime(definition);
+                if (runtime != null)
+                    return runtime;
+            }
         }
         return null;
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2013 IBM Corporation and others.
+ * Copyright (c) 2005, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,8 @@ public class Messages extends NLS {
 	public static String copyingTask;
 	public static String errorCopyingFile;
 	public static String deletingTask;
+	public static String jobDeleteWorkDir;
+	public static String errorDeleteFile;
 	public static String errorVersionEmpty;
 	public static String errorUnknownVersion;
 	public static String errorInstallDirEmpty;
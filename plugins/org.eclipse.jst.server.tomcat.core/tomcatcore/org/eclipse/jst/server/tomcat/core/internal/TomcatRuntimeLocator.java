@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2013 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,15 @@ package org.eclipse.jst.server.tomcat.core.internal;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.*;
 import org.eclipse.jdt.launching.JavaRuntime;
@@ -21,7 +30,10 @@ import org.eclipse.wst.server.core.IRuntimeWorkingCopy;
 import org.eclipse.wst.server.core.ServerCore;
 import org.eclipse.wst.server.core.model.RuntimeLocatorDelegate;
 /**
- * 
+ * Searches the file system for Tomcat installations. Directories are
+ * searched in parallel, and runtimes are only created for directories
+ * that look like a Tomcat installation, using the version read from
+ * catalina.jar when available.
  */
 public class TomcatRuntimeLocator extends RuntimeLocatorDelegate {
 	protected static final String[] runtimeTypes = new String[] {
@@ -34,6 +46,22 @@ public class TomcatRuntimeLocator extends RuntimeLocatorDelegate {
 		"org.eclipse.jst.server.tomcat.runtime.70",
 		"org.eclipse.jst.server.tomcat.runtime.80"};
 
+	// catalina.jar version prefixes, in the same order as the runtime types
+	private static final String[] versionPrefixes = new String[] {
+		"3.2.", "4.0.", "4.1.", "5.0.", "5.5.", "6.0.", "7.0.", "8.0."};
+
+	// maximum number of threads used to search
+	private static final int MAX_THREADS = 8;
+
+	// how often to check for completion and cancellation, in ms
+	private static final long POLL_INTERVAL = 100;
+
+	private static final FileFilter DIRECTORY_FILTER = new FileFilter() {
+		public boolean accept(File file) {
+			return file.isDirectory();
+		}
+	};
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.wst.server.core.model.IRuntimeFactoryDelegate#getKnownRuntimes()
 	 */
@@ -53,68 +81,233 @@ public class TomcatRuntimeLocator extends RuntimeLocatorDelegate {
 			files = File.listRoots();
 
 		if (files != null) {
-			int size = files.length;
-			int work = 100 / size;
-			int workLeft = 100 - (work * size);
-			for (int i = 0; i < size; i++) {
-				if (monitor.isCanceled())
-					return;
-				if (files[i] != null && files[i].isDirectory())
-					searchDir(listener, files[i], 4, monitor);
-				monitor.worked(work);
+			List<File> dirs = new ArrayList<File>();
+			for (File file : files) {
+				if (file != null && file.isDirectory())
+					dirs.add(file);
 			}
-			monitor.worked(workLeft);
+			search(listener, dirs.toArray(new File[dirs.size()]), 4, monitor, 100);
 		} else
 			monitor.worked(100);
 	}
 
 	protected static void searchDir(IRuntimeSearchListener listener, File dir, int depth, IProgressMonitor monitor) {
-		if ("conf".equals(dir.getName())) {
-			IRuntimeWorkingCopy runtime = getRuntimeFromDir(dir.getParentFile(), monitor);
-			if (runtime != null) {
-				listener.runtimeFound(runtime);
-				return;
-			}
-		}
-		
-		if (depth == 0)
+		search(listener, new File[] { dir }, depth, monitor, 0);
+	}
+
+	/**
+	 * Searches the given directories in parallel, reporting the given amount of
+	 * work as the searches of the directories complete.
+	 */
+	private static void search(IRuntimeSearchListener listener, File[] dirs, int depth, IProgressMonitor monitor, int totalWork) {
+		int size = dirs.length;
+		if (size == 0) {
+			monitor.worked(totalWork);
 			return;
+		}
+		int work = totalWork / size;
+		int workLeft = totalWork - (work * size);
+
+		int threads = Math.max(2, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() * 2));
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private int count;
+					
+					public synchronized Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Tomcat Runtime Search " + (++count));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
 		
-		File[] files = dir.listFiles(new FileFilter() {
-			public boolean accept(File file) {
-				return file.isDirectory();
-			}
-		});
-		if (files != null) {
-			int size = files.length;
+		Search[] searches = new Search[size];
+		try {
 			for (int i = 0; i < size; i++) {
+				searches[i] = new Search(executor, listener, monitor);
+				searches[i].submit(dirs[i], depth);
+			}
+			
+			int done = 0;
+			while (done < size) {
 				if (monitor.isCanceled())
 					return;
-				searchDir(listener, files[i], depth - 1, monitor);
+				
+				for (int i = 0; i < size; i++) {
+					if (searches[i] != null && searches[i].isDone()) {
+						searches[i] = null;
+						monitor.worked(work);
+						done++;
+					}
+				}
+				
+				if (done < size) {
+					try {
+						Thread.sleep(POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
 			}
+			monitor.worked(workLeft);
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
-	protected static IRuntimeWorkingCopy getRuntimeFromDir(File dir, IProgressMonitor monitor) {
-		for (int i = 0; i < runtimeTypes.length; i++) {
+	/**
+	 * The search of one root directory. Each directory visited is a separate
+	 * task on the shared executor, so that large trees are spread across all
+	 * threads.
+	 */
+	private static class Search {
+		private ExecutorService executor;
+		private IRuntimeSearchListener listener;
+		private IProgressMonitor monitor;
+		private AtomicInteger pending = new AtomicInteger();
+
+		protected Search(ExecutorService executor, IRuntimeSearchListener listener, IProgressMonitor monitor) {
+			this.executor = executor;
+			this.listener = listener;
+			this.monitor = monitor;
+		}
+
+		protected boolean isDone() {
+			return pending.get() == 0;
+		}
+
+		protected void submit(final File dir, final int depth) {
+			pending.incrementAndGet();
 			try {
-				IRuntimeType runtimeType = ServerCore.findRuntimeType(runtimeTypes[i]);
-				String absolutePath = dir.getAbsolutePath();
-				String id = absolutePath.replace(File.separatorChar,'_').replace(':','-');
-				IRuntimeWorkingCopy runtime = runtimeType.createRuntime(id, monitor);
-				runtime.setName(dir.getName());
-				runtime.setLocation(new Path(absolutePath));
-				ITomcatRuntimeWorkingCopy wc = (ITomcatRuntimeWorkingCopy) runtime.loadAdapter(ITomcatRuntimeWorkingCopy.class, null);
-				wc.setVMInstall(JavaRuntime.getDefaultVMInstall());
-				IStatus status = runtime.validate(monitor);
-				if (status == null || status.getSeverity() != IStatus.ERROR)
-					return runtime;
-				
-				Trace.trace(Trace.FINER, "False runtime found at " + dir.getAbsolutePath() + ": " + status.getMessage());
-			} catch (Exception e) {
-				Trace.trace(Trace.SEVERE, "Could not find runtime", e);
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							visit(dir, depth);
+						} catch (Throwable t) {
+							Trace.trace(Trace.WARNING, "Error searching " + dir, t);
+						} finally {
+							pending.decrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// search was canceled
+				pending.decrementAndGet();
 			}
 		}
+
+		protected void visit(File dir, int depth) {
+			if (monitor.isCanceled())
+				return;
+			
+			if ("conf".equals(dir.getName())) {
+				IRuntimeWorkingCopy runtime = getRuntimeFromDir(dir.getParentFile(), monitor);
+				if (runtime != null) {
+					synchronized (listener) {
+						if (!monitor.isCanceled())
+							listener.runtimeFound(runtime);
+					}
+					return;
+				}
+			}
+			
+			if (depth == 0)
+				return;
+			
+			File[] files = dir.listFiles(DIRECTORY_FILTER);
+			if (files != null) {
+				int size = files.length;
+				for (int i = 0; i < size; i++) {
+					if (monitor.isCanceled())
+						return;
+					submit(files[i], depth - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the given directory has the layout of a Tomcat
+	 * installation. Only the presence of a few files is checked, so that
+	 * runtimes are not created for the many directories that just happen
+	 * to contain a conf folder. The webapps folder is not required, since
+	 * distribution packages often keep it elsewhere.
+	 */
+	protected static boolean isTomcatDir(File dir) {
+		if (dir == null)
+			return false;
+		
+		File bin = new File(dir, "bin");
+		if (new File(bin, "bootstrap.jar").isFile() || new File(bin, "catalina.sh").isFile()
+				|| new File(bin, "catalina.bat").isFile())
+			return true;
+		
+		// Tomcat 6.0 and later, and Tomcat 5.x
+		if (new File(dir, "lib/catalina.jar").isFile() || new File(dir, "server/lib/catalina.jar").isFile())
+			return true;
+		
+		// Tomcat 3.2
+		return bin.isDirectory() && new File(dir, "lib/jasper.jar").isFile();
+	}
+
+	/**
+	 * Returns the id of the runtime type matching the version of the Tomcat
+	 * installation in the given directory, as read from its catalina.jar, or
+	 * null if the version can't be determined.
+	 */
+	protected static String getRuntimeTypeId(File dir) {
+		File jarFile = new File(dir, "lib/catalina.jar");
+		if (!jarFile.isFile()) {
+			jarFile = new File(dir, "server/lib/catalina.jar");
+			if (!jarFile.isFile())
+				return null;
+		}
+		
+		String version = TomcatVersionHelper.readCatalinaVersion(jarFile);
+		if (version == null)
+			return null;
+		
+		for (int i = 0; i < versionPrefixes.length; i++) {
+			if (version.startsWith(versionPrefixes[i]))
+				return runtimeTypes[i];
+		}
+		return null;
+	}
+
+	protected static IRuntimeWorkingCopy getRuntimeFromDir(File dir, IProgressMonitor monitor) {
+		if (!isTomcatDir(dir))
+			return null;
+		
+		String runtimeTypeId = getRuntimeTypeId(dir);
+		if (runtimeTypeId != null)
+			return getRuntimeFromDir(dir, runtimeTypeId, monitor);
+		
+		// unknown version, try every runtime type
+		for (int i = 0; i < runtimeTypes.length; i++) {
+			IRuntimeWorkingCopy runtime = getRuntimeFromDir(dir, runtimeTypes[i], monitor);
+			if (runtime != null)
+				return runtime;
+		}
+		return null;
+	}
+
+	private static IRuntimeWorkingCopy getRuntimeFromDir(File dir, String runtimeTypeId, IProgressMonitor monitor) {
+		try {
+			IRuntimeType runtimeType = ServerCore.findRuntimeType(runtimeTypeId);
+			String absolutePath = dir.getAbsolutePath();
+			String id = absolutePath.replace(File.separatorChar,'_').replace(':','-');
+			IRuntimeWorkingCopy runtime = runtimeType.createRuntime(id, monitor);
+			runtime.setName(dir.getName());
+			runtime.setLocation(new Path(absolutePath));
+			ITomcatRuntimeWorkingCopy wc = (ITomcatRuntimeWorkingCopy) runtime.loadAdapter(ITomcatRuntimeWorkingCopy.class, null);
+			wc.setVMInstall(JavaRuntime.getDefaultVMInstall());
+			IStatus status = runtime.validate(monitor);
+			if (status == null || status.getSeverity() != IStatus.ERROR)
+				return runtime;
+			
+			Trace.trace(Trace.FINER, "False runtime found at " + dir.getAbsolutePath() + ": " + status.getMessage());
+		} catch (Exception e) {
+			Trace.trace(Trace.SEVERE, "Could not find runtime", e);
+		}
 		return null;
 	}
 }
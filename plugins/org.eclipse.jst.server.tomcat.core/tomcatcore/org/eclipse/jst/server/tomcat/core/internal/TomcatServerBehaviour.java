@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -497,14 +497,18 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		
 		// check that ports are free
 		Iterator iterator = configuration.getServerPorts().iterator();
-		List<ServerPort> usedPorts = new ArrayList<ServerPort>();
+		List<ServerPort> ports = new ArrayList<ServerPort>();
 		while (iterator.hasNext()) {
 			ServerPort sp = (ServerPort) iterator.next();
 			if (sp.getPort() < 0)
 				throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, Messages.errorPortInvalid, null));
-			if (SocketUtil.isPortInUse(sp.getPort(), 5)) {
-				usedPorts.add(sp);
-			}
+			ports.add(sp);
+		}
+		boolean[] inUse = SocketUtil.arePortsInUse(ports.toArray(new ServerPort[ports.size()]), 5);
+		List<ServerPort> usedPorts = new ArrayList<ServerPort>();
+		for (int i = 0; i < inUse.length; i++) {
+			if (inUse[i])
+				usedPorts.add(ports.get(i));
 		}
 		if (usedPorts.size() == 1) {
 			ServerPort port = usedPorts.get(0);
@@ -1019,7 +1023,10 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 	
 	/**
 	 * Cleans the entire work directory for this server.  This involves
-	 * deleting all subdirectories of the server's work directory.
+	 * deleting all subdirectories of the server's work directory.  The
+	 * subdirectories are moved aside and deleted by a background job, so
+	 * the returned status only includes problems with subdirectories that
+	 * could not be moved and had to be deleted immediately.
 	 * 
 	 * @param monitor a progress monitor
 	 * @return results of the clean operation
@@ -1041,9 +1048,16 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 					monitor = ProgressUtil.getMonitorFor(monitor);
 					monitor.beginTask(NLS.bind("Cleaning Server Work Directory", new String[] { workDir.getAbsolutePath() }), size * 10);
 
+					// Move the subdirectories aside and delete them in the background,
+					// falling back to deleting them here if they can't be moved
+					File trashDir = WorkDirCleaner.createTrashDir(workDir);
 					for (int i = 0; i < size; i++) {
 						File current = files[i];
 						if (current.isDirectory()) {
+							if (trashDir != null && WorkDirCleaner.moveToTrash(current, trashDir)) {
+								monitor.worked(10);
+								continue;
+							}
 							IStatus [] results = PublishHelper.deleteDirectory(current, ProgressUtil.getSubMonitorFor(monitor, 10));
 							if (results != null && results.length > 0) {
 								for (int j = 0; j < results.length; j++) {
@@ -1056,6 +1070,7 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 					result = ms;
 				}
 			}
+			WorkDirCleaner.deleteTrash(workDir);
 		}
 		else {
 			result = new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, "Could not determine work directory for module", null);
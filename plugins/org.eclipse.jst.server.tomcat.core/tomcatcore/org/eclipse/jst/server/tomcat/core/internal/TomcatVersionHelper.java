@@ -1,5 +1,5 @@
 /**********************************************************************
- * Copyright (c) 2007, 2013 SAS Institute, Inc and others.
+ * Copyright (c) 2007, 2026 SAS Institute, Inc and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1108,22 +1108,90 @@ public class TomcatVersionHelper {
 		return context;
 	}
 
-	private static Map<IPath, String> catalinaJarVersion = new ConcurrentHashMap<IPath, String>();
-	private static Map<IPath, Long> catalinaJarLastModified = new ConcurrentHashMap<IPath, Long>();
-	private static volatile long lastCheck = 0;
+	/**
+	 * The version read from an installation's catalina.jar, along with the
+	 * size and time stamp of the jar when it was read.
+	 */
+	private static class CatalinaVersion {
+		protected final File jarFile;
+		protected final long size;
+		protected final long lastModified;
+		protected final String version;
+
+		protected CatalinaVersion(File jarFile, long size, long lastModified, String version) {
+			this.jarFile = jarFile;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.version = version;
+		}
+
+		protected boolean isValid(File jarFile2, long size2, long lastModified2) {
+			return jarFile.equals(jarFile2) && size == size2 && lastModified == lastModified2;
+		}
+	}
+
+	// install path -> version, entries are immutable and replaced when stale
+	private static final Map<IPath, CatalinaVersion> catalinaVersions = new ConcurrentHashMap<IPath, CatalinaVersion>();
+
+	/**
+	 * Returns the catalina.jar of the Tomcat installed at the specified location,
+	 * looking first in the location used by the specified server type. Returns
+	 * null if the server type is not supported or the jar doesn't exist.
+	 */
+	private static File getCatalinaJar(IPath installPath, String serverType) {
+		String[] locations = null;
+		if (TomcatPlugin.TOMCAT_60.equals(serverType) || TomcatPlugin.TOMCAT_70.equals(serverType) || TomcatPlugin.TOMCAT_80.equals(serverType))
+			locations = new String[] { "lib", "server/lib" };
+		else if (TomcatPlugin.TOMCAT_50.equals(serverType) || TomcatPlugin.TOMCAT_55.equals(serverType)
+				 || TomcatPlugin.TOMCAT_41.equals(serverType))
+			locations = new String[] { "server/lib", "lib" };
+		else
+			return null;
+		
+		for (String location : locations) {
+			File jarFile = installPath.append(location).append("catalina.jar").toFile();
+			if (jarFile.exists())
+				return jarFile;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the version of the Tomcat installed at the specified location, as
+	 * read from the specified catalina.jar. The version is cached by install path
+	 * and only read again if the jar's location, size, or time stamp changed, so
+	 * that a Tomcat upgraded in place is picked up. Returns an empty string if
+	 * the version can't be determined.
+	 */
+	private static String getCatalinaVersion(IPath installPath, File jarFile) {
+		long size = jarFile.length();
+		long lastModified = jarFile.lastModified();
+		CatalinaVersion cached = catalinaVersions.get(installPath);
+		if (cached != null && cached.isValid(jarFile, size, lastModified))
+			return cached.version;
+		
+		// The size and time stamp are taken before reading, so a jar replaced
+		// while being read is read again on the next call
+		String version = readCatalinaVersion(jarFile);
+		if (version == null)
+			version = "";
+		catalinaVersions.put(installPath, new CatalinaVersion(jarFile, size, lastModified, version));
+		
+		if (cached != null)
+			Trace.trace(Trace.FINER, "Catalina version at " + installPath + " changed from " + cached.version + " to " + version);
+		return version;
+	}
 
 	/**
 	 * Checks if the version of Tomcat installed at the specified location matches
 	 * the specified server type.  The return status indicates if the version matches
 	 * or not, or can't be determined.
 	 * 
-	 * Because this can get called repeatedly for certain operations, some caching
-	 * is provided.  The first check for an installPath in the current Eclipse
-	 * session will query the catalina.jar for its version.  Any additional
-	 * checks will compare the catalina.jar's time stamp and will use the previously
-	 * cached version if it didn't change.  Additional checks that occur within
-	 * 2 seconds of the last check, regardless of Tomcat version, don't bother with
-	 * checking the jar time stamp and just use the cached values.
+	 * Because this can get called repeatedly for certain operations, the version
+	 * is cached for each installPath.  The first check for an installPath in the
+	 * current Eclipse session will query the catalina.jar for its version.  Any
+	 * additional checks will compare the catalina.jar's size and time stamp and
+	 * will use the previously cached version if they didn't change.
 	 * 
 	 * @param installPath Path to Tomcat installation
 	 * @param serverType The server type ID for the desired version of Tomcat
@@ -1132,145 +1200,89 @@ public class TomcatVersionHelper {
 	 * Status.CANCEL_STATUS is returned.
 	 */
 	public static IStatus checkCatalinaVersion(IPath installPath, String serverType) {
-		String versionSubString = null;
-		IPath catalinaJarPath = null;
-		File jarFile = null;
+		File jarFile = getCatalinaJar(installPath, serverType);
+		// If server type is not supported or jar doesn't exist
+		if (jarFile == null)
+			return Status.CANCEL_STATUS;
 		
-		if (TomcatPlugin.TOMCAT_60.equals(serverType) || TomcatPlugin.TOMCAT_70.equals(serverType) || TomcatPlugin.TOMCAT_80.equals(serverType)) {
-			catalinaJarPath = installPath.append("lib").append("catalina.jar");
-			jarFile = catalinaJarPath.toFile();
-			// If jar is not at expected location, try alternate location
-			if (!jarFile.exists()) {
-				catalinaJarPath = installPath.append("server/lib").append("catalina.jar");
-				jarFile = catalinaJarPath.toFile();
-				// If not here either, discard path
-				if (!jarFile.exists()) {
-					catalinaJarPath = null;
-				}
-			}
+		String versionSubString = getCatalinaVersion(installPath, jarFile);
+		// If we have an unknown version
+		if (versionSubString.length() == 0)
+			return Status.CANCEL_STATUS;
+		
+		// Else test the version
+		String versionTest = versionStringMap.get(serverType);
+		if (versionTest != null && !versionSubString.startsWith(versionTest)) {
+			return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID,
+					NLS.bind(Messages.errorInstallDirWrongVersion2,
+							versionSubString, versionTest.substring(0, versionTest.length() -1)));
 		}
-		else if (TomcatPlugin.TOMCAT_50.equals(serverType) || TomcatPlugin.TOMCAT_55.equals(serverType)
-				 || TomcatPlugin.TOMCAT_41.equals(serverType)) {
-			catalinaJarPath = installPath.append("server/lib").append("catalina.jar");
-			jarFile = catalinaJarPath.toFile();
-			// If jar is not at expected location, try alternate location
-			if (!jarFile.exists()) {
-				catalinaJarPath = installPath.append("lib").append("catalina.jar");
-				jarFile = catalinaJarPath.toFile();
-				// If not here either, discard path
-				if (!jarFile.exists()) {
-					catalinaJarPath = null;
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Reads the Tomcat version from the ServerInfo.properties file in the
+	 * specified catalina.jar, e.g. "6.0.37" for a server.info of
+	 * "Apache Tomcat/6.0.37".
+	 * 
+	 * @param jarFile catalina.jar file
+	 * @return the version, or null if it can't be determined
+	 */
+	public static String readCatalinaVersion(File jarFile) {
+		InputStream is = null;
+		JarFile jar = null;
+		try {
+			// Read version string from catalina.jar
+			jar = new JarFile(jarFile);
+			JarEntry entry = jar.getJarEntry("org/apache/catalina/util/ServerInfo.properties");
+			if (entry != null) {
+				is = jar.getInputStream(entry);
+				if (is != null) {
+					Properties props = new Properties();
+					props.load(is);
+					String serverVersion = props.getProperty("server.info");
+					if (serverVersion != null) {
+						int index = serverVersion.indexOf("/");
+						if (index > 0)
+							return serverVersion.substring(index + 1);
+					}
 				}
 			}
+		} catch (IOException e) {
+			// Ignore and handle as unknown version
 		}
-		if (catalinaJarPath != null) {
-			versionSubString = catalinaJarVersion.get(catalinaJarPath);
-			long checkTime = System.currentTimeMillis();
-			// Use some logic to try to determine if a cached value is stale
-			// If last check was more than a couple of seconds ago, check the jar time stamp 
-			if (versionSubString != null && (checkTime - lastCheck > 2000)) {
-				long curLastModified = jarFile.lastModified();
-				Long oldLastModified = catalinaJarLastModified.get(catalinaJarPath);
-				// If jar time stamps differ, discard the cached version string
-				if (oldLastModified == null || curLastModified != oldLastModified.longValue()) {
-					versionSubString = null;
-				}
-			}
-			lastCheck = checkTime;
-			// If a version string needs to be acquired
-			if (versionSubString == null) {
-				InputStream is = null;
-				JarFile jar = null;
+		finally {
+			if (is != null) {
 				try {
-					// Read version string from catalina.jar
-					jar = new JarFile(jarFile);
-					JarEntry entry = jar.getJarEntry("org/apache/catalina/util/ServerInfo.properties");
-					if (entry != null) {
-						is = jar.getInputStream(entry);
-						if (is != null) {
-							Properties props = new Properties();
-							props.load(is);
-							String serverVersion = props.getProperty("server.info");
-							if (serverVersion != null) {
-								int index = serverVersion.indexOf("/");
-								if (index > 0) {
-									versionSubString = serverVersion.substring(index + 1);
-									catalinaJarVersion.put(catalinaJarPath, versionSubString);
-									catalinaJarLastModified.put(catalinaJarPath, new Long(jarFile.lastModified()));
-								}
-							}
-						}
-					}
-				} catch (IOException e) {
-					// Ignore and handle as unknown version
+					is.close();
 				}
-				finally {
-					if (is != null) {
-						try {
-							is.close();
-						}
-						catch (IOException e) {
-							// Ignore
-						}
-					}
-					if (jar != null) {
-						try {
-							jar.close();
-						} catch (IOException e) {
-							// Ignore
-						}
-					}
+				catch (IOException e) {
+					// Ignore
 				}
 			}
-			if (versionSubString != null) {
-				// If we have an actual version, test the version
-				if (versionSubString.length() > 0) {
-					String versionTest = versionStringMap.get(serverType);
-					if (versionTest != null && !versionSubString.startsWith(versionTest)) {
-						return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID,
-								NLS.bind(Messages.errorInstallDirWrongVersion2,
-										versionSubString, versionTest.substring(0, versionTest.length() -1)));
-					}
-				}
-				// Else we have an unknown version
-				else {
-					return Status.CANCEL_STATUS;
+			if (jar != null) {
+				try {
+					jar.close();
+				} catch (IOException e) {
+					// Ignore
 				}
 			}
-			else {
-				// Cache blank version string for unknown version
-				catalinaJarVersion.put(catalinaJarPath, "");
-				catalinaJarLastModified.put(catalinaJarPath, new Long(jarFile.lastModified()));
-				return Status.CANCEL_STATUS;
-			}
 		}
-		// Else server type is not supported or jar doesn't exist
-		else {
-			return Status.CANCEL_STATUS;
-		}
-		
-		return Status.OK_STATUS;
+		return null;
 	}
 
+	/**
+	 * Returns the version of Tomcat installed at the specified location, e.g.
+	 * "6.0.37", using the same caching as checkCatalinaVersion().
+	 * 
+	 * @param installPath Path to Tomcat installation
+	 * @param serverType The server type ID for the desired version of Tomcat
+	 * @return the version, or an empty string if it can't be determined
+	 */
 	public static String getCatalinaVersion(IPath installPath, String serverType) {
-		for (Map.Entry<IPath, String> entry : catalinaJarVersion.entrySet()) {
-			IPath jarPath = entry.getKey();
-			if (installPath.isPrefixOf(jarPath)) {
-				return entry.getValue();
-			}
-		}
-		// If not found, we need to initialize the data for this server
-		IStatus result = checkCatalinaVersion(installPath, serverType);
-		// If successful, search again
-		if (result.isOK()) {
-			for (Map.Entry<IPath, String> entry : catalinaJarVersion.entrySet()) {
-				IPath jarPath = entry.getKey();
-				if (installPath.isPrefixOf(jarPath)) {
-					return entry.getValue();
-				}
-			}
-		}
-		// Return unknown version
-		return "";
+		File jarFile = getCatalinaJar(installPath, serverType);
+		if (jarFile == null)
+			return "";
+		return getCatalinaVersion(installPath, jarFile);
 	}
 }
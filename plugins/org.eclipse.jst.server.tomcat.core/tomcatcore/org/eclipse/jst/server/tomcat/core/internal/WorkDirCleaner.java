@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jst.server.tomcat.core.internal;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.util.PublishHelper;
+/**
+ * Cleans work directories by moving their contents aside, into a "trash"
+ * directory next to the work directory, and deleting the trash in the
+ * background. Renaming a directory is quick even when it holds many thousands
+ * of compiled JSPs, so the server can be restarted right away.
+ */
+public class WorkDirCleaner {
+	/**
+	 * Job family of the jobs deleting trash directories.
+	 */
+	public static final Object DELETE_JOB_FAMILY = new Object();
+
+	private static final String TRASH_SUFFIX = ".trash-";
+
+	// maximum number of threads used to delete a trash directory
+	private static final int MAX_THREADS = 4;
+
+	// how often to check for cancellation, in ms
+	private static final long POLL_INTERVAL = 100;
+
+	private WorkDirCleaner() {
+		// can't create
+	}
+
+	/**
+	 * Creates a new, empty trash directory for the given work directory.
+	 *
+	 * @param workDir a work directory
+	 * @return the trash directory, or null if it could not be created
+	 */
+	public static File createTrashDir(File workDir) {
+		File parent = workDir.getParentFile();
+		if (parent == null)
+			return null;
+
+		String prefix = getTrashPrefix(workDir);
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			File trashDir = new File(parent, prefix + (time + i));
+			if (!trashDir.exists() && trashDir.mkdir())
+				return trashDir;
+		}
+		return null;
+	}
+
+	/**
+	 * Moves the given file or directory into the given trash directory.
+	 *
+	 * @param file the file or directory to move
+	 * @param trashDir a trash directory, as returned by createTrashDir()
+	 * @return true if the file was moved, and false otherwise
+	 */
+	public static boolean moveToTrash(File file, File trashDir) {
+		return file.renameTo(new File(trashDir, file.getName()));
+	}
+
+	/**
+	 * Schedules a job that deletes all trash directories of the given work
+	 * directory, including any left over by earlier cleans that did not
+	 * complete. Empty trash directories are deleted right away.
+	 * <p>
+	 * Only one job runs at a time for each work directory. If a job for the
+	 * work directory is already waiting to run, no new job is scheduled since
+	 * that job will find the new trash when it starts.
+	 * </p>
+	 *
+	 * @param workDir a work directory
+	 */
+	public static void deleteTrash(File workDir) {
+		File[] trashDirs = getTrashDirs(workDir);
+		if (trashDirs.length == 0)
+			return;
+
+		boolean nonEmpty = false;
+		for (File trashDir : trashDirs) {
+			if (!trashDir.delete())
+				nonEmpty = true;
+		}
+		if (!nonEmpty)
+			return;
+
+		Job[] jobs = Job.getJobManager().find(DELETE_JOB_FAMILY);
+		for (Job job : jobs) {
+			if (job.getState() != Job.RUNNING && workDir.equals(((DeleteTrashJob) job).workDir))
+				return;
+		}
+
+		DeleteTrashJob job = new DeleteTrashJob(workDir);
+		job.schedule();
+	}
+
+	private static File[] getTrashDirs(File workDir) {
+		File parent = workDir.getParentFile();
+		if (parent == null)
+			return new File[0];
+
+		final String prefix = getTrashPrefix(workDir);
+		File[] trashDirs = parent.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isDirectory() && file.getName().startsWith(prefix);
+			}
+		});
+		if (trashDirs == null)
+			return new File[0];
+		return trashDirs;
+	}
+
+	private static String getTrashPrefix(File workDir) {
+		return "." + workDir.getName() + TRASH_SUFFIX;
+	}
+
+	/**
+	 * Scheduling rule that keeps two jobs from deleting the trash of the same
+	 * work directory at the same time.
+	 */
+	private static class WorkDirRule implements ISchedulingRule {
+		private File workDir;
+
+		public WorkDirRule(File workDir) {
+			this.workDir = workDir;
+		}
+
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule instanceof WorkDirRule && workDir.equals(((WorkDirRule) rule).workDir);
+		}
+	}
+
+	/**
+	 * Deletes the trash directories of a work directory, as found when the job
+	 * starts. The second level of each trash directory, e.g. the org folder of
+	 * each moved context work directory, is split into separate tasks on a
+	 * small thread pool.
+	 */
+	private static class DeleteTrashJob extends Job {
+		protected File workDir;
+
+		public DeleteTrashJob(File workDir) {
+			super(NLS.bind(Messages.jobDeleteWorkDir, workDir.getAbsolutePath()));
+			this.workDir = workDir;
+			setPriority(Job.LONG);
+			setRule(new WorkDirRule(workDir));
+		}
+
+		public boolean belongsTo(Object family) {
+			return DELETE_JOB_FAMILY.equals(family);
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			File[] trashDirs = getTrashDirs(workDir);
+			List<File> files = new ArrayList<File>();
+			for (File trashDir : trashDirs) {
+				File[] children = trashDir.listFiles();
+				if (children == null)
+					continue;
+				for (File child : children) {
+					File[] grandChildren = child.isDirectory() ? child.listFiles() : null;
+					if (grandChildren == null)
+						files.add(child);
+					else {
+						for (File grandChild : grandChildren)
+							files.add(grandChild);
+					}
+				}
+			}
+
+			MultiStatus ms = new MultiStatus(TomcatPlugin.PLUGIN_ID, 0, "Problem occurred deleting work directory.", null);
+			int size = files.size();
+			monitor.beginTask(getName(), size + trashDirs.length);
+
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(size, MAX_THREADS)), new ThreadFactory() {
+				private int count;
+
+				public synchronized Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Tomcat Work Directory Delete " + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			try {
+				List<Future<IStatus[]>> futures = new ArrayList<Future<IStatus[]>>(size);
+				for (final File file : files) {
+					futures.add(executor.submit(new Callable<IStatus[]>() {
+						public IStatus[] call() throws Exception {
+							return delete(file);
+						}
+					}));
+				}
+
+				for (int i = 0; i < size; i++) {
+					monitor.subTask(NLS.bind(Messages.deletingTask, files.get(i).getAbsolutePath()));
+					IStatus[] results = null;
+					while (results == null) {
+						// anything not deleted is left for the next clean
+						if (monitor.isCanceled())
+							return Status.CANCEL_STATUS;
+						try {
+							results = futures.get(i).get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+						} catch (TimeoutException e) {
+							// keep waiting
+						} catch (InterruptedException e) {
+							// keep waiting
+						} catch (ExecutionException e) {
+							results = new IStatus[] { new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+									e.getCause().getLocalizedMessage(), e.getCause()) };
+						}
+					}
+					for (IStatus result : results)
+						ms.add(result);
+					monitor.worked(1);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			// delete what remains of the trash directories
+			for (File trashDir : trashDirs) {
+				IStatus[] results = PublishHelper.deleteDirectory(trashDir, null);
+				if (results != null) {
+					for (IStatus result : results)
+						ms.add(result);
+				}
+				monitor.worked(1);
+			}
+			monitor.done();
+
+			if (!ms.isOK())
+				Trace.trace(Trace.WARNING, "Could not delete all of the old work directory: " + ms);
+			return ms;
+		}
+
+		protected static IStatus[] delete(File file) {
+			if (file.isDirectory())
+				return PublishHelper.deleteDirectory(file, null);
+			if (file.delete() || !file.exists())
+				return new IStatus[0];
+			return new IStatus[] { new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+					NLS.bind(Messages.errorDeleteFile, file.getAbsolutePath()), null) };
+		}
+	}
+}
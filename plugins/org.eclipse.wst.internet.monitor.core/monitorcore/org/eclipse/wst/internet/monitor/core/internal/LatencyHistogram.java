@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal;
+/**
+ * A histogram of latencies with a fixed relative precision, in the style of
+ * HdrHistogram.
+ * <p>
+ * Values below 64 are counted exactly. Larger values are counted in buckets
+ * that split each power of two into 32 parts, so every value is recorded
+ * within about 3% of its real value. The histogram only grows when a larger
+ * value than any before is recorded, and never holds more than about a
+ * thousand counters, no matter how many values are recorded.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+	private long[] counts = new long[SUB_BUCKET_COUNT];
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	private long sum;
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value a value; negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+
+		int index = getIndex(value);
+		if (index >= counts.length) {
+			long[] counts2 = new long[index + SUB_BUCKET_HALF];
+			System.arraycopy(counts, 0, counts2, 0, counts.length);
+			counts = counts2;
+		}
+		counts[index]++;
+		count++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest recorded value, or 0 if there are no values.
+	 *
+	 * @return the smallest value
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * Returns the largest recorded value, or 0 if there are no values.
+	 *
+	 * @return the largest value
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the mean of the recorded values, or 0 if there are no values.
+	 *
+	 * @return the mean value
+	 */
+	public long getMean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	/**
+	 * Returns the value that the given percentage of recorded values are
+	 * less than or equal to, within the precision of the histogram.
+	 *
+	 * @param percentile a percentile, between 0 and 100
+	 * @return the value at the percentile, or 0 if there are no values
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+
+		double p = Math.min(Math.max(percentile, 0), 100);
+		long target = Math.max(1, (long) Math.ceil(p / 100 * count));
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			if (total >= target)
+				return Math.min(max, Math.max(min, getHighestValue(i)));
+		}
+		return max;
+	}
+
+	/**
+	 * Returns a copy of this histogram.
+	 *
+	 * @return a copy
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.counts = new long[counts.length];
+		System.arraycopy(counts, 0, h.counts, 0, counts.length);
+		h.count = count;
+		h.min = min;
+		h.max = max;
+		h.sum = sum;
+		return h;
+	}
+
+	/**
+	 * Returns the index of the bucket that counts the given value.
+	 */
+	protected static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		// value >>> shift is in [SUB_BUCKET_HALF, SUB_BUCKET_COUNT)
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		int sub = (int) (value >>> shift);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (sub - SUB_BUCKET_HALF);
+	}
+
+	/**
+	 * Returns the smallest value that is counted in the given bucket.
+	 */
+	protected static long getLowestValue(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		int i = index - SUB_BUCKET_COUNT;
+		int shift = i / SUB_BUCKET_HALF + 1;
+		long sub = i % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return sub << shift;
+	}
+
+	/**
+	 * Returns the largest value that is counted in the given bucket.
+	 */
+	protected static long getHighestValue(int index) {
+		return getLowestValue(index + 1) - 1;
+	}
+}
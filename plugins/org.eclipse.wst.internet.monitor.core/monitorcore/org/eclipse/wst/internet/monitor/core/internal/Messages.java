@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,9 @@ public class Messages extends NLS {
 	public static String monitorValid;
 	public static String errorPortInUse;
 	public static String errorContentSize;
+	public static String errorReplayRequest;
+	public static String errorReplayResponse;
+	public static String replayTask;
 
 	static {
 		NLS.initializeMessages(MonitorPlugin.PLUGIN_ID + ".internal.Messages", Messages.class);
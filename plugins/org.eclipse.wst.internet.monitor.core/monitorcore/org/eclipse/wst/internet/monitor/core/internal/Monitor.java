@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,6 +43,8 @@ public class Monitor implements IMonitor {
 
 	protected List<IRequestListener> requestListeners = new ArrayList<IRequestListener>(2);
 
+	protected MonitorStatistics statistics = new MonitorStatistics();
+
 	/**
 	 * Create a new monitor.
 	 */
@@ -108,6 +110,13 @@ public class Monitor implements IMonitor {
 		return MonitorManager.getInstance().isRunning(this);
 	}
 	
+	/** (non-Javadoc)
+	 * @see IMonitor#getStatistics()
+	 */
+	public MonitorStatistics getStatistics() {
+		return statistics;
+	}
+
 	/**
 	 * @see IMonitor#delete()
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.wst.internet.monitor.core.internal;
 
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitorWorkingCopy;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.MonitorStatistics;
 /**
  * 
  */
@@ -94,6 +95,15 @@ public class MonitorWorkingCopy extends Monitor implements IMonitorWorkingCopy {
 		autoStart = startByDefault;
 	}
 
+	/** (non-Javadoc)
+	 * @see IMonitor#getStatistics()
+	 */
+	public MonitorStatistics getStatistics() {
+		if (monitor != null)
+			return monitor.getStatistics();
+		return super.getStatistics();
+	}
+
 	/**
 	 * @see IMonitor#isWorkingCopy()
 	 */
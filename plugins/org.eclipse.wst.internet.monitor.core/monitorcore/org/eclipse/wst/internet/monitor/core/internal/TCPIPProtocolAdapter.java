@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,9 +30,10 @@ public class TCPIPProtocolAdapter extends ProtocolAdapterDelegate {
 		Request request = new Request((Monitor) monitor, IProtocolAdapter.TCPIP_PROTOCOL_ID, monitor.getLocalPort(), monitor.getRemoteHost(), monitor.getRemotePort());
 		Connection conn = new Connection(in, out);
 		map.put(monitor, conn);
+		monitor.getStatistics().connectionOpened();
 		TCPIPThread requestThread = new TCPIPThread(conn, request, in.getInputStream(), out.getOutputStream(), true);
 		requestThread.start();
-		new TCPIPThread(conn, request, out.getInputStream(), in.getOutputStream(), false).start();
+		new TCPIPThread(conn, request, out.getInputStream(), in.getOutputStream(), requestThread).start();
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.wst.internet.monitor.core.internal;
 
 import java.io.*;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 /**
  * Monitor server I/O thread.
@@ -23,6 +24,12 @@ public class TCPIPThread extends Thread {
 	
 	protected Connection conn;
 	protected Request request;
+	protected TCPIPThread requestThread;
+
+	// number of bytes forwarded, and the times of the first and last bytes
+	protected volatile long bytes;
+	protected volatile long firstTime;
+	protected long lastTime;
 
 	/**
 	 * Create a new TCP/IP thread.
@@ -44,6 +51,20 @@ public class TCPIPThread extends Thread {
 		setDaemon(true);
 	}
 
+	/**
+	 * Create a new TCP/IP response thread.
+	 * 
+	 * @param conn
+	 * @param request
+	 * @param in
+	 * @param out
+	 * @param requestThread the thread that forwards the request
+	 */
+	public TCPIPThread(Connection conn, Request request, InputStream in, OutputStream out, TCPIPThread requestThread) {
+		this(conn, request, in, out, false);
+		this.requestThread = requestThread;
+	}
+
 	/**
 	 * Listen for input, save it, and pass to the output stream.
 	 */
@@ -52,7 +73,11 @@ public class TCPIPThread extends Thread {
 			byte[] b = new byte[BUFFER];
 			int n = in.read(b);
 			while (n > 0) {
+				if (bytes == 0)
+					firstTime = System.nanoTime();
 				out.write(b, 0, n);
+				bytes += n;
+				lastTime = System.nanoTime();
 				if (b != null && n > 0) {
 					byte[] x = null;
 					if (n == BUFFER)
@@ -74,8 +99,30 @@ public class TCPIPThread extends Thread {
 			// ignore
 		} finally {
 			//request.fireChangedEvent();
-			if (!isRequest)
+			if (!isRequest) {
 				conn.close();
+				recordStatistics();
+			}
+		}
+	}
+
+	/**
+	 * Adds the connection to the monitor's statistics, with the latency from
+	 * the first byte of the request to the last byte of the response.
+	 */
+	protected void recordStatistics() {
+		IMonitor monitor = request.getMonitor();
+		if (monitor == null)
+			return;
+		
+		long bytesIn = 0;
+		long latency = -1;
+		if (requestThread != null) {
+			bytesIn = requestThread.bytes;
+			long start = requestThread.firstTime;
+			if (start != 0 && bytes > 0)
+				latency = (lastTime - start) / 1000;
 		}
+		monitor.getStatistics().record(null, null, latency, bytesIn, bytes, false);
 	}
 }
\ No newline at end of file
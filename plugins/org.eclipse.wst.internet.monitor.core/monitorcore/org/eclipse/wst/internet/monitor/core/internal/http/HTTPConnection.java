@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,8 +13,10 @@ package org.eclipse.wst.internet.monitor.core.internal.http;
 import org.eclipse.wst.internet.monitor.core.internal.Monitor;
 import org.eclipse.wst.internet.monitor.core.internal.Trace;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.MonitorStatistics;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ArrayList;
 /**
@@ -30,6 +32,30 @@ public class HTTPConnection {
 
 	protected List<Request> requests = new ArrayList<Request>();
 
+	/**
+	 * A request whose response has not been completed yet.
+	 */
+	private static class Exchange {
+		String path;
+		int method;
+		long start;
+		long bytesIn;
+		boolean reused;
+		boolean persistent = true;
+	}
+
+	// exchanges in the order that their responses are expected; guarded by this
+	private LinkedList<Exchange> exchanges = new LinkedList<Exchange>();
+	private int exchangeCount;
+
+	// true once the client has stopped sending requests, and once the
+	// connection has been closed; guarded by this
+	private boolean requestsEnded;
+	private boolean closed;
+
+	// true once the server has switched the connection to another protocol
+	private volatile boolean tunnel;
+
 	/**
 	 * HTTPConnection constructor comment.
 	 * 
@@ -41,6 +67,138 @@ public class HTTPConnection {
 		if (Trace.PARSING) {
 			Trace.trace(Trace.STRING_PARSING, "TCP/IP monitor connection opened " + monitor);
 		}
+		MonitorStatistics stats = getStatistics();
+		if (stats != null)
+			stats.connectionOpened();
+	}
+
+	/**
+	 * Returns the statistics that this connection is recorded in, or
+	 * <code>null</code> if there are none.
+	 * 
+	 * @return the statistics, or <code>null</code>
+	 */
+	protected MonitorStatistics getStatistics() {
+		if (monitor == null)
+			return null;
+		return monitor.getStatistics();
+	}
+
+	/**
+	 * Records that the client has started sending a request. Called when the
+	 * request line is received, before it is sent to the server.
+	 * 
+	 * @param path the URL path, or <code>null</code> if it is not known
+	 * @param method the request method, one of the HTTPParser.METHOD_*
+	 *    constants
+	 */
+	public void requestStarted(String path, int method) {
+		Exchange e = new Exchange();
+		e.path = path;
+		e.method = method;
+		e.start = System.nanoTime();
+		synchronized (this) {
+			e.reused = exchangeCount++ > 0;
+			exchanges.add(e);
+		}
+	}
+
+	/**
+	 * Records that the client has sent a complete request.
+	 * 
+	 * @param bytes the number of bytes in the request
+	 * @param persistent <code>false</code> if the client asked for the
+	 *    connection to be closed after the response
+	 */
+	public synchronized void requestDone(long bytes, boolean persistent) {
+		if (!exchanges.isEmpty()) {
+			Exchange e = exchanges.getLast();
+			e.bytesIn = bytes;
+			e.persistent = persistent;
+		}
+	}
+
+	/**
+	 * Returns the method of the request that the next response is for.
+	 * 
+	 * @return one of the HTTPParser.METHOD_* constants
+	 */
+	public synchronized int getResponseMethod() {
+		if (exchanges.isEmpty())
+			return HTTPParser.METHOD_OTHER;
+		return exchanges.getFirst().method;
+	}
+
+	/**
+	 * Records that the server has sent a complete response, and adds the
+	 * request to the monitor's statistics. Returns <code>true</code> if
+	 * the connection should now be closed, because the client asked for it
+	 * or has stopped sending requests and has no more responses to wait for.
+	 * 
+	 * @param status the status code, or <code>null</code> if it is not known
+	 * @param bytes the number of bytes in the response
+	 * @return <code>true</code> if the connection should be closed
+	 */
+	public boolean responseDone(String status, long bytes) {
+		Exchange e = null;
+		boolean close;
+		synchronized (this) {
+			if (!exchanges.isEmpty())
+				e = exchanges.removeFirst();
+			close = (e != null && !e.persistent) || (requestsEnded && exchanges.isEmpty());
+		}
+		MonitorStatistics stats = getStatistics();
+		if (stats != null) {
+			if (e == null)
+				stats.record(null, status, -1, 0, bytes, false);
+			else
+				stats.record(e.path, status, (System.nanoTime() - e.start) / 1000, e.bytesIn, bytes, e.reused);
+		}
+		return close;
+	}
+
+	/**
+	 * Records that the server has accepted a protocol upgrade or a CONNECT
+	 * request. The rest of the client's stream is not HTTP, and must be passed
+	 * through as soon as it arrives.
+	 */
+	public void startTunnel() {
+		tunnel = true;
+	}
+
+	/**
+	 * Returns true if the server has switched the connection to another
+	 * protocol.
+	 * 
+	 * @return <code>true</code> if the connection is a tunnel
+	 */
+	public boolean isTunnel() {
+		return tunnel;
+	}
+
+	/**
+	 * Records that the client has stopped sending requests. Returns
+	 * <code>true</code> if the connection should now be closed, because
+	 * there are no more responses to wait for.
+	 * 
+	 * @return <code>true</code> if the connection should be closed
+	 */
+	public synchronized boolean requestsEnded() {
+		requestsEnded = true;
+		return exchanges.isEmpty();
+	}
+
+	/**
+	 * Marks the connection as closed, and returns <code>true</code> the
+	 * first time it is called so that the connection is only closed once.
+	 * 
+	 * @return <code>true</code> if the connection had not been closed yet
+	 */
+	public synchronized boolean setClosed() {
+		if (closed)
+			return false;
+		closed = true;
+		return true;
 	}
 
 	/**
@@ -0,0 +1,711 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal.http;
+
+import java.nio.ByteBuffer;
+/**
+ * An incremental HTTP/1.1 message parser.
+ * <p>
+ * The parser reads a stream of messages from a heap byte buffer, without
+ * copying or allocating. Each call to {@link #next(ByteBuffer)} consumes one
+ * token (a start line, a header line, the end of the header, or a run of body
+ * bytes), advances the buffer's position past it, and returns the kind of
+ * token. The token's bytes stay in the buffer's backing array between
+ * {@link #getStart()} and {@link #getEnd()} until the caller refills the buffer.
+ * When the buffer does not hold a full line, {@link #NEED_MORE} is returned
+ * and the buffer is left as is, so the caller can compact and refill it.
+ * </p>
+ * <p>
+ * The message length is worked out as in RFC 7230, section 3.3.3, so
+ * keep-alive connections, pipelined messages, chunked bodies with trailers,
+ * interim (1xx) responses and bodies that end when the connection closes are
+ * all handled. Since the parser of responses can't see the requests, the
+ * method of the request that each response is for must be set with
+ * {@link #setRequestMethod(int)}.
+ * </p>
+ * <p>
+ * Once a malformed message is found, {@link #ERROR} is returned and the
+ * buffer is left at the start of the bad line; the rest of the stream
+ * should be passed through as is.
+ * </p>
+ */
+public class HTTPParser {
+	/**
+	 * More bytes are needed.
+	 */
+	public static final int NEED_MORE = 0;
+
+	/**
+	 * The request or status line.
+	 */
+	public static final int START_LINE = 1;
+
+	/**
+	 * A header line. The header is identified by {@link #getHeader()}.
+	 */
+	public static final int HEADER = 2;
+
+	/**
+	 * The blank line at the end of the header.
+	 */
+	public static final int HEADER_END = 3;
+
+	/**
+	 * Message body bytes, without any chunk framing.
+	 */
+	public static final int BODY = 4;
+
+	/**
+	 * Bytes that are not part of the message content: chunk sizes and
+	 * delimiters, trailers, and blank lines between messages.
+	 */
+	public static final int FRAMING = 5;
+
+	/**
+	 * The end of a message. There are no token bytes.
+	 */
+	public static final int MESSAGE_END = 6;
+
+	/**
+	 * The stream is not valid HTTP.
+	 */
+	public static final int ERROR = 7;
+
+	/**
+	 * A header that is not interpreted by the parser.
+	 */
+	public static final int HEADER_OTHER = 0;
+
+	/**
+	 * The Host header.
+	 */
+	public static final int HEADER_HOST = 1;
+
+	/**
+	 * The Content-Length header.
+	 */
+	public static final int HEADER_CONTENT_LENGTH = 2;
+
+	/**
+	 * The Transfer-Encoding header.
+	 */
+	public static final int HEADER_TRANSFER_ENCODING = 3;
+
+	/**
+	 * The Connection header.
+	 */
+	public static final int HEADER_CONNECTION = 4;
+
+	/**
+	 * The Expect header.
+	 */
+	public static final int HEADER_EXPECT = 5;
+
+	/**
+	 * A request method whose response is parsed normally.
+	 */
+	public static final int METHOD_OTHER = 0;
+
+	/**
+	 * The HEAD method, whose responses have no body.
+	 */
+	public static final int METHOD_HEAD = 1;
+
+	/**
+	 * The CONNECT method, whose successful responses start a tunnel.
+	 */
+	public static final int METHOD_CONNECT = 2;
+
+	/**
+	 * The longest line that is accepted.
+	 */
+	public static final int MAX_LINE = 64 * 1024;
+
+	private static final byte CR = (byte) '\r';
+	private static final byte LF = (byte) '\n';
+	private static final byte SP = (byte) ' ';
+	private static final byte HT = (byte) '\t';
+
+	private static final byte[][] HEADER_NAMES = new byte[][] {
+		null, getBytes("host"), getBytes("content-length"), getBytes("transfer-encoding"),
+		getBytes("connection"), getBytes("expect") };
+
+	private static final byte[] HEAD = getBytes("HEAD");
+	private static final byte[] CONNECT = getBytes("CONNECT");
+	private static final byte[] HTTP_VERSION = getBytes("HTTP/1.");
+	private static final byte[] CHUNKED = getBytes("chunked");
+	private static final byte[] CLOSE = getBytes("close");
+	private static final byte[] KEEP_ALIVE = getBytes("keep-alive");
+	private static final byte[] CONTINUE = getBytes("100-continue");
+
+	private static final int STATE_START = 0;
+	private static final int STATE_HEADER = 1;
+	private static final int STATE_LENGTH = 2;
+	private static final int STATE_CHUNK_SIZE = 3;
+	private static final int STATE_CHUNK_DATA = 4;
+	private static final int STATE_CHUNK_END = 5;
+	private static final int STATE_TRAILER = 6;
+	private static final int STATE_UNTIL_CLOSE = 7;
+	private static final int STATE_END = 8;
+	private static final int STATE_ERROR = 9;
+
+	private boolean isRequest;
+	private int state = STATE_START;
+
+	// number of bytes of the current line that have been searched for its end
+	private int scanned;
+
+	// the last token
+	private int start;
+	private int end;
+
+	// the current message
+	private int minorVersion;
+	private int method;
+	private int status;
+	private int header;
+	private long contentLength;
+	private boolean transferEncoding;
+	private boolean chunked;
+	private boolean close;
+	private boolean keepAlive;
+	private boolean expectContinue;
+	private boolean body;
+	private boolean untilClose;
+	private long remaining;
+
+	// the method of the request that the next response is for
+	private int requestMethod;
+
+	/**
+	 * Create a new parser.
+	 *
+	 * @param isRequest <code>true</code> to parse requests, or
+	 *    <code>false</code> to parse responses
+	 */
+	public HTTPParser(boolean isRequest) {
+		this.isRequest = isRequest;
+	}
+
+	/**
+	 * Sets the method of the request that the response being parsed is for.
+	 * Must be set before the end of the response header.
+	 *
+	 * @param method one of the METHOD_* constants
+	 */
+	public void setRequestMethod(int method) {
+		requestMethod = method;
+	}
+
+	/**
+	 * Parses the next token from the buffer.
+	 *
+	 * @param buf a heap byte buffer with the bytes to parse between its
+	 *    position and limit
+	 * @return the kind of token
+	 */
+	public int next(ByteBuffer buf) {
+		byte[] b = buf.array();
+		int pos = buf.arrayOffset() + buf.position();
+		int lim = buf.arrayOffset() + buf.limit();
+
+		switch (state) {
+			case STATE_ERROR:
+				return ERROR;
+			case STATE_END:
+				state = STATE_START;
+				start = pos;
+				end = pos;
+				return MESSAGE_END;
+			case STATE_LENGTH:
+			case STATE_CHUNK_DATA:
+			case STATE_UNTIL_CLOSE: {
+				if (pos == lim)
+					return NEED_MORE;
+				int n = lim - pos;
+				if (state != STATE_UNTIL_CLOSE) {
+					if (n > remaining)
+						n = (int) remaining;
+					remaining -= n;
+					if (remaining == 0)
+						state = (state == STATE_LENGTH) ? STATE_END : STATE_CHUNK_END;
+				}
+				consume(buf, pos, pos + n);
+				return BODY;
+			}
+		}
+
+		// the other states read a line at a time
+		int eol = -1;
+		for (int i = pos + scanned; i < lim; i++) {
+			if (b[i] == LF) {
+				eol = i + 1;
+				break;
+			}
+		}
+		if (eol < 0) {
+			scanned = lim - pos;
+			if (scanned > MAX_LINE)
+				return error();
+			return NEED_MORE;
+		}
+		int lineEnd = eol - 1;
+		if (lineEnd > pos && b[lineEnd - 1] == CR)
+			lineEnd--;
+
+		int event;
+		switch (state) {
+			case STATE_START:
+				// blank lines before a message are ignored
+				if (lineEnd == pos) {
+					event = FRAMING;
+					break;
+				}
+				if (!parseStartLine(b, pos, lineEnd))
+					return error();
+				state = STATE_HEADER;
+				event = START_LINE;
+				break;
+			case STATE_HEADER:
+				if (lineEnd == pos) {
+					if (!parseHeaderEnd())
+						return error();
+					event = HEADER_END;
+					break;
+				}
+				header = parseHeader(b, pos, lineEnd);
+				if (header < 0)
+					return error();
+				event = HEADER;
+				break;
+			case STATE_CHUNK_SIZE:
+				remaining = parseChunkSize(b, pos, lineEnd);
+				if (remaining < 0)
+					return error();
+				state = (remaining == 0) ? STATE_TRAILER : STATE_CHUNK_DATA;
+				event = FRAMING;
+				break;
+			case STATE_CHUNK_END:
+				if (lineEnd != pos)
+					return error();
+				state = STATE_CHUNK_SIZE;
+				event = FRAMING;
+				break;
+			default: // STATE_TRAILER
+				if (lineEnd == pos)
+					state = STATE_END;
+				else if (b[pos] != SP && b[pos] != HT && indexOf(b, pos, lineEnd, (byte) ':') <= pos)
+					return error();
+				event = FRAMING;
+				break;
+		}
+		consume(buf, pos, eol);
+		return event;
+	}
+
+	/**
+	 * Tells the parser that there is no more input. Returns <code>true</code>
+	 * if this completes a message whose body is ended by closing the
+	 * connection.
+	 *
+	 * @return <code>true</code> if a message is complete
+	 */
+	public boolean endOfInput() {
+		if (state == STATE_UNTIL_CLOSE) {
+			state = STATE_START;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index in the buffer's array of the first byte of the last
+	 * token.
+	 *
+	 * @return the start of the token
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the index in the buffer's array after the last byte of the last
+	 * token.
+	 *
+	 * @return the end of the token
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the header of the last {@link #HEADER} token.
+	 *
+	 * @return one of the HEADER_* constants
+	 */
+	public int getHeader() {
+		return header;
+	}
+
+	/**
+	 * Returns the method of the current request.
+	 *
+	 * @return one of the METHOD_* constants
+	 */
+	public int getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the status code of the current response.
+	 *
+	 * @return the status code
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns true if the current message has a body.
+	 *
+	 * @return <code>true</code> if the message has a body
+	 */
+	public boolean hasBody() {
+		return body;
+	}
+
+	/**
+	 * Returns true if the current message has a chunked body.
+	 *
+	 * @return <code>true</code> if the body is chunked
+	 */
+	public boolean isChunked() {
+		return body && chunked;
+	}
+
+	/**
+	 * Returns true if the current request expects a 100 (Continue) response
+	 * before it sends its body.
+	 *
+	 * @return <code>true</code> if the request expects 100-continue
+	 */
+	public boolean isExpectContinue() {
+		return expectContinue;
+	}
+
+	/**
+	 * Returns true if the current response is an interim (1xx) response,
+	 * which is followed by another response to the same request.
+	 *
+	 * @return <code>true</code> if the response is interim
+	 */
+	public boolean isInterim() {
+		return !isRequest && status >= 100 && status < 200 && status != 101;
+	}
+
+	/**
+	 * Returns true if the current response switches the connection to another
+	 * protocol: a 101 (Switching Protocols) response, or a successful response
+	 * to a CONNECT request.
+	 *
+	 * @return <code>true</code> if the connection becomes a tunnel
+	 */
+	public boolean isTunnel() {
+		if (isRequest)
+			return false;
+		return status == 101 || (requestMethod == METHOD_CONNECT && status >= 200 && status < 300);
+	}
+
+	/**
+	 * Returns true if the connection may be used for another message after
+	 * the current one.
+	 *
+	 * @return <code>true</code> if the connection is persistent
+	 */
+	public boolean isPersistent() {
+		if (close || untilClose)
+			return false;
+		return minorVersion > 0 || keepAlive;
+	}
+
+	private void consume(ByteBuffer buf, int from, int to) {
+		start = from;
+		end = to;
+		scanned = 0;
+		buf.position(to - buf.arrayOffset());
+	}
+
+	private int error() {
+		state = STATE_ERROR;
+		return ERROR;
+	}
+
+	private boolean parseStartLine(byte[] b, int pos, int lineEnd) {
+		minorVersion = 0;
+		method = METHOD_OTHER;
+		status = 0;
+		header = HEADER_OTHER;
+		contentLength = -1;
+		transferEncoding = false;
+		chunked = false;
+		close = false;
+		keepAlive = false;
+		expectContinue = false;
+		body = false;
+		untilClose = false;
+
+		if (isRequest) {
+			// method SP request-target SP HTTP-version
+			int sp1 = indexOf(b, pos, lineEnd, SP);
+			if (sp1 <= pos)
+				return false;
+			for (int i = pos; i < sp1; i++) {
+				if (!isTokenChar(b[i]))
+					return false;
+			}
+			int sp2 = indexOf(b, sp1 + 1, lineEnd, SP);
+			if (sp2 <= sp1 + 1)
+				return false;
+			for (int i = sp1 + 1; i < sp2; i++) {
+				if (b[i] <= SP && b[i] >= 0)
+					return false;
+			}
+			if (!parseVersion(b, sp2 + 1, lineEnd))
+				return false;
+
+			if (equals(b, pos, sp1, HEAD, false))
+				method = METHOD_HEAD;
+			else if (equals(b, pos, sp1, CONNECT, false))
+				method = METHOD_CONNECT;
+			return true;
+		}
+
+		// HTTP-version SP status-code SP [ reason-phrase ]
+		int sp = indexOf(b, pos, lineEnd, SP);
+		if (sp < 0 || !parseVersion(b, pos, sp) || sp + 4 > lineEnd)
+			return false;
+		for (int i = sp + 1; i < sp + 4; i++) {
+			if (b[i] < '0' || b[i] > '9')
+				return false;
+			status = status * 10 + (b[i] - '0');
+		}
+		return status >= 100 && (sp + 4 == lineEnd || b[sp + 4] == SP);
+	}
+
+	private boolean parseVersion(byte[] b, int from, int to) {
+		if (to - from != HTTP_VERSION.length + 1 || !equals(b, from, to - 1, HTTP_VERSION, false))
+			return false;
+		byte c = b[to - 1];
+		if (c < '0' || c > '9')
+			return false;
+		minorVersion = c - '0';
+		return true;
+	}
+
+	/**
+	 * Returns the kind of header on the line, or -1 if the line is malformed.
+	 */
+	private int parseHeader(byte[] b, int pos, int lineEnd) {
+		// obsolete line folding continues the previous header
+		if (b[pos] == SP || b[pos] == HT)
+			return HEADER_OTHER;
+
+		int colon = indexOf(b, pos, lineEnd, (byte) ':');
+		if (colon <= pos)
+			return -1;
+		for (int i = pos; i < colon; i++) {
+			if (!isTokenChar(b[i]))
+				return -1;
+		}
+
+		int kind = HEADER_OTHER;
+		for (int i = 1; i < HEADER_NAMES.length; i++) {
+			if (equals(b, pos, colon, HEADER_NAMES[i], true)) {
+				kind = i;
+				break;
+			}
+		}
+		if (kind == HEADER_OTHER || kind == HEADER_HOST)
+			return kind;
+
+		// trim the value
+		int from = colon + 1;
+		int to = lineEnd;
+		while (from < to && (b[from] == SP || b[from] == HT))
+			from++;
+		while (to > from && (b[to - 1] == SP || b[to - 1] == HT))
+			to--;
+
+		if (kind == HEADER_CONTENT_LENGTH) {
+			long length = parseContentLength(b, from, to);
+			if (length < 0 || (contentLength >= 0 && length != contentLength))
+				return -1;
+			contentLength = length;
+		} else if (kind == HEADER_TRANSFER_ENCODING) {
+			// the body is chunked only if chunked is the last coding
+			transferEncoding = true;
+			int comma = from - 1;
+			for (int i = from; i < to; i++) {
+				if (b[i] == ',')
+					comma = i;
+			}
+			int from2 = comma + 1;
+			while (from2 < to && (b[from2] == SP || b[from2] == HT))
+				from2++;
+			chunked = equals(b, from2, to, CHUNKED, true);
+		} else if (kind == HEADER_CONNECTION) {
+			int from2 = from;
+			while (from2 < to) {
+				int to2 = indexOf(b, from2, to, (byte) ',');
+				if (to2 < 0)
+					to2 = to;
+				int end2 = to2;
+				while (from2 < end2 && (b[from2] == SP || b[from2] == HT))
+					from2++;
+				while (end2 > from2 && (b[end2 - 1] == SP || b[end2 - 1] == HT))
+					end2--;
+				if (equals(b, from2, end2, CLOSE, true))
+					close = true;
+				else if (equals(b, from2, end2, KEEP_ALIVE, true))
+					keepAlive = true;
+				from2 = to2 + 1;
+			}
+		} else if (kind == HEADER_EXPECT) {
+			expectContinue = equals(b, from, to, CONTINUE, true);
+		}
+		return kind;
+	}
+
+	/**
+	 * Works out how the body of the message is delimited, and returns false
+	 * if it can't be.
+	 */
+	private boolean parseHeaderEnd() {
+		body = true;
+		if (isRequest) {
+			if (transferEncoding) {
+				// a request body must be chunked if it has a transfer coding
+				if (!chunked)
+					return false;
+				state = STATE_CHUNK_SIZE;
+			} else if (contentLength > 0) {
+				remaining = contentLength;
+				state = STATE_LENGTH;
+			} else {
+				body = false;
+				state = STATE_END;
+			}
+			return true;
+		}
+
+		if (requestMethod == METHOD_HEAD || isInterim() || status == 204 || status == 304) {
+			body = false;
+			state = STATE_END;
+		} else if (isTunnel()) {
+			// the connection is now a tunnel
+			untilClose = true;
+		} else if (transferEncoding) {
+			if (chunked)
+				state = STATE_CHUNK_SIZE;
+			else
+				untilClose = true;
+		} else if (contentLength == 0) {
+			state = STATE_END;
+		} else if (contentLength > 0) {
+			remaining = contentLength;
+			state = STATE_LENGTH;
+		} else
+			untilClose = true;
+
+		if (untilClose)
+			state = STATE_UNTIL_CLOSE;
+		return true;
+	}
+
+	private static long parseContentLength(byte[] b, int from, int to) {
+		if (from == to || to - from > 18)
+			return -1;
+		long n = 0;
+		for (int i = from; i < to; i++) {
+			if (b[i] < '0' || b[i] > '9')
+				return -1;
+			n = n * 10 + (b[i] - '0');
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the size of a chunk, ignoring any chunk extensions, or -1 if
+	 * the line is malformed.
+	 */
+	private static long parseChunkSize(byte[] b, int pos, int lineEnd) {
+		long n = 0;
+		int i = pos;
+		for (; i < lineEnd; i++) {
+			int d = Character.digit(b[i], 16);
+			if (d < 0)
+				break;
+			if (i - pos >= 15)
+				return -1;
+			n = n * 16 + d;
+		}
+		if (i == pos)
+			return -1;
+		while (i < lineEnd && (b[i] == SP || b[i] == HT))
+			i++;
+		if (i < lineEnd && b[i] != ';')
+			return -1;
+		return n;
+	}
+
+	private static boolean isTokenChar(byte c) {
+		if (c <= SP || c >= 127)
+			return false;
+		switch (c) {
+			case '(': case ')': case '<': case '>': case '@': case ',': case ';': case ':':
+			case '\\': case '"': case '/': case '[': case ']': case '?': case '=': case '{': case '}':
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(byte[] b, int from, int to, byte c) {
+		for (int i = from; i < to; i++) {
+			if (b[i] == c)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if the bytes are equal to the given ASCII string, which
+	 * must be in lower case if the comparison ignores case.
+	 */
+	private static boolean equals(byte[] b, int from, int to, byte[] s, boolean ignoreCase) {
+		if (to - from != s.length)
+			return false;
+		for (int i = 0; i < s.length; i++) {
+			byte c = b[from + i];
+			if (ignoreCase && c >= 'A' && c <= 'Z')
+				c = (byte) (c + ('a' - 'A'));
+			if (c != s[i])
+				return false;
+		}
+		return true;
+	}
+
+	private static byte[] getBytes(String s) {
+		byte[] b = new byte[s.length()];
+		for (int i = 0; i < b.length; i++)
+			b[i] = (byte) s.charAt(i);
+		return b;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,70 +11,96 @@
 package org.eclipse.wst.internet.monitor.core.internal.http;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+
 import org.eclipse.wst.internet.monitor.core.internal.Connection;
 import org.eclipse.wst.internet.monitor.core.internal.Messages;
 import org.eclipse.wst.internet.monitor.core.internal.Trace;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 /**
  * Monitor server I/O thread.
+ * <p>
+ * Messages are read into a reusable buffer and parsed by an
+ * {@link HTTPParser}. Each message header is forwarded in one write once it is
+ * complete, with the Host header of requests translated, and body bytes are
+ * forwarded straight from the buffer as they arrive. Requests are forwarded
+ * as soon as they are received, so pipelined requests are not held back
+ * waiting for earlier responses; the responses are matched to the requests
+ * in order by the {@link HTTPConnection}. If a message can't be parsed, the
+ * rest of the stream is passed through as is.
+ * </p>
  */
 public class HTTPThread extends Thread {
-	private static final int BUFFER = 2048;
-	private static final byte CR = (byte) '\r';
-	private static final byte LF = (byte) '\n';
+	private static final int BUFFER = 8192;
+
+	// largest message body that is kept for display
+	private static final int MAX_CAPTURE = 1024 * 1024;
+
+	// capture buffers that grow larger than this are not kept between messages
+	private static final int MAX_RETAINED = 64 * 1024;
+
+	private static final String[] STATUS = new String[600];
+
 	protected static int threadCount = 0;
 
-	private byte[] readBuffer = new byte[BUFFER];
+	// unread input is between the buffer's position and limit
+	protected ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+	protected HTTPParser parser;
 
-	// buffer and index
-	protected byte[] buffer = new byte[0];
-	protected int bufferIndex = 0;
+	// the header of the current message, and its body as sent and without
+	// chunk framing
+	protected ByteArrayOutputStream header = new ByteArrayOutputStream(512);
+	protected ByteArrayOutputStream captured = new ByteArrayOutputStream(BUFFER);
+	protected ByteArrayOutputStream content = new ByteArrayOutputStream(BUFFER);
+	protected boolean overflow;
 
 	protected InputStream in;
 	protected OutputStream out;
 	protected HTTPConnection conn;
 	protected boolean isRequest;
 	protected Connection conn2;
-	
+
+	// the request thread of the same connection, for response threads
 	protected HTTPThread request;
-	protected boolean isWaiting;
-	
+
 	// user to translate the Host: header
 	protected String host;
 	protected int port;
+	protected byte[] hostHeader;
 
-	protected int contentLength = -1;
-	protected byte transferEncoding = -1;
 	protected String responseType = null;
-	protected boolean connectionKeepAlive = false;
-	protected boolean connectionClose = false;
 
-	protected static final String[] ENCODING_STRING = new String[] {
-		"chunked", "identity", "gzip", "compressed", "deflate"};
+	// true if a message has been started, and if the next response data
+	// starts a new response
+	protected boolean started;
+	protected boolean newResponse = true;
 
-	protected static final byte ENCODING_CHUNKED = 0;
-	protected static final byte ENCODING_IDENTITY = 1;
-	protected static final byte ENCODING_GZIP = 2;
-	protected static final byte ENCODING_COMPRESSED = 3;
-	protected static final byte ENCODING_DEFLATE = 4;
+	// number of bytes forwarded so far, and at the start of the current message
+	protected long bytesWritten;
+	protected long messageStart;
 
-/* change:
-Referer: http://localhost:8081/index.html
-Host: localhost:8081
-*/
-/* The Connection header has the following grammar:
+	/**
+	 * An output stream that counts the bytes written to it.
+	 */
+	protected class CountingOutputStream extends FilterOutputStream {
+		protected CountingOutputStream(OutputStream out) {
+			super(out);
+		}
 
-	   Connection = "Connection" ":" 1#(connection-token)
-	   connection-token  = token
+		public void write(int b) throws IOException {
+			out.write(b);
+			bytesWritten++;
+		}
 
-   HTTP/1.1 proxies MUST parse the Connection header field before a
-   message is forwarded and, for each connection-token in this field,
-   remove any header field(s) from the message with the same name as the
-   connection-token. */
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			bytesWritten += len;
+		}
+	}
 
 	/**
 	 * Create a new HTTP thread.
-	 * 
+	 *
 	 * @param conn2
 	 * @param in
 	 * @param out
@@ -87,24 +113,32 @@ Host: localhost:8081
 		super("TCP/IP Monitor HTTP Connection");
 		this.conn2 = conn2;
 		this.in = in;
-		this.out = out;
+		this.out = new CountingOutputStream(out);
 		this.conn = conn;
 		this.isRequest = isRequest;
 		this.host = host;
 		this.port = port;
-	
+
+		parser = new HTTPParser(isRequest);
+		buffer.limit(0);
+
+		String t = "Host: " + host;
+		if (port != 80)
+			t += ":" + port;
+		hostHeader = (t + "\r\n").getBytes();
+
 		setName("HTTP (" + host + ":" + port + ") " + (isRequest ? "REQUEST" : "RESPONSE") + " " + (threadCount++));
 		setPriority(Thread.NORM_PRIORITY + 1);
 		setDaemon(true);
-		
+
 		if (Trace.PARSING) {
 			Trace.trace(Trace.STRING_PARSING, "Started: " + this);
 		}
 	}
-	
+
 	/**
 	 * Create a new HTTP thread.
-	 * 
+	 *
 	 * @param conn2
 	 * @param in
 	 * @param out
@@ -116,614 +150,338 @@ Host: localhost:8081
 	 */
 	public HTTPThread(Connection conn2, InputStream in, OutputStream out, HTTPConnection conn, boolean isRequest, String host, int port, HTTPThread request) {
 		this(conn2, in, out, conn, isRequest, host, port);
-		
-		this.request = request;
-	}
 
-	/**
-	 * Add a line feed to the end of the byte array.
-	 * @return byte[]
-	 * @param b byte[]
-	 */
-	protected static byte[] convert(byte[] b) {
-		if (b == null || b.length == 0)
-			return b;
-	
-		int size = b.length;
-		byte[] x = new byte[size + 2];
-		System.arraycopy(b, 0, x, 0, size);
-		x[size] = (byte) '\r';     // CR
-		x[size + 1] = (byte) '\n'; // LF
-		return x;
-	}
-
-	/**
-	 * Read more data into the buffer.
-	 */
-	protected void fillBuffer() throws IOException {
-		int n = in.read(readBuffer);
-		
-		if (n <= 0)
-			throw new IOException("End of input");
-		
-		// add to full buffer
-		int len = buffer.length - bufferIndex;
-		if (len < 0)
-			len = 0;
-		byte[] x = new byte[n + len];
-		System.arraycopy(buffer, bufferIndex, x, 0, len);
-		System.arraycopy(readBuffer, 0, x, len, n);
-		bufferIndex = 0;
-		buffer = x;
+		this.request = request;
 	}
 
 	/**
-	 * Returns the first location of a CRLF.
+	 * Read more data into the buffer. The buffer grows if it is full, which
+	 * only happens when a line is longer than the buffer.
 	 *
-	 * @return int
-	 */
-	protected int getFirstCRLF() {
-		int size = buffer.length;
-		int i = bufferIndex + 1;
-		while (i < size) {
-			if (buffer[i - 1] == CR && buffer[i] == LF)
-				return i;
-			i++;
-		}
-		return -1;
-	}
-
-	/**
-	 * Output the given bytes.
-	 * @param b byte[]
+	 * @return <code>false</code> if there is no more input
 	 */
-	protected void outputBytes(byte[] b, boolean isNew) throws IOException {
-		out.write(b);
-		if (isRequest)
-			conn.addRequest(b, isNew);
-		else
-			conn.addResponse(b, isNew);
+	protected boolean fillBuffer() throws IOException {
+		buffer.compact();
+		if (!buffer.hasRemaining()) {
+			ByteBuffer buffer2 = ByteBuffer.allocate(buffer.capacity() * 2);
+			buffer.flip();
+			buffer2.put(buffer);
+			buffer = buffer2;
+		}
+
+		int n = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		if (n > 0)
+			buffer.position(buffer.position() + n);
+		buffer.flip();
+		return n >= 0;
 	}
 
 	/**
-	 * Parse the HTTP body.
-	 * 
-	 * @throws IOException
+	 * Listen for input, parse it, and pass it to the output stream.
 	 */
-	public void parseBody() throws IOException {
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Parsing body for: " + this);
-		}
-		
-		if (responseType != null && ("204".equals(responseType) || "304".equals(responseType))) {
-			setHTTPBody(new byte[0]);
-			return;
-		}
-		
-		if (isRequest) {
-			if (contentLength != -1) {
-				byte[] b2 = null;
-				int b2Index = 0;
-				if (contentLength < 1024 * 1024)
-					b2 = new byte[contentLength];
-				byte[] b = removeFromBuffer(Math.min(buffer.length, bufferIndex + contentLength));
-				if (b2 != null) {
-					System.arraycopy(b, 0, b2, 0, b.length);
-					b2Index += b.length;
-				}
-				int bytesLeft = contentLength - b.length;
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "[Request] bytesLeft: " + bytesLeft);
-				}
-				out.write(b);
-				
-				int n = 0;
-				while (bytesLeft > 0) {  
-					n = in.read(readBuffer, 0, Math.min(readBuffer.length, bytesLeft));
-					bytesLeft -= n;
-					if (b2 != null) {
-						System.arraycopy(readBuffer, 0, b2, b2Index, n);
-						b2Index += n;
+	public void run() {
+		boolean close = true;
+		try {
+			try {
+				boolean done = false;
+				while (!done) {
+					// once the server has accepted a tunnel, the client's bytes
+					// may never contain a line end, so stop parsing
+					if (isRequest && conn.isTunnel()) {
+						if (Trace.PARSING) {
+							Trace.trace(Trace.STRING_PARSING, "Tunnel started, passing through: " + this);
+						}
+						passThrough();
+						break;
 					}
-					out.write(readBuffer, 0, n);					
-					if (Trace.PARSING) {
-						Trace.trace(Trace.STRING_PARSING, "[Request] bytes read: " + n + " bytesLeft: " + bytesLeft);
+
+					int event = parser.next(buffer);
+					switch (event) {
+						case HTTPParser.NEED_MORE:
+							if (!fillBuffer()) {
+								if (parser.endOfInput())
+									messageDone();
+								done = true;
+							}
+							break;
+						case HTTPParser.START_LINE:
+							startMessage();
+							break;
+						case HTTPParser.HEADER:
+							if (isRequest && parser.getHeader() == HTTPParser.HEADER_HOST)
+								header.write(hostHeader);
+							else
+								header.write(buffer.array(), parser.getStart(), parser.getEnd() - parser.getStart());
+							break;
+						case HTTPParser.HEADER_END:
+							headerDone();
+							break;
+						case HTTPParser.BODY:
+							forward(true);
+							break;
+						case HTTPParser.FRAMING:
+							forward(false);
+							break;
+						case HTTPParser.MESSAGE_END:
+							done = messageDone();
+							break;
+						default:
+							if (Trace.PARSING) {
+								Trace.trace(Trace.STRING_PARSING, "Invalid HTTP, passing through: " + this);
+							}
+							passThrough();
+							done = true;
 					}
 				}
-				
-				// restore the byte array for display
-				if (b2 == null)
-					b2 = Messages.errorContentSize.getBytes();
-				
-				conn.addRequest(b2, false);
-				setHTTPBody(b2);
-			} else if (transferEncoding != -1 && transferEncoding != ENCODING_IDENTITY) {
-				parseChunk();
-			}
-			
-			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Done parsing request body for: " + this);
-			}
-			return;
-		}
-		
-		// just return body for HTTP 1.0 responses
-		if (!isRequest && !connectionKeepAlive && contentLength == -1 && transferEncoding == -1) {
-			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Assuming HTTP 1.0 for: " + this);
-			}
-			int n = buffer.length - bufferIndex;
-			byte[] b = readBytes(n);
-			byte[] body = new byte[0];
-			while (n >= 0) {
+			} catch (IOException e) {
 				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Bytes read: " + n + " " + this);
-				}
-				if (b != null && n > 0) {
-					byte[] x = null;
-					if (n == b.length)
-						x = b;
-					else {
-						x = new byte[n];
-						System.arraycopy(b, 0, x, 0, n);
-					}
-					outputBytes(x, false);
-					
-					// copy to HTTP body
-					byte[] temp = new byte[body.length + x.length];
-					System.arraycopy(body, 0, temp, 0, body.length);
-					System.arraycopy(x, 0, temp, body.length, x.length);
-					body = temp;
+					Trace.trace(Trace.STRING_PARSING, "End of buffer for: " + this, e);
 				}
-				if (b == null || b.length < BUFFER)
-					b = new byte[BUFFER];
-				n = in.read(b);
-				Thread.yield();
 			}
+
+			// the connection can't be closed until the responses to all
+			// requests have been sent
+			if (isRequest)
+				close = conn.requestsEnded();
 			out.flush();
-			setHTTPBody(body);
-			return;
-		}
-		
-		// spec 4.4.1
-		if (responseType != null && responseType.startsWith("1")) {
-			setHTTPBody(new byte[0]);
-			return;
-		}
-		
-		// spec 4.4.2
-		if (transferEncoding != -1 && transferEncoding != ENCODING_IDENTITY) {
-			parseChunk();
-			return;
-		}
-		
-		// spec 4.4.3
-		if (contentLength != -1) {
-			byte[] b2 = null;
-			int b2Index = 0;
-			if (contentLength < 1024 * 1024)
-				b2 = new byte[contentLength];
-			byte[] b = removeFromBuffer(Math.min(buffer.length, bufferIndex + contentLength));
-			if (b2 != null) {
-				System.arraycopy(b, 0, b2, 0, b.length);
-				b2Index += b.length;
-			}
-			int bytesLeft = contentLength - b.length;
+		} catch (Exception e) {
 			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "bytesLeft: " + bytesLeft);
-			}
-			out.write(b);
-			
-			int n = 0;
-			while (bytesLeft > 0) {
-				n = in.read(readBuffer, 0, Math.min(readBuffer.length, bytesLeft));
-				bytesLeft -= n;
-				if (b2 != null) {
-					System.arraycopy(readBuffer, 0, b2, b2Index, n);
-					b2Index += n;
-				}
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "bytes read: " + n + " bytesLeft: " + bytesLeft);
-				}
-				out.write(readBuffer, 0, n);
+				Trace.trace(Trace.STRING_PARSING, "Error in: " + this, e);
 			}
-						
-			// restore the byte array for display
-			if (b2 == null)
-				b2 = Messages.errorContentSize.getBytes();
-			
-			if (isRequest)
-				conn.addRequest(b2, false);
-			else
-				conn.addResponse(b2, false);
-			setHTTPBody(b2);
-			return;
 		}
-		
-		// spec 4.4.4 (?)
-		
+
+		if (close && conn.setClosed())
+			conn2.close();
+
 		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Unknown body for: " + this);
+			Trace.trace(Trace.STRING_PARSING, "Closing thread " + this);
 		}
 	}
 
-	// Use this method to dump the content of a byte array
-	//
-	//	private void dumpBuffer(byte[] b) {
-	//		Trace.trace(Trace.PARSING, "Buffer dump to default.out:");
-	//		Trace.trace(Trace.PARSING, "Byte array: " + b.length);
-	//		for (int i = 0; i < b.length; i++) {
-	//			System.out.print(" [" + (char) b[i] + "]"); // +" ["+b[i+1]+"] "
-	//			if (i % 20 == 0) {
-	//				System.out.println();
-	//			}
-	//		}
-	//	}
-	
-	
 	/**
-	 * Parse an HTTP chunk.
-	 * 
-	 * @throws IOException
+	 * Starts a message, from its start line.
 	 */
-	public void parseChunk() throws IOException {
+	protected void startMessage() {
+		byte[] b = buffer.array();
+		int start = parser.getStart();
+		int len = parser.getEnd() - start;
 		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Parsing chunk for: " + this);
+			Trace.trace(Trace.STRING_PARSING, "Parsing header for: " + this);
 		}
-		boolean done = false;
-		byte[] body = new byte[0];
-	
-		while (!done) {
-			// read chunk size
-			byte[] b = readLine();
-	
-			String s = new String(b);
+
+		header.write(b, start, len);
+		if (isRequest) {
+			String s = new String(b, start, len).trim();
+			conn.requestStarted(getPath(s), parser.getMethod());
+			setLabel(s);
+			messageStart = bytesWritten;
+		} else {
+			if (newResponse)
+				messageStart = bytesWritten;
+			parser.setRequestMethod(conn.getResponseMethod());
+			responseType = getStatus(parser.getStatus());
 			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Chunk-length: " + s);
-			}
-			int index = s.indexOf(" ");
-			int length = -1;
-			try {
-				if (index > 0)
-					s = s.substring(0, index);
-				length = Integer.parseInt(s.trim(), 16);
-			} catch (Exception e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Error chunk for: " + this, e);
-				}
-			}
-	
-			// output bytes
-			outputBytes(b, false);
-	
-			if (length <= 0)
-				done = true;
-			else {
-				// read and output chunk data plus CRLF
-				b = readBytes(length + 2);
-				outputBytes(b, false);
-				
-				// copy to HTTP body
-				byte[] temp = new byte[body.length + b.length - 2];
-				System.arraycopy(body, 0, temp, 0, body.length);
-				System.arraycopy(b, 0, temp, body.length, b.length - 2);
-				body = temp;
+				Trace.trace(Trace.STRING_PARSING, "Response Type: " + this + " " + responseType);
 			}
 		}
-	
-		// read trailer
-		byte[] b = readLine();
-		while (b.length > 2) {
-			outputBytes(b, false);
-			b = readLine();
-		}
-	
-		outputBytes(b, false);
-		setHTTPBody(body);
+		started = true;
 	}
 
 	/**
-	 * Parse an HTTP header.
-	 * 
-	 * @throws IOException
+	 * Forwards the complete header of a message, and captures it.
 	 */
-	public void parseHeader() throws IOException {
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Parsing header for: " + this);
-		}
-	
-		// read until first blank line
-		boolean isFirstLine = true;
-		boolean isNew = true;
-	
-		byte[] b = readLine();
-		while (b.length > 5) {
-			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Parsing header line: '" + new String(b) + "'");
-			}
-			
-			if (isFirstLine) {
-				String s = new String(b);
-				if (isRequest) {
-					setLabel(s);
-					isNew = false;
-				}
-	
-				if (!isRequest) {
-					int index1 = s.indexOf(' ');
-					int index2 = s.indexOf(' ', index1 + 1);
-	
-					try {
-						responseType = s.substring(index1 + 1, index2).trim();
-						if (Trace.PARSING) {
-							Trace.trace(Trace.STRING_PARSING, "Response Type: " + this + " " + responseType);
-						}
-					} catch (Exception e) {
-						if (Trace.PARSING) {
-							Trace.trace(Trace.STRING_PARSING, "Error parsing response type for: " + this, e);
-						}
-					}
-					if (responseType != null && responseType.equals("100")) {
-						outputBytes(b, isNew);
-						isNew = false;
-
-						b = readLine();
-						outputBytes(b, false);
-
-						b = readLine();
+	protected void headerDone() throws IOException {
+		// switch the request thread before the client can see the response
+		if (!isRequest && parser.isTunnel())
+			conn.startTunnel();
 
-						index1 = s.indexOf(' ');
-						index2 = s.indexOf(' ', index1 + 1);
+		header.write(buffer.array(), parser.getStart(), parser.getEnd() - parser.getStart());
+		header.writeTo(out);
 
-						try {
-							responseType = s.substring(index1 + 1, index2).trim();
-							if (Trace.PARSING) {
-								Trace.trace(Trace.STRING_PARSING, "Response Type: " + this + " " + responseType);
-							}
-						} catch (Exception e) {
-							if (Trace.PARSING) {
-								Trace.trace(Trace.STRING_PARSING, "Error parsing response type for: " + this, e);
-							}
-						}
-					}
-				}
-				isFirstLine = false;
-			}
-	
-			// translate
-			b = translateHeaderLine(b);
-			
-			outputBytes(b, isNew);
-			isNew = false;
-	
-			b = readLine();
-		}
-		
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Parsing final header line: '" + new String(b) + "'");
-		}
-		
-		outputBytes(b, false);
-		
-		Request rr = conn.getRequestResponse(isRequest);
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Setting header length: " + rr.getRequest(Request.ALL).length);
+		byte[] b = header.toByteArray();
+		header.reset();
+		if (isRequest)
+			conn.addRequest(b, false);
+		else {
+			conn.addResponse(b, newResponse);
+			newResponse = false;
 		}
-		
-		setHTTPHeader(rr);
+		setHTTPHeader(conn.getRequestResponse(isRequest));
 	}
 
 	/**
-	 * Read bytes from the stream.
-	 * @return byte[]
+	 * Forwards the bytes of the last token, and captures them.
+	 *
+	 * @param isContent <code>true</code> if the bytes are body content, and
+	 *    <code>false</code> if they are chunk framing
 	 */
-	protected byte[] readBytes(int n) throws IOException {
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "readBytes() " + n + " for: " + this);
+	protected void forward(boolean isContent) throws IOException {
+		byte[] b = buffer.array();
+		int start = parser.getStart();
+		int len = parser.getEnd() - start;
+		out.write(b, start, len);
+		if (!started || overflow)
+			return;
+
+		if (captured.size() + len > MAX_CAPTURE) {
+			overflow = true;
+			resetCapture();
+			return;
 		}
-		while (buffer.length - bufferIndex < n)
-			fillBuffer();
-		
-		return removeFromBuffer(bufferIndex + n);
+		captured.write(b, start, len);
+		if (isContent && parser.isChunked())
+			content.write(b, start, len);
 	}
 
 	/**
-	 * Read and return the next full line.
+	 * Completes a message. Returns <code>true</code> if the connection should
+	 * be closed.
 	 *
-	 * @return byte[]
+	 * @return <code>true</code> if the connection should be closed
 	 */
-	protected byte[] readLine() throws IOException {
+	protected boolean messageDone() {
+		byte[] b;
+		byte[] body;
+		if (overflow)
+			b = body = Messages.errorContentSize.getBytes();
+		else {
+			b = captured.size() == 0 ? HTTPRequest.EMPTY : captured.toByteArray();
+			body = b;
+			if (parser.isChunked())
+				body = content.size() == 0 ? HTTPRequest.EMPTY : content.toByteArray();
+		}
+		if (b.length > 0) {
+			if (isRequest)
+				conn.addRequest(b, false);
+			else
+				conn.addResponse(b, false);
+		}
+		if (!isRequest || parser.hasBody())
+			setHTTPBody(body);
+		overflow = false;
+		resetCapture();
+
+		long bytes = bytesWritten - messageStart;
 		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "readLine() for: " + this);
+			Trace.trace(Trace.STRING_PARSING, "Done HTTP message for " + this + " " + bytes + " " + parser.isPersistent());
 		}
-		
-		int n = getFirstCRLF();
-		while (n < 0) {
-			fillBuffer();
-			n = getFirstCRLF();
+		if (isRequest) {
+			conn.requestDone(bytes, parser.isPersistent());
+			return false;
 		}
-		return removeFromBuffer(n + 1);
-	}
 
-	/**
-	 * Remove data from the buffer up to the absolute index n.
-	 * Return the data from between bufferIndex and n.
-	 *
-	 * @param n the bytes to remove
-	 * @return a byte array
-	 */
-	protected byte[] removeFromBuffer(int n) {
-		// copy line out of buffer
-		byte[] b = new byte[n - bufferIndex];
-		System.arraycopy(buffer, bufferIndex, b, 0, n - bufferIndex);
-		
-		if (buffer.length > BUFFER * 2 || bufferIndex > BUFFER) {
-			// remove line from buffer
-			int size = buffer.length;
-			byte[] x = new byte[size - n];
-			System.arraycopy(buffer, n, x, 0, size - n);
-			buffer = x;
-			bufferIndex = 0;
-		} else
-			bufferIndex = n;
-		
-		return b;
+		// the final response to the request follows an interim response
+		if (parser.isInterim())
+			return false;
+
+		newResponse = true;
+		boolean close = conn.responseDone(responseType, bytes);
+		return close || !parser.isPersistent();
 	}
 
 	/**
-	 * Listen for input, save it, and pass to the output stream.
-	 * Philosophy: Read a single line separately and translate.
-	 * When blank line is reached, just pass all other data through.
+	 * Passes the rest of the stream through as is, after a message could not
+	 * be parsed or the connection has become a tunnel.
 	 */
-	public void run() {
-		try {
-			try {
-				while (true) {
-					contentLength = -1;
-					transferEncoding = -1;
-					connectionKeepAlive = false;
-					connectionClose = false;
-					
-					parseHeader();
-					parseBody();
-					
-					if (isRequest && connectionKeepAlive)
-						waitForResponse();
-					
-					//Request r = conn.getRequestResponse(true);
-					//r.fireChangedEvent();
-					
-					if (Trace.PARSING) {
-						Trace.trace(Trace.STRING_PARSING, "Done HTTP request for " + this + " " + connectionKeepAlive);
-					}
-					if (!isRequest && (!request.connectionKeepAlive || connectionClose)) {
-						conn2.close();
-						if (request.connectionKeepAlive && connectionClose)
-							request.connectionKeepAlive = false;
-							notifyRequest();
-						break;
-					}
-					
-					if (!isRequest)
-						notifyRequest();
-					
-					Thread.yield();
-				}
-			} catch (IOException e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "End of buffer for: " + this, e);
-				}
-				if (!isRequest) {
-					try {
-						request.connectionKeepAlive = false;
-						request.conn2.close();
-						notifyRequest();
-					} catch (Exception ex) {
-						if (Trace.PARSING) {
-							Trace.trace(Trace.STRING_PARSING, "Error closing request in response to error: " + this, e);
-						}
-					}
-				}
-			}
-			
-			// send rest of buffer
-			out.write(buffer, bufferIndex, buffer.length - bufferIndex);
-			out.flush();
-		} catch (Exception e) {
-			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Error in: " + this, e);
+	protected void passThrough() throws IOException {
+		byte[] b = buffer.array();
+		int off = buffer.arrayOffset() + buffer.position();
+		int n = buffer.remaining();
+		buffer.limit(0);
+		while (n >= 0) {
+			if (n > 0) {
+				out.write(b, off, n);
+				byte[] x = new byte[n];
+				System.arraycopy(b, off, x, 0, n);
+				if (isRequest)
+					conn.addRequest(x, !started);
+				else
+					conn.addResponse(x, newResponse);
+				started = true;
+				newResponse = false;
 			}
-		}
-		//if (!isRequest)
-		//	conn2.close();
-		
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Closing thread " + this);
+			off = 0;
+			n = in.read(b);
 		}
 	}
 
 	/**
 	 * Sets the title of the call.
 	 *
-	 * @param s java.lang.String
+	 * @param s the request line
 	 */
 	protected void setLabel(String s) {
-		try {
-			int index1 = s.indexOf(' ');
-			if (index1 < 0 || index1 > 15)
-				return;
-			int index2 = s.indexOf(' ', index1 + 1);
-			if (index2 < 0)
-				return;
-	
-			conn.setLabel(s.substring(index1 + 1, index2), true);
-		} catch (Exception e) {
-			// ignore
-		}
+		int index1 = s.indexOf(' ');
+		int index2 = s.indexOf(' ', index1 + 1);
+		if (index1 >= 0 && index1 <= 15 && index2 >= 0)
+			s = s.substring(index1 + 1, index2);
+		conn.setLabel(s, true);
 	}
 
 	/**
-	 * Translate the header line.
-	 * 
-	 * @return byte[]
-	 * @param b byte[]
+	 * Returns the path of a request line, without the query or fragment, or
+	 * <code>null</code> if the line is not a valid request line.
+	 *
+	 * @param s a request line
+	 * @return the path, or <code>null</code>
 	 */
-	protected byte[] translateHeaderLine(byte[] b) {
-		String s = new String(b);
-	
-		if (isRequest && s.toLowerCase().startsWith("host: ")) {
-			String t = "Host: " + host;
-			if (port != 80)
-				t += ":" + port;
-			return convert(t.getBytes());
-		} else if (s.toLowerCase().startsWith("content-length: ")) {
-			try {
-				contentLength = Integer.parseInt(s.substring(16).trim());
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Content length: " + this + " " + contentLength);
-				}
-			} catch (Exception e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Content length error", e);
-				}
-			}
-		} else if (s.toLowerCase().startsWith("connection: ")) {
-			try {
-				String t = s.substring(11).trim();
-				if (t.equalsIgnoreCase("Keep-Alive"))
-					connectionKeepAlive = true;
-				// response contains "Connection: close" header
-				// close connection to the client even if "keepalive" had been requested
-				// we can't just reset request.keepAlive - it's used as indicator whether
-				// the request thread is (going to) wait for the response thread
-				// (and must be notified (only then)),
-				// so we have to let it alone
-				if (t.equalsIgnoreCase("close"))
-					connectionClose = true;
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Keep alive: " + connectionKeepAlive);
-				}
-			} catch (Exception e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Error getting Connection: from header", e);
-				}
-			}
-		} else if (s.toLowerCase().startsWith("transfer-encoding: ")) {
-			String t = s.substring(19).trim();
-			int size = ENCODING_STRING.length;
-			for (int i = 0; i < size; i++) {
-				if (ENCODING_STRING[i].equalsIgnoreCase(t)) {
-					transferEncoding = (byte) i;
-					if (Trace.PARSING) {
-						Trace.trace(Trace.STRING_PARSING, "Transfer encoding: " + ENCODING_STRING[i]);
-					}
-				}
+	protected static String getPath(String s) {
+		int index1 = s.indexOf(' ');
+		if (index1 < 0 || index1 > 15)
+			return null;
+		int index2 = s.indexOf(' ', index1 + 1);
+		if (index2 < 0)
+			return null;
+
+		int end = index2;
+		for (int i = index1 + 1; i < index2; i++) {
+			char c = s.charAt(i);
+			if (c == '?' || c == '#') {
+				end = i;
+				break;
 			}
 		}
-	
-		return b;
+
+		// strip the scheme and host of absolute URIs sent to proxies
+		int start = index1 + 1;
+		int index3 = s.indexOf("://", start);
+		if (index3 > 0 && index3 < end) {
+			start = s.indexOf('/', index3 + 3);
+			if (start < 0 || start > end)
+				return "/";
+		}
+		return s.substring(start, end);
+	}
+
+	/**
+	 * Returns the status code as a string. Common status codes are cached.
+	 */
+	private static String getStatus(int status) {
+		if (status < 0 || status >= STATUS.length)
+			return Integer.toString(status);
+		String s = STATUS[status];
+		if (s == null) {
+			s = Integer.toString(status);
+			STATUS[status] = s;
+		}
+		return s;
 	}
-	
+
+	/**
+	 * Clears the captured body, and frees the capture buffers if they have
+	 * grown large.
+	 */
+	protected void resetCapture() {
+		if (captured.size() > MAX_RETAINED)
+			captured = new ByteArrayOutputStream(BUFFER);
+		else
+			captured.reset();
+		if (content.size() > MAX_RETAINED)
+			content = new ByteArrayOutputStream(BUFFER);
+		else
+			content.reset();
+	}
+
 	protected void close() {
 		try {
 			if (Trace.PARSING) {
@@ -737,54 +495,6 @@ Host: localhost:8081
 		}
 	}
 
-	protected void waitForResponse() {
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Waiting for response " + this);
-		}
-		synchronized (this) {
-			try {
-				isWaiting = true;
-				wait();
-			} catch (Exception e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Error in waitForResponse() " + this, e);
-				}
-			}
-			isWaiting = false;
-		}
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Done waiting for response " + this);
-		}
-	}
-
-	protected void notifyRequest() {
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Notifying request " + this);
-		}
-		while (request.connectionKeepAlive && !request.isWaiting) {
-			if (Trace.PARSING) {
-				Trace.trace(Trace.STRING_PARSING, "Waiting for request " + this);
-			}
-			try {
-				Thread.sleep(100);
-			} catch (Exception e) {
-				// ignore
-			}
-		}
-		synchronized (request) {
-			try {
-				request.notify();
-			} catch (Exception e) {
-				if (Trace.PARSING) {
-					Trace.trace(Trace.STRING_PARSING, "Error in notifyRequest() " + this, e);
-				}
-			}
-		}
-		if (Trace.PARSING) {
-			Trace.trace(Trace.STRING_PARSING, "Done notifying request " + this);
-		}
-	}
-
 	protected void setHTTPHeader(Request rr) {
 		if (isRequest) {
 			byte[] b = rr.getRequest(Request.ALL);
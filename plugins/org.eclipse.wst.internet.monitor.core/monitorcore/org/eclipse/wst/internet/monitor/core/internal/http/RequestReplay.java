@@ -0,0 +1,781 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal.http;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.wst.internet.monitor.core.internal.IProtocolAdapter;
+import org.eclipse.wst.internet.monitor.core.internal.Messages;
+import org.eclipse.wst.internet.monitor.core.internal.Trace;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.MonitorStatistics;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * Replays a set of captured requests against a server, e.g. to reproduce a
+ * problem or to generate load.
+ * <p>
+ * Requests are sent in the order they were captured by a number of
+ * concurrent workers. Each request is scheduled either at its original
+ * offset from the first request, at a fixed rate, or as soon as a worker is
+ * free. HTTP requests are sent on persistent connections where the server
+ * allows it, with the Host header and cookies optionally rewritten and chunked
+ * bodies resent with a Content-Length. Other requests are sent as is on a new
+ * connection, and the response is read until the server closes it.
+ * </p><p>
+ * The result of each request is returned by {@link #run(IProgressMonitor)},
+ * and all results are also collected in a {@link MonitorStatistics}.
+ * </p>
+ */
+public class RequestReplay {
+	private static final String ENCODING = "ISO-8859-1";
+	private static final byte[] CRLF = new byte[] { '\r', '\n' };
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// how often to check for cancellation, in ms
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * The result of replaying one request.
+	 */
+	public static class Result {
+		protected Request request;
+		protected long startTime;
+		protected long latency = -1;
+		protected String status;
+		protected long bytesSent;
+		protected long bytesReceived;
+		protected boolean reused;
+		protected Throwable error;
+
+		protected Result(Request request) {
+			this.request = request;
+		}
+
+		/**
+		 * Returns the request that was replayed.
+		 *
+		 * @return the request
+		 */
+		public Request getRequest() {
+			return request;
+		}
+
+		/**
+		 * Returns the time that the request was sent.
+		 *
+		 * @return the time, in milliseconds
+		 */
+		public long getStartTime() {
+			return startTime;
+		}
+
+		/**
+		 * Returns the time from sending the request to the end of the
+		 * response.
+		 *
+		 * @return the latency in microseconds, or -1 if the request failed
+		 */
+		public long getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the status code of the response.
+		 *
+		 * @return the status code, or <code>null</code> if the request was not
+		 *    HTTP or failed
+		 */
+		public String getStatus() {
+			return status;
+		}
+
+		/**
+		 * Returns the number of bytes sent.
+		 *
+		 * @return the number of bytes sent
+		 */
+		public long getBytesSent() {
+			return bytesSent;
+		}
+
+		/**
+		 * Returns the number of bytes received.
+		 *
+		 * @return the number of bytes received
+		 */
+		public long getBytesReceived() {
+			return bytesReceived;
+		}
+
+		/**
+		 * Returns whether the request was sent on a connection that had
+		 * already been used.
+		 *
+		 * @return <code>true</code> if the connection was reused
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+
+		/**
+		 * Returns the error that the request failed with.
+		 *
+		 * @return the error, or <code>null</code> if the request succeeded
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		public String toString() {
+			return "Result [" + request.getName() + ", " + status + ", " + latency + "us]";
+		}
+	}
+
+	/**
+	 * A request prepared for sending.
+	 */
+	private static class Message {
+		protected Request request;
+		protected boolean http;
+		protected byte[] bytes;
+		protected String path;
+		protected int method;
+		protected boolean persistent;
+		protected IOException error;
+		protected long offset;
+	}
+
+	protected Request[] requests;
+	protected String host;
+	protected int port = -1;
+	protected int concurrency = 1;
+	protected double rate;
+	protected boolean originalTiming;
+	protected int repeat = 1;
+	protected int timeout = 30000;
+	protected String hostHeader;
+	protected Map<String, String> cookies = new LinkedHashMap<String, String>();
+	protected MonitorStatistics statistics = new MonitorStatistics();
+
+	protected volatile boolean canceled;
+	protected List<Worker> workers = new ArrayList<Worker>();
+
+	/**
+	 * Creates a replay of the given requests. The requests are replayed in
+	 * the order they were captured.
+	 *
+	 * @param requests the requests to replay
+	 */
+	public RequestReplay(Request[] requests) {
+		this.requests = new Request[requests.length];
+		System.arraycopy(requests, 0, this.requests, 0, requests.length);
+		Arrays.sort(this.requests, new Comparator<Request>() {
+			public int compare(Request r1, Request r2) {
+				return r1.getDate().compareTo(r2.getDate());
+			}
+		});
+	}
+
+	/**
+	 * Sets the server to send all requests to. By default each request is
+	 * sent to the remote host and port it was captured for.
+	 *
+	 * @param host the host name, or <code>null</code> to use the captured host
+	 * @param port the port, or -1 to use the captured port
+	 */
+	public void setTarget(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Sets the number of requests that may be outstanding at once. Each
+	 * worker uses its own connection. The default is 1.
+	 *
+	 * @param concurrency the number of concurrent workers
+	 */
+	public void setConcurrency(int concurrency) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException();
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Limits the rate at which requests are started. Ignored if the original
+	 * timing is used.
+	 *
+	 * @param rate the maximum number of requests per second, or 0 to send
+	 *    requests as fast as the workers allow
+	 */
+	public void setRate(double rate) {
+		if (rate < 0)
+			throw new IllegalArgumentException();
+		this.rate = rate;
+	}
+
+	/**
+	 * Sets whether requests are started at the same offsets from the first
+	 * request as when they were captured.
+	 *
+	 * @param originalTiming <code>true</code> to keep the original timing
+	 */
+	public void setOriginalTiming(boolean originalTiming) {
+		this.originalTiming = originalTiming;
+	}
+
+	/**
+	 * Sets the number of times the whole set of requests is replayed. The
+	 * default is 1.
+	 *
+	 * @param repeat the number of repetitions
+	 */
+	public void setRepeat(int repeat) {
+		if (repeat < 1)
+			throw new IllegalArgumentException();
+		this.repeat = repeat;
+	}
+
+	/**
+	 * Sets the timeout for connecting and for each read.
+	 *
+	 * @param timeout the timeout, in ms
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Sets the value of the Host header of HTTP requests. By default the
+	 * captured Host header is sent.
+	 *
+	 * @param hostHeader the host and optional port, e.g. "localhost:8080", or
+	 *    <code>null</code> to keep the captured value
+	 */
+	public void setHostHeader(String hostHeader) {
+		this.hostHeader = hostHeader;
+	}
+
+	/**
+	 * Sets a cookie sent with all HTTP requests, replacing any captured
+	 * cookie with the same name.
+	 *
+	 * @param name the cookie name
+	 * @param value the cookie value, or <code>null</code> to remove the
+	 *    captured cookie
+	 */
+	public void setCookie(String name, String value) {
+		cookies.put(name, value);
+	}
+
+	/**
+	 * Returns the statistics of the replayed requests. Requests that fail are
+	 * not included.
+	 *
+	 * @return the statistics
+	 */
+	public MonitorStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Replays the requests and waits for them to complete.
+	 *
+	 * @param monitor a progress monitor, or <code>null</code>
+	 * @return the results, in the order the requests were started; if the
+	 *    replay is canceled, only the requests that completed
+	 */
+	public Result[] run(IProgressMonitor monitor) {
+		if (monitor == null)
+			monitor = new NullProgressMonitor();
+
+		final Message[] messages = prepare();
+		final int total = messages.length * repeat;
+		final Result[] results = new Result[total];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger completed = new AtomicInteger();
+		final long start = System.nanoTime();
+		final long period = getPeriod(messages);
+		canceled = false;
+
+		monitor.beginTask(Messages.replayTask, total);
+		int threads = Math.max(1, Math.min(concurrency, total));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Monitor Replay " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(threads);
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						Worker worker = new Worker();
+						synchronized (workers) {
+							workers.add(worker);
+						}
+						try {
+							int i2 = next.getAndIncrement();
+							while (i2 < total && !canceled) {
+								Message message = messages[i2 % messages.length];
+								long time = start + message.offset + (i2 / messages.length) * period;
+								if (period < 0)
+									time = start + (long) (i2 * 1000000000.0 / rate);
+								waitUntil(time);
+								if (canceled)
+									break;
+								results[i2] = worker.send(message);
+								completed.incrementAndGet();
+								i2 = next.getAndIncrement();
+							}
+						} finally {
+							worker.close();
+						}
+						return null;
+					}
+				}));
+			}
+
+			int reported = 0;
+			for (int i = 0; i < threads; i++) {
+				boolean done = false;
+				while (!done) {
+					if (monitor.isCanceled()) {
+						cancel();
+						executor.shutdownNow();
+						break;
+					}
+					try {
+						futures.get(i).get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+						done = true;
+					} catch (TimeoutException e) {
+						// keep waiting
+					} catch (InterruptedException e) {
+						// keep waiting
+					} catch (ExecutionException e) {
+						if (Trace.WARNING) {
+							Trace.trace(Trace.STRING_WARNING, "Error replaying requests", e.getCause());
+						}
+						done = true;
+					}
+					int n = completed.get();
+					monitor.worked(n - reported);
+					reported = n;
+				}
+				if (canceled)
+					break;
+			}
+		} finally {
+			executor.shutdownNow();
+			synchronized (workers) {
+				workers.clear();
+			}
+			monitor.done();
+		}
+
+		List<Result> list = new ArrayList<Result>(total);
+		for (Result result : results) {
+			if (result != null)
+				list.add(result);
+		}
+		return list.toArray(new Result[list.size()]);
+	}
+
+	/**
+	 * Stops starting requests, and closes the connections of the workers so
+	 * that requests in progress fail right away.
+	 */
+	private void cancel() {
+		canceled = true;
+		synchronized (workers) {
+			for (Worker worker : workers)
+				worker.abort();
+		}
+	}
+
+	/**
+	 * Returns the time between repetitions of the requests, in nanoseconds,
+	 * or -1 if requests are started at a fixed rate.
+	 */
+	private long getPeriod(Message[] messages) {
+		if (messages.length == 0)
+			return 0;
+		if (!originalTiming) {
+			if (rate > 0)
+				return -1;
+			return 0;
+		}
+
+		// leave the average gap between the last request and the next repetition
+		long last = messages[messages.length - 1].offset;
+		if (messages.length == 1)
+			return last;
+		return last + last / (messages.length - 1);
+	}
+
+	/**
+	 * Sleeps until the given time.
+	 *
+	 * @param time a time as returned by System.nanoTime()
+	 */
+	private void waitUntil(long time) {
+		long wait = time - System.nanoTime();
+		while (wait > 0 && !canceled) {
+			try {
+				Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+			} catch (InterruptedException e) {
+				return;
+			}
+			wait = time - System.nanoTime();
+		}
+	}
+
+	/**
+	 * Prepares the requests for sending, rewriting the headers of HTTP
+	 * requests once up front.
+	 */
+	private Message[] prepare() {
+		Message[] messages = new Message[requests.length];
+		long first = requests.length == 0 ? 0 : requests[0].getDate().getTime();
+		for (int i = 0; i < requests.length; i++) {
+			Message message = new Message();
+			message.request = requests[i];
+			if (originalTiming)
+				message.offset = (requests[i].getDate().getTime() - first) * 1000000L;
+			try {
+				if (IProtocolAdapter.HTTP_PROTOCOL_ID.equals(requests[i].getProtocol()))
+					prepareHTTP(message);
+				else {
+					message.bytes = requests[i].getRequest(Request.ALL);
+					if (message.bytes == null)
+						message.bytes = HTTPRequest.EMPTY;
+				}
+			} catch (IOException e) {
+				message.error = e;
+			}
+			messages[i] = message;
+		}
+		return messages;
+	}
+
+	/**
+	 * Rewrites the header of an HTTP request and appends the body.
+	 */
+	private void prepareHTTP(Message message) throws IOException {
+		message.http = true;
+		byte[] header = message.request.getRequest(Request.TRANSPORT);
+		byte[] body = message.request.getRequest(Request.CONTENT);
+		if (header == null)
+			throw new IOException(Messages.errorReplayRequest);
+		if (body == null)
+			body = HTTPRequest.EMPTY;
+		else if (Arrays.equals(body, Messages.errorContentSize.getBytes()))
+			throw new IOException(Messages.errorReplayRequest);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(header.length + body.length + 64);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(header), ENCODING));
+		String line = reader.readLine();
+		while (line != null && line.length() == 0)
+			line = reader.readLine();
+		if (line == null)
+			throw new IOException(Messages.errorReplayRequest);
+		writeLine(out, line);
+
+		boolean hasLength = false;
+		boolean hasHost = false;
+		boolean hasCookie = false;
+		line = reader.readLine();
+		while (line != null && line.length() > 0) {
+			int index = line.indexOf(':');
+			String name = index < 0 ? line : line.substring(0, index).trim();
+			if ("content-length".equalsIgnoreCase(name) || "transfer-encoding".equalsIgnoreCase(name)) {
+				// the captured body has been de-chunked, so always resend its length
+				hasLength = true;
+			} else if ("expect".equalsIgnoreCase(name)) {
+				// the body is sent right away
+			} else if ("host".equalsIgnoreCase(name)) {
+				hasHost = true;
+				if (hostHeader != null)
+					writeLine(out, "Host: " + hostHeader);
+				else
+					writeLine(out, line);
+			} else if ("cookie".equalsIgnoreCase(name) && !cookies.isEmpty()) {
+				hasCookie = true;
+				String value = rewriteCookies(index < 0 ? "" : line.substring(index + 1));
+				if (value.length() > 0)
+					writeLine(out, "Cookie: " + value);
+			} else
+				writeLine(out, line);
+			line = reader.readLine();
+		}
+		if (!hasHost && hostHeader != null)
+			writeLine(out, "Host: " + hostHeader);
+		if (!hasCookie && !cookies.isEmpty()) {
+			String value = rewriteCookies("");
+			if (value.length() > 0)
+				writeLine(out, "Cookie: " + value);
+		}
+		if (hasLength || body.length > 0)
+			writeLine(out, "Content-Length: " + body.length);
+		out.write(CRLF);
+		out.write(body);
+		message.bytes = out.toByteArray();
+
+		// parse the result to check it, and to find the path and framing
+		HTTPParser parser = new HTTPParser(true);
+		ByteBuffer buffer = ByteBuffer.wrap(message.bytes);
+		int event = parser.next(buffer);
+		while (event != HTTPParser.MESSAGE_END) {
+			if (event == HTTPParser.ERROR || event == HTTPParser.NEED_MORE)
+				throw new IOException(Messages.errorReplayRequest);
+			if (event == HTTPParser.START_LINE) {
+				message.path = HTTPThread.getPath(new String(message.bytes, parser.getStart(), parser.getEnd() - parser.getStart(), ENCODING));
+				message.method = parser.getMethod();
+			}
+			event = parser.next(buffer);
+		}
+		message.persistent = parser.isPersistent();
+	}
+
+	/**
+	 * Applies the cookie rules to the value of a Cookie header.
+	 */
+	private String rewriteCookies(String value) {
+		Set<String> used = new HashSet<String>();
+		StringBuffer sb = new StringBuffer();
+		StringTokenizer st = new StringTokenizer(value, ";");
+		while (st.hasMoreTokens()) {
+			String cookie = st.nextToken().trim();
+			if (cookie.length() == 0)
+				continue;
+			int index = cookie.indexOf('=');
+			String name = index < 0 ? cookie : cookie.substring(0, index).trim();
+			if (cookies.containsKey(name)) {
+				used.add(name);
+				String value2 = cookies.get(name);
+				if (value2 == null)
+					continue;
+				cookie = name + "=" + value2;
+			}
+			if (sb.length() > 0)
+				sb.append("; ");
+			sb.append(cookie);
+		}
+
+		Iterator<Map.Entry<String, String>> iterator = cookies.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, String> me = iterator.next();
+			if (me.getValue() == null || used.contains(me.getKey()))
+				continue;
+			if (sb.length() > 0)
+				sb.append("; ");
+			sb.append(me.getKey() + "=" + me.getValue());
+		}
+		return sb.toString();
+	}
+
+	private static void writeLine(OutputStream out, String line) throws IOException {
+		out.write(line.getBytes(ENCODING));
+		out.write(CRLF);
+	}
+
+	/**
+	 * Sends requests on one connection at a time, reconnecting when the
+	 * server closes the connection or a different server is needed.
+	 */
+	private class Worker {
+		private volatile Socket socket;
+		private String socketHost;
+		private int socketPort;
+		private boolean used;
+		private boolean received;
+		private InputStream in;
+		private OutputStream out;
+		private HTTPParser parser;
+		private ByteBuffer buffer;
+
+		public Result send(Message message) {
+			Result result = new Result(message.request);
+			result.startTime = System.currentTimeMillis();
+			if (message.error != null) {
+				result.error = message.error;
+				return result;
+			}
+
+			String host2 = host != null ? host : message.request.getRemoteHost();
+			int port2 = port >= 0 ? port : message.request.getRemotePort();
+			long time = 0;
+			try {
+				if (!message.http || socket == null || !host2.equals(socketHost) || port2 != socketPort)
+					connect(host2, port2);
+				result.reused = used;
+				time = System.nanoTime();
+				try {
+					result.bytesReceived = exchange(message);
+				} catch (IOException e) {
+					// the server may have closed an idle connection, so retry once
+					if (!result.reused || received || canceled)
+						throw e;
+					connect(host2, port2);
+					result.reused = false;
+					time = System.nanoTime();
+					result.bytesReceived = exchange(message);
+				}
+				result.latency = (System.nanoTime() - time) / 1000;
+				result.bytesSent = message.bytes.length;
+				if (message.http)
+					result.status = Integer.toString(parser.getStatus());
+				if (!message.http || !message.persistent || !parser.isPersistent())
+					close();
+				statistics.record(message.path, result.status, result.latency, result.bytesSent, result.bytesReceived, result.reused);
+			} catch (IOException e) {
+				if (Trace.FINEST) {
+					Trace.trace(Trace.STRING_FINEST, "Error replaying " + message.request.getName(), e);
+				}
+				result.error = e;
+				close();
+			}
+			return result;
+		}
+
+		private void connect(String host2, int port2) throws IOException {
+			close();
+			socket = new Socket();
+			socket.connect(new InetSocketAddress(host2, port2), timeout);
+			socket.setSoTimeout(timeout);
+			socketHost = host2;
+			socketPort = port2;
+			in = socket.getInputStream();
+			out = socket.getOutputStream();
+			parser = new HTTPParser(false);
+			if (buffer == null)
+				buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.clear();
+			buffer.limit(0);
+			statistics.connectionOpened();
+		}
+
+		/**
+		 * Sends a request and reads the response. Returns the number of bytes
+		 * received.
+		 */
+		private long exchange(Message message) throws IOException {
+			out.write(message.bytes);
+			out.flush();
+			used = true;
+			received = false;
+			if (!message.http) {
+				socket.shutdownOutput();
+				return drain();
+			}
+
+			long bytes = 0;
+			while (true) {
+				int event = parser.next(buffer);
+				if (event == HTTPParser.NEED_MORE) {
+					if (!fillBuffer()) {
+						// responses without a length end when the connection closes
+						if (parser.endOfInput())
+							return bytes;
+						throw new EOFException();
+					}
+					continue;
+				}
+				if (event == HTTPParser.ERROR)
+					throw new IOException(Messages.errorReplayResponse);
+				bytes += parser.getEnd() - parser.getStart();
+				if (event == HTTPParser.START_LINE)
+					parser.setRequestMethod(message.method);
+				else if (event == HTTPParser.MESSAGE_END && !parser.isInterim())
+					return bytes;
+			}
+		}
+
+		/**
+		 * Reads more data into the buffer. Returns <code>false</code> at the
+		 * end of the stream.
+		 */
+		private boolean fillBuffer() throws IOException {
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				ByteBuffer buffer2 = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				buffer2.put(buffer);
+				buffer = buffer2;
+			}
+			int n = in.read(buffer.array(), buffer.position(), buffer.remaining());
+			if (n > 0) {
+				buffer.position(buffer.position() + n);
+				received = true;
+			}
+			buffer.flip();
+			return n >= 0;
+		}
+
+		/**
+		 * Reads until the end of the stream. Returns the number of bytes read.
+		 */
+		private long drain() throws IOException {
+			byte[] b = buffer.array();
+			long bytes = 0;
+			int n = in.read(b);
+			while (n >= 0) {
+				bytes += n;
+				n = in.read(b);
+			}
+			return bytes;
+		}
+
+		/**
+		 * Closes the connection from another thread.
+		 */
+		public void abort() {
+			Socket s = socket;
+			if (s == null)
+				return;
+			try {
+				s.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+
+		public void close() {
+			if (socket == null)
+				return;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			socket = null;
+			used = false;
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2011 IBM Corporation and others.
+ * Copyright (c) 2004, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -209,4 +209,13 @@ public interface IMonitor {
 	 *   wrong with it
 	 */
 	public IStatus validate();
+
+	/**
+	 * Returns the traffic statistics of this monitor. Statistics are kept
+	 * while the monitor exists, across restarts, until they are reset. A
+	 * working copy returns the statistics of its original monitor.
+	 * 
+	 * @return the statistics of this monitor
+	 */
+	public MonitorStatistics getStatistics();
 }
\ No newline at end of file
@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal.provisional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.wst.internet.monitor.core.internal.LatencyHistogram;
+/**
+ * Statistics about the traffic through a monitor: the number of connections
+ * and requests, the bytes sent in each direction, response status codes,
+ * and a histogram of response latencies, both in total and per URL path.
+ * <p>
+ * Statistics are collected by the monitor's protocol adapter as requests pass
+ * through it, whether or not the request content is kept, and use a fixed
+ * amount of memory per monitor and per path. At most {@link #MAX_PATHS}
+ * paths are counted separately; requests for other paths are counted under
+ * {@link #OTHER_PATHS}. Latencies are measured in microseconds, from the
+ * time the request is received to the time its response is complete.
+ * </p>
+ * <p>
+ * This class is thread-safe. The getters return snapshots that do not change
+ * as more requests are recorded.
+ * </p>
+ * <p>
+ * <b>Provisional API:</b> This class/interface is part of an interim API that is still under development and expected to
+ * change significantly before reaching stability. It is being made available at this early stage to solicit feedback
+ * from pioneering adopters on the understanding that any code that uses this API will almost certainly be broken
+ * (repeatedly) as the API evolves.
+ * </p>
+ */
+public class MonitorStatistics {
+	/**
+	 * The maximum number of paths that are counted separately.
+	 */
+	public static final int MAX_PATHS = 200;
+
+	/**
+	 * The path that requests are counted under once {@link #MAX_PATHS}
+	 * paths have been seen.
+	 */
+	public static final String OTHER_PATHS = "(other)";
+
+	private static final String TOTAL = "(all)";
+
+	private static final double[] PERCENTILES = new double[] { 50, 90, 99 };
+
+	/**
+	 * The statistics of a set of requests.
+	 */
+	public static class Entry {
+		protected String path;
+		protected long count;
+		protected long reused;
+		protected long bytesIn;
+		protected long bytesOut;
+		protected LatencyHistogram latency = new LatencyHistogram();
+		protected Map<String, long[]> statusCounts = new TreeMap<String, long[]>();
+
+		protected Entry(String path) {
+			this.path = path;
+		}
+
+		protected void record(String status, long latency2, long bytesIn2, long bytesOut2, boolean reused2) {
+			count++;
+			if (reused2)
+				reused++;
+			bytesIn += bytesIn2;
+			bytesOut += bytesOut2;
+			if (latency2 >= 0)
+				latency.record(latency2);
+			if (status != null) {
+				long[] c = statusCounts.get(status);
+				if (c == null) {
+					c = new long[1];
+					statusCounts.put(status, c);
+				}
+				c[0]++;
+			}
+		}
+
+		protected Entry copy() {
+			Entry e = new Entry(path);
+			e.count = count;
+			e.reused = reused;
+			e.bytesIn = bytesIn;
+			e.bytesOut = bytesOut;
+			e.latency = latency.copy();
+			Iterator<Map.Entry<String, long[]>> iterator = statusCounts.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, long[]> me = iterator.next();
+				e.statusCounts.put(me.getKey(), new long[] { me.getValue()[0] });
+			}
+			return e;
+		}
+
+		/**
+		 * Returns the URL path of these requests, without the query, or
+		 * <code>null</code> for the total of all requests.
+		 *
+		 * @return the path, or <code>null</code>
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the number of requests.
+		 *
+		 * @return the number of requests
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the number of requests that were sent on a connection that
+		 * had already been used for an earlier request.
+		 *
+		 * @return the number of requests on reused connections
+		 */
+		public long getReusedCount() {
+			return reused;
+		}
+
+		/**
+		 * Returns the number of bytes received from clients.
+		 *
+		 * @return the number of request bytes
+		 */
+		public long getBytesIn() {
+			return bytesIn;
+		}
+
+		/**
+		 * Returns the number of bytes returned to clients.
+		 *
+		 * @return the number of response bytes
+		 */
+		public long getBytesOut() {
+			return bytesOut;
+		}
+
+		/**
+		 * Returns the number of requests whose latency was measured.
+		 *
+		 * @return the number of latencies
+		 */
+		public long getLatencyCount() {
+			return latency.getCount();
+		}
+
+		/**
+		 * Returns the smallest latency, in microseconds.
+		 *
+		 * @return the smallest latency
+		 */
+		public long getMinLatency() {
+			return latency.getMin();
+		}
+
+		/**
+		 * Returns the largest latency, in microseconds.
+		 *
+		 * @return the largest latency
+		 */
+		public long getMaxLatency() {
+			return latency.getMax();
+		}
+
+		/**
+		 * Returns the mean latency, in microseconds.
+		 *
+		 * @return the mean latency
+		 */
+		public long getMeanLatency() {
+			return latency.getMean();
+		}
+
+		/**
+		 * Returns the latency, in microseconds, that the given percentage of
+		 * requests took at most. The value is accurate to about 3%.
+		 *
+		 * @param percentile a percentile, between 0 and 100
+		 * @return the latency at the percentile
+		 */
+		public long getLatencyAtPercentile(double percentile) {
+			return latency.getValueAtPercentile(percentile);
+		}
+
+		/**
+		 * Returns the number of responses with each status code, sorted by
+		 * status code.
+		 *
+		 * @return a map from status code to number of responses
+		 */
+		public Map<String, Long> getStatusCounts() {
+			Map<String, Long> map = new TreeMap<String, Long>();
+			Iterator<Map.Entry<String, long[]>> iterator = statusCounts.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, long[]> me = iterator.next();
+				map.put(me.getKey(), Long.valueOf(me.getValue()[0]));
+			}
+			return map;
+		}
+	}
+
+	private long startTime = System.currentTimeMillis();
+	private long connections;
+	private Entry total = new Entry(null);
+	private Map<String, Entry> paths = new HashMap<String, Entry>();
+
+	/**
+	 * Records a new connection from a client.
+	 */
+	public synchronized void connectionOpened() {
+		connections++;
+	}
+
+	/**
+	 * Records a completed request.
+	 *
+	 * @param path the URL path of the request, without the query, or
+	 *    <code>null</code> if the protocol has no paths
+	 * @param status the response status code, or <code>null</code> if the
+	 *    protocol has no status
+	 * @param latency the time from the request to the end of the response,
+	 *    in microseconds, or -1 if it is not known
+	 * @param bytesIn the number of bytes in the request
+	 * @param bytesOut the number of bytes in the response
+	 * @param reused <code>true</code> if the request was sent on a connection
+	 *    that had already been used
+	 */
+	public synchronized void record(String path, String status, long latency, long bytesIn, long bytesOut, boolean reused) {
+		total.record(status, latency, bytesIn, bytesOut, reused);
+		if (path == null)
+			return;
+
+		Entry entry = paths.get(path);
+		if (entry == null) {
+			if (paths.size() >= MAX_PATHS)
+				path = OTHER_PATHS;
+			entry = paths.get(path);
+			if (entry == null) {
+				entry = new Entry(path);
+				paths.put(path, entry);
+			}
+		}
+		entry.record(status, latency, bytesIn, bytesOut, reused);
+	}
+
+	/**
+	 * Returns the time that statistics were first collected or last reset.
+	 *
+	 * @return the start time, in milliseconds
+	 */
+	public synchronized long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the number of connections from clients.
+	 *
+	 * @return the number of connections
+	 */
+	public synchronized long getConnections() {
+		return connections;
+	}
+
+	/**
+	 * Returns the statistics of all requests.
+	 *
+	 * @return the total statistics
+	 */
+	public synchronized Entry getTotal() {
+		return total.copy();
+	}
+
+	/**
+	 * Returns the statistics of each URL path, sorted by path.
+	 *
+	 * @return the statistics per path
+	 */
+	public synchronized Entry[] getPaths() {
+		Map<String, Entry> sorted = new TreeMap<String, Entry>(paths);
+		Entry[] entries = new Entry[sorted.size()];
+		int i = 0;
+		Iterator<Entry> iterator = sorted.values().iterator();
+		while (iterator.hasNext())
+			entries[i++] = iterator.next().copy();
+		return entries;
+	}
+
+	/**
+	 * Clears all statistics.
+	 */
+	public synchronized void reset() {
+		startTime = System.currentTimeMillis();
+		connections = 0;
+		total = new Entry(null);
+		paths = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Writes the statistics as CSV, with a header row, a row for the total of
+	 * all requests, and a row per path. Status counts are written as a list
+	 * of <code>code=count</code> pairs separated by spaces.
+	 *
+	 * @param w a writer
+	 * @throws IOException if the statistics could not be written
+	 */
+	public void exportCSV(Writer w) throws IOException {
+		Entry total2;
+		Entry[] entries;
+		synchronized (this) {
+			total2 = getTotal();
+			entries = getPaths();
+		}
+
+		w.write("path,requests,reused,bytes_in,bytes_out,min_us,mean_us");
+		for (double p : PERCENTILES)
+			w.write(",p" + (int) p + "_us");
+		w.write(",max_us,status\n");
+		writeCSV(w, total2, TOTAL);
+		for (Entry entry : entries)
+			writeCSV(w, entry, entry.path);
+		w.flush();
+	}
+
+	private static void writeCSV(Writer w, Entry entry, String path) throws IOException {
+		w.write(quoteCSV(path));
+		w.write("," + entry.getCount() + "," + entry.getReusedCount() + "," + entry.getBytesIn()
+			+ "," + entry.getBytesOut() + "," + entry.getMinLatency() + "," + entry.getMeanLatency());
+		for (double p : PERCENTILES)
+			w.write("," + entry.getLatencyAtPercentile(p));
+		w.write("," + entry.getMaxLatency() + ",");
+
+		StringBuffer sb = new StringBuffer();
+		Iterator<Map.Entry<String, long[]>> iterator = entry.statusCounts.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, long[]> me = iterator.next();
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(me.getKey() + "=" + me.getValue()[0]);
+		}
+		w.write(quoteCSV(sb.toString()));
+		w.write("\n");
+	}
+
+	private static String quoteCSV(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+			return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Writes the statistics as a JSON object.
+	 *
+	 * @param w a writer
+	 * @throws IOException if the statistics could not be written
+	 */
+	public void exportJSON(Writer w) throws IOException {
+		long startTime2;
+		long connections2;
+		Entry total2;
+		Entry[] entries;
+		synchronized (this) {
+			startTime2 = startTime;
+			connections2 = connections;
+			total2 = getTotal();
+			entries = getPaths();
+		}
+
+		w.write("{\n  \"startTime\": " + startTime2 + ",\n  \"connections\": " + connections2 + ",\n  \"total\": ");
+		writeJSON(w, total2);
+		w.write(",\n  \"paths\": [");
+		for (int i = 0; i < entries.length; i++) {
+			if (i > 0)
+				w.write(",");
+			w.write("\n    ");
+			writeJSON(w, entries[i]);
+		}
+		w.write(entries.length > 0 ? "\n  ]\n}\n" : "]\n}\n");
+		w.flush();
+	}
+
+	private static void writeJSON(Writer w, Entry entry) throws IOException {
+		w.write("{");
+		if (entry.path != null)
+			w.write("\"path\": " + quoteJSON(entry.path) + ", ");
+		w.write("\"requests\": " + entry.getCount() + ", \"reused\": " + entry.getReusedCount()
+			+ ", \"bytesIn\": " + entry.getBytesIn() + ", \"bytesOut\": " + entry.getBytesOut()
+			+ ", \"latencyUs\": {\"count\": " + entry.getLatencyCount() + ", \"min\": " + entry.getMinLatency()
+			+ ", \"mean\": " + entry.getMeanLatency());
+		for (double p : PERCENTILES)
+			w.write(", \"p" + (int) p + "\": " + entry.getLatencyAtPercentile(p));
+		w.write(", \"max\": " + entry.getMaxLatency() + "}, \"status\": {");
+
+		boolean first = true;
+		Iterator<Map.Entry<String, long[]>> iterator = entry.statusCounts.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, long[]> me = iterator.next();
+			if (!first)
+				w.write(", ");
+			first = false;
+			w.write(quoteJSON(me.getKey()) + ": " + me.getValue()[0]);
+		}
+		w.write("}}");
+	}
+
+	private static String quoteJSON(String s) {
+		StringBuffer sb = new StringBuffer(s.length() + 2);
+		sb.append('"');
+		int size = s.length();
+		for (int i = 0; i < size; i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\');
+				sb.append(c);
+			} else if (c < 0x20) {
+				String hex = Integer.toHexString(c);
+				sb.append("\\u");
+				for (int j = hex.length(); j < 4; j++)
+					sb.append('0');
+				sb.append(hex);
+			} else
+				sb.append(c);
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+}
@@ -1,5 +1,5 @@
 /**********************************************************************
- * Copyright (c) 2003, 2013 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,6 +21,7 @@ import org.eclipse.debug.core.ILaunchConfiguration;
 
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.internal.*;
+import org.eclipse.wst.server.core.util.ProjectModuleFactoryDelegate;
 /**
  * Server utility methods. These static methods can be used to perform
  * common operations on server artifacts.
@@ -87,8 +88,15 @@ public class ServerUtil {
 		if (project == null)
 			throw new IllegalArgumentException();
 		
+		IModule[] cached = ProjectModuleCache.get(project);
+		if (cached != null)
+			return cached;
+		
+		long generation = ProjectModuleCache.getGeneration();
+		boolean cacheable = true;
+		
 		// use a set for better contains() performance
-		List<IModule> list = new ArrayList<IModule>();
+		Set<IModule> set = new LinkedHashSet<IModule>();
 		
 		ModuleFactory[] factories = ServerPlugin.getModuleFactories();
 
@@ -97,15 +105,19 @@ public class ServerUtil {
 				if (factory.isEnabled(project, null)){
 					IModule[] modules = factory.getModules(project, null);
 					if (modules != null) {
-						for (IModule module : modules) {
-							if (!list.contains(module))
-								list.add(module);
-						}
+						for (IModule module : modules)
+							set.add(module);
 					}
+					// only project module factories tell us when their modules change
+					if (!(factory.delegate instanceof ProjectModuleFactoryDelegate))
+						cacheable = false;
 				}
 			}
 		}
-		return list.toArray(new IModule[list.size()]);
+		IModule[] modules = set.toArray(new IModule[set.size()]);
+		if (cacheable)
+			ProjectModuleCache.put(project, modules, generation);
+		return modules;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,7 +18,26 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -39,6 +58,171 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 	private int DEFAULT_DOWNLOAD_SIZE = 10000000;
 	private int DEFAULT_FILE_COUNT = 1000;
 
+	// downloaded archives are cached in this folder of the plugin state location
+	private static final String CACHE_DIR = "runtimeArchives";
+	private static final String CACHE_INDEX = "index.properties";
+	private static final String PARTIAL_EXT = ".part";
+	private static final String TEMP_EXT = ".tmp";
+
+	// cache index keys, appended to the archive URL
+	private static final String ETAG = "|etag";
+	private static final String LAST_MODIFIED = "|lastModified";
+	private static final String TIME = "|time";
+	private static final String PARTIAL_ETAG = "|partial.etag";
+	private static final String PARTIAL_LAST_MODIFIED = "|partial.lastModified";
+
+	// archives without a checksum or validator are downloaded again after this long, in ms
+	private static final long CACHE_MAX_AGE = 24L * 60 * 60 * 1000;
+
+	// cached archives and partial downloads that have not been used for this long are deleted, in ms
+	private static final long CACHE_MAX_UNUSED = 30L * 24 * 60 * 60 * 1000;
+
+	// once the cached archives take more than this, the least recently used are deleted, in bytes
+	private static final long CACHE_MAX_SIZE = 1024L * 1024 * 1024;
+
+	// number of times to try to resume a download before giving up
+	private static final int DOWNLOAD_ATTEMPTS = 5;
+
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+	// archives with more files than this are extracted using a pool of writer threads
+	private static final int PARALLEL_FILE_COUNT = 500;
+	private static final int WRITER_THREADS = 4;
+
+	// entries up to this size are handed to the writer threads, larger ones are written directly
+	private static final int MAX_QUEUED_ENTRY_SIZE = 1024 * 1024;
+
+	// maximum number of bytes waiting to be written by the writer threads
+	private static final int MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+
+	// time to wait for the writer threads to stop when extracting is canceled, in ms
+	private static final long CANCEL_TIMEOUT = 10000;
+
+	/**
+	 * Writes extracted archive entries to disk. If parallel, small entries are
+	 * read into memory and written by a bounded pool of threads, so that disk
+	 * writes overlap with decompression; otherwise all entries are written on
+	 * the calling thread.
+	 */
+	private class EntryWriter {
+		private ExecutorService executor;
+		private Semaphore queuedBytes;
+		private Set<File> dirs = new HashSet<File>();
+		private IOException error;
+
+		protected EntryWriter(boolean parallel) {
+			if (parallel) {
+				executor = Executors.newFixedThreadPool(WRITER_THREADS, new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Runtime Install Writer");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				queuedBytes = new Semaphore(MAX_QUEUED_BYTES);
+			}
+		}
+
+		protected void mkdirs(File dir) {
+			if (dirs.add(dir) && !dir.exists())
+				dir.mkdirs();
+		}
+
+		/**
+		 * Write the next size bytes of the stream into the given file.
+		 */
+		protected void write(final File file, InputStream in, int size, IProgressMonitor monitor) throws IOException {
+			checkError();
+			mkdirs(file.getParentFile());
+			
+			if (executor == null || size < 0 || size > MAX_QUEUED_ENTRY_SIZE) {
+				FileOutputStream fout = new FileOutputStream(file);
+				try {
+					copyWithSize(in, fout, monitor, size);
+				} finally {
+					fout.close();
+				}
+				return;
+			}
+			
+			final byte[] b = new byte[size];
+			int n = 0;
+			while (n < size) {
+				int r = in.read(b, n, size - n);
+				if (r < 0)
+					throw new IOException("early end of stream"); //$NON-NLS-1$
+				n += r;
+			}
+			if (monitor != null)
+				monitor.done();
+			
+			try {
+				queuedBytes.acquire(size);
+			} catch (InterruptedException e) {
+				throw new IOException(e.getMessage());
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						FileOutputStream fout = new FileOutputStream(file);
+						try {
+							fout.write(b);
+						} finally {
+							fout.close();
+						}
+					} catch (IOException e) {
+						setError(e);
+					} finally {
+						queuedBytes.release(b.length);
+					}
+				}
+			});
+		}
+
+		protected synchronized void setError(IOException e) {
+			if (error == null)
+				error = e;
+		}
+
+		protected synchronized void checkError() throws IOException {
+			if (error != null)
+				throw error;
+		}
+
+		/**
+		 * Wait for all queued entries to be written, and throw the first error
+		 * that occurred.
+		 */
+		protected void finish() throws IOException {
+			if (executor != null) {
+				executor.shutdown();
+				try {
+					queuedBytes.acquire(MAX_QUEUED_BYTES);
+					queuedBytes.release(MAX_QUEUED_BYTES);
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage());
+				}
+			}
+			checkError();
+		}
+
+		/**
+		 * Stop writing without waiting for queued entries. Entries that are
+		 * already being written are allowed to finish, so that nothing is
+		 * written after this method returns.
+		 */
+		protected void cancel() {
+			if (executor != null) {
+				executor.shutdownNow();
+				try {
+					executor.awaitTermination(CANCEL_TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
 	public InstallableRuntime2(IConfigurationElement element) {
 		super();
 		this.element = element;
@@ -78,6 +262,23 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 		return null;
 	}
 
+	/**
+	 * Returns the expected SHA-256 checksum of the archive, as a lower case hex
+	 * string, or <code>null</code> if it is not specified.
+	 * 
+	 * @return the checksum, or <code>null</code>
+	 */
+	public String getArchiveSha256() {
+		try {
+			String sha256 = element.getAttribute("archiveSha256");
+			if (sha256 != null && sha256.trim().length() > 0)
+				return sha256.trim().toLowerCase();
+		} catch (Exception e) {
+			// ignore
+		}
+		return null;
+	}
+
 	public int getArchiveSize() {
 		try {
 			String size = element.getAttribute("archiveSize");
@@ -174,7 +375,215 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 		}
 	}
 
-	private void download(InputStream in, OutputStream out, IProgressMonitor monitor, String name, int size) throws IOException {
+	/**
+	 * Returns the downloaded archive from the given URL. Archives are kept in a
+	 * cache in the plugin state location, named by the SHA-256 checksum of their
+	 * content, so that installing the same runtime again does not download it
+	 * again. If the extension declares a checksum, the archive is verified
+	 * against it. Otherwise the cached archive is only used while the server
+	 * reports that it has not changed, or, if the server gave no validator,
+	 * for a limited time.
+	 * 
+	 * @param url the archive URL
+	 * @param name the archive name
+	 * @param monitor a progress monitor
+	 * @return the archive, or <code>null</code> if the download was cancelled
+	 * @throws IOException if the archive could not be downloaded or verified
+	 */
+	private File getArchive(URL url, String name, IProgressMonitor monitor) throws IOException {
+		File cacheDir = ServerPlugin.getInstance().getStateLocation().append(CACHE_DIR).toFile();
+		if (!cacheDir.exists())
+			cacheDir.mkdirs();
+		
+		String sha256 = getArchiveSha256();
+		String key = url.toExternalForm();
+		String hash = (sha256 != null) ? sha256 : getCacheProperty(cacheDir, key);
+		if (hash != null) {
+			File file = new File(cacheDir, hash);
+			if (file.exists() && (sha256 != null || isCurrent(url, cacheDir, key)) && hash.equals(getChecksum(file))) {
+				if (Trace.FINER) {
+					Trace.trace(Trace.STRING_FINER, "Using cached runtime archive " + file + " for " + url);
+				}
+				// the modification time marks when the archive was last used
+				file.setLastModified(System.currentTimeMillis());
+				return file;
+			}
+		}
+		
+		// partial downloads are kept so that they can be resumed
+		String partName = (sha256 != null) ? sha256 : toHex(getDigest().digest(key.getBytes("UTF-8")));
+		File part = new File(cacheDir, partName + PARTIAL_EXT);
+		if (!download(url, part, name, getArchiveSize(), sha256 != null, cacheDir, key, monitor))
+			return null;
+		
+		String actual = getChecksum(part);
+		if (sha256 != null && !sha256.equals(actual)) {
+			part.delete();
+			throw new IOException(NLS.bind(Messages.errorChecksum, name));
+		}
+		
+		File file = new File(cacheDir, actual);
+		if (file.exists())
+			file.delete();
+		if (!part.renameTo(file))
+			throw new IOException(NLS.bind(Messages.errorSaving, file.getAbsolutePath()));
+		file.setLastModified(System.currentTimeMillis());
+		
+		String previous = (sha256 == null) ? getCacheProperty(cacheDir, key) : null;
+		Map<String, String> map = new HashMap<String, String>();
+		if (sha256 == null) {
+			map.put(key, actual);
+			map.put(key + ETAG, getCacheProperty(cacheDir, key + PARTIAL_ETAG));
+			map.put(key + LAST_MODIFIED, getCacheProperty(cacheDir, key + PARTIAL_LAST_MODIFIED));
+			map.put(key + TIME, Long.toString(System.currentTimeMillis()));
+		}
+		map.put(key + PARTIAL_ETAG, null);
+		map.put(key + PARTIAL_LAST_MODIFIED, null);
+		setCacheProperties(cacheDir, map);
+		
+		// the archive that the URL used to have is no longer needed
+		if (previous != null && !previous.equals(actual))
+			deleteUnusedArchive(cacheDir, previous);
+		pruneCache(cacheDir, file);
+		return file;
+	}
+
+	/**
+	 * Deletes the cached archive with the given checksum, unless another URL
+	 * in the cache index still refers to it.
+	 */
+	private static synchronized void deleteUnusedArchive(File cacheDir, String hash) {
+		if (loadCacheIndex(cacheDir).containsValue(hash))
+			return;
+		
+		if (Trace.FINER) {
+			Trace.trace(Trace.STRING_FINER, "Deleting superseded runtime archive " + hash);
+		}
+		new File(cacheDir, hash).delete();
+	}
+
+	/**
+	 * Deletes cached archives and partial downloads that have not been used for
+	 * a while, and then the least recently used archives until the cache is
+	 * within its size limit. The given archive, which was just downloaded, is
+	 * always kept. Index entries of deleted archives are removed.
+	 */
+	private static synchronized void pruneCache(File cacheDir, File keep) {
+		File[] files = cacheDir.listFiles();
+		if (files == null)
+			return;
+		
+		long now = System.currentTimeMillis();
+		long total = keep.length();
+		List<File> archives = new ArrayList<File>();
+		Set<String> deleted = new HashSet<String>();
+		for (File file : files) {
+			String name = file.getName();
+			if (!file.isFile() || file.equals(keep) || name.equals(CACHE_INDEX) || name.endsWith(TEMP_EXT))
+				continue;
+			
+			if (now - file.lastModified() > CACHE_MAX_UNUSED) {
+				if (file.delete())
+					deleted.add(name);
+			} else if (!name.endsWith(PARTIAL_EXT)) {
+				archives.add(file);
+				total += file.length();
+			}
+		}
+		
+		if (total > CACHE_MAX_SIZE) {
+			File[] lru = archives.toArray(new File[archives.size()]);
+			Arrays.sort(lru, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					long t1 = f1.lastModified();
+					long t2 = f2.lastModified();
+					return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+				}
+			});
+			for (int i = 0; i < lru.length && total > CACHE_MAX_SIZE; i++) {
+				long length = lru[i].length();
+				if (lru[i].delete()) {
+					deleted.add(lru[i].getName());
+					total -= length;
+				}
+			}
+		}
+		
+		if (deleted.isEmpty())
+			return;
+		
+		if (Trace.FINER) {
+			Trace.trace(Trace.STRING_FINER, "Deleted unused runtime archives " + deleted);
+		}
+		Properties index = loadCacheIndex(cacheDir);
+		Map<String, String> map = new HashMap<String, String>();
+		Iterator<Map.Entry<Object, Object>> iterator = index.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Object, Object> me = iterator.next();
+			if (deleted.contains(me.getValue())) {
+				String key = (String) me.getKey();
+				map.put(key, null);
+				map.put(key + ETAG, null);
+				map.put(key + LAST_MODIFIED, null);
+				map.put(key + TIME, null);
+			}
+		}
+		if (!map.isEmpty())
+			setCacheProperties(cacheDir, map);
+	}
+
+	/**
+	 * Returns true if the archive cached for the given URL, which has no
+	 * declared checksum, may still be used. If the server gave a validator, it
+	 * is asked whether the archive has changed; otherwise the archive expires
+	 * after a while.
+	 */
+	private static boolean isCurrent(URL url, File cacheDir, String key) {
+		String etag = getCacheProperty(cacheDir, key + ETAG);
+		String lastModified = getCacheProperty(cacheDir, key + LAST_MODIFIED);
+		if (etag != null || lastModified != null) {
+			try {
+				URLConnection conn = url.openConnection();
+				if (conn instanceof HttpURLConnection) {
+					HttpURLConnection http = (HttpURLConnection) conn;
+					http.setRequestMethod("HEAD");
+					if (etag != null)
+						http.setRequestProperty("If-None-Match", etag);
+					if (lastModified != null)
+						http.setRequestProperty("If-Modified-Since", lastModified);
+					int code = http.getResponseCode();
+					http.disconnect();
+					return code == HttpURLConnection.HTTP_NOT_MODIFIED;
+				}
+			} catch (IOException e) {
+				// can't check while offline, so keep using the cached archive
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Could not revalidate cached runtime archive: " + url, e);
+				}
+				return true;
+			}
+		}
+		
+		String time = getCacheProperty(cacheDir, key + TIME);
+		try {
+			return time != null && System.currentTimeMillis() - Long.parseLong(time) < CACHE_MAX_AGE;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Downloads the URL into the given file. If the file already contains part of
+	 * the content, or the connection is lost, the download is resumed using an
+	 * HTTP range request if the server supports it. A download is only resumed
+	 * if the archive will be verified against a declared checksum, or if the
+	 * server gave a validator for the partial content, which is sent with the
+	 * request so that the server starts over if the archive has changed.
+	 * 
+	 * @return <code>true</code> if the download completed, or <code>false</code>
+	 *    if it was cancelled
+	 */
+	private boolean download(URL url, File file, String name, int size, boolean verified, File cacheDir, String key, IProgressMonitor monitor) throws IOException {
 		if (BUFFER == null)
 			BUFFER = new byte[8192];
 		
@@ -182,25 +591,232 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 				new Object [] { name, "{0}", Integer.toString(size / 1024) });
 		SubMonitor progress = SubMonitor.convert(monitor, NLS.bind(msg, "0"), (size > 0) ? size : DEFAULT_DOWNLOAD_SIZE);
 		
-		int r = in.read(BUFFER);
-		int total = 0;
-		int lastTotal = 0;
-		while (r >= 0) {
-			out.write(BUFFER, 0, r);
-			total += r;
-			if (total >= lastTotal + 8192) {
-				lastTotal = total;
-				progress.subTask(NLS.bind(msg, Integer.toString(lastTotal / 1024)));
-			}
-			progress.worked(r);
-			// if size is not known, use infinite logarithmic progress
-			if (size <= 0)
-				progress.setWorkRemaining(DEFAULT_DOWNLOAD_SIZE);
+		int attempt = 0;
+		while (true) {
+			long offset = file.exists() ? file.length() : 0;
+			String validator = getCacheProperty(cacheDir, key + PARTIAL_ETAG);
+			if (validator == null)
+				validator = getCacheProperty(cacheDir, key + PARTIAL_LAST_MODIFIED);
+			URLConnection conn = url.openConnection();
+			if (offset > 0 && conn instanceof HttpURLConnection && (verified || validator != null)) {
+				conn.setRequestProperty("Range", "bytes=" + offset + "-");
+				if (validator != null)
+					conn.setRequestProperty("If-Range", validator);
+			} else
+				offset = 0;
 			
-			if (progress.isCanceled())
-				break;
-			r = in.read(BUFFER);
+			InputStream in = null;
+			OutputStream out = null;
+			try {
+				if (offset > 0) {
+					int code = ((HttpURLConnection) conn).getResponseCode();
+					if (code == HTTP_RANGE_NOT_SATISFIABLE) {
+						// the partial file may already be complete
+						if (isComplete(conn, offset, verified))
+							return true;
+						// the next attempt starts over
+						file.delete();
+						throw new IOException("Invalid partial download: " + file);
+					}
+					// the server doesn't support ranges, or the archive has changed; start over
+					if (code != HttpURLConnection.HTTP_PARTIAL)
+						offset = 0;
+				}
+				
+				in = conn.getInputStream();
+				out = new FileOutputStream(file, offset > 0);
+				if (offset == 0)
+					setPartialValidators(conn, cacheDir, key);
+				
+				int total = (int) offset;
+				int lastTotal = total;
+				progress.setWorkRemaining((size > 0) ? Math.max(size - total, 0) : DEFAULT_DOWNLOAD_SIZE);
+				int r = in.read(BUFFER);
+				while (r >= 0) {
+					out.write(BUFFER, 0, r);
+					total += r;
+					if (total >= lastTotal + 8192) {
+						lastTotal = total;
+						progress.subTask(NLS.bind(msg, Integer.toString(lastTotal / 1024)));
+					}
+					progress.worked(r);
+					// if size is not known, use infinite logarithmic progress
+					if (size <= 0)
+						progress.setWorkRemaining(DEFAULT_DOWNLOAD_SIZE);
+					
+					if (progress.isCanceled())
+						return false;
+					r = in.read(BUFFER);
+				}
+				return true;
+			} catch (IOException e) {
+				if (progress.isCanceled() || ++attempt >= DOWNLOAD_ATTEMPTS)
+					throw e;
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Download interrupted, resuming: " + url, e);
+				}
+			} finally {
+				try {
+					if (in != null)
+						in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				try {
+					if (out != null)
+						out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a partial download that the server refused to resume
+	 * already holds the whole archive, according to the Content-Range of the
+	 * response. If the server does not say, the download is only accepted if
+	 * it will be verified against a checksum.
+	 */
+	private static boolean isComplete(URLConnection conn, long offset, boolean verified) {
+		String range = conn.getHeaderField("Content-Range");
+		if (range != null) {
+			int index = range.lastIndexOf('/');
+			try {
+				if (index >= 0)
+					return Long.parseLong(range.substring(index + 1).trim()) == offset;
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return verified;
+	}
+
+	/**
+	 * Remembers the validators of a download that starts from the beginning,
+	 * so that the download can be resumed safely. Weak entity tags can't be
+	 * used for range requests.
+	 */
+	private static void setPartialValidators(URLConnection conn, File cacheDir, String key) {
+		String etag = conn.getHeaderField("ETag");
+		if (etag != null && etag.startsWith("W/"))
+			etag = null;
+		Map<String, String> map = new HashMap<String, String>();
+		map.put(key + PARTIAL_ETAG, etag);
+		map.put(key + PARTIAL_LAST_MODIFIED, conn.getHeaderField("Last-Modified"));
+		setCacheProperties(cacheDir, map);
+	}
+
+	private static MessageDigest getDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 checksum of the given file, as a lower case hex string.
+	 */
+	private String getChecksum(File file) throws IOException {
+		MessageDigest digest = getDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] b = new byte[65536];
+			int r = in.read(b);
+			while (r >= 0) {
+				digest.update(b, 0, r);
+				r = in.read(b);
+			}
+		} finally {
+			in.close();
 		}
+		return toHex(digest.digest());
+	}
+
+	private static String toHex(byte[] b) {
+		StringBuffer sb = new StringBuffer(b.length * 2);
+		for (int i = 0; i < b.length; i++) {
+			sb.append(Character.forDigit((b[i] >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b[i] & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a value from the cache index, e.g. the checksum of the archive
+	 * last downloaded from a URL, or <code>null</code> if it is not known.
+	 */
+	private static synchronized String getCacheProperty(File cacheDir, String key) {
+		return loadCacheIndex(cacheDir).getProperty(key);
+	}
+
+	/**
+	 * Sets values in the cache index. Keys with a <code>null</code> value are
+	 * removed.
+	 */
+	private static synchronized void setCacheProperties(File cacheDir, Map<String, String> map) {
+		Properties index = loadCacheIndex(cacheDir);
+		for (Map.Entry<String, String> me : map.entrySet()) {
+			if (me.getValue() == null)
+				index.remove(me.getKey());
+			else
+				index.setProperty(me.getKey(), me.getValue());
+		}
+		
+		// write a temporary file and rename it, so the index is never left partly written
+		File file = new File(cacheDir, CACHE_INDEX);
+		File temp = new File(cacheDir, CACHE_INDEX + TEMP_EXT);
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(temp);
+			index.store(out, null);
+			out.getFD().sync();
+			out.close();
+			out = null;
+			if (!temp.renameTo(file)) {
+				// on some platforms an existing file can't be replaced
+				file.delete();
+				if (!temp.renameTo(file))
+					throw new IOException("Could not rename " + temp + " to " + file);
+			}
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not save runtime archive cache index", e);
+			}
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private static Properties loadCacheIndex(File cacheDir) {
+		Properties index = new Properties();
+		File file = new File(cacheDir, CACHE_INDEX);
+		if (!file.exists())
+			return index;
+		
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			index.load(in);
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not load runtime archive cache index", e);
+			}
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		return index;
 	}
 
 	/*
@@ -209,16 +825,13 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 	public void install(IPath path, IProgressMonitor monitor) throws CoreException {
 		SubMonitor progress = SubMonitor.convert(monitor, 1000);
 		URL url = null;
-		File temp = null;
 		try {
 			url = new URL(getArchiveUrl());
-			temp = File.createTempFile("runtime", "");
-			temp.deleteOnExit();
 		} catch (IOException e) {
 			if (monitor != null)
 				monitor.done();
 			if (Trace.WARNING) {
-				Trace.trace(Trace.STRING_WARNING, "Error creating url and temp file", e);
+				Trace.trace(Trace.STRING_WARNING, "Error creating url", e);
 			}
 			throw new CoreException(new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0,
 				NLS.bind(Messages.errorInstallingServer, e.getLocalizedMessage()), e));
@@ -228,14 +841,10 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 		if (slashIdx >= 0)
 			name = name.substring(slashIdx + 1);
 		
-		int archiveSize = getArchiveSize();
-		
-		// download
-		FileOutputStream fout = null;
+		// download, or reuse a previous download
+		File archive = null;
 		try {
-			InputStream in = url.openStream();
-			fout = new FileOutputStream(temp);
-			download(in, fout, progress.newChild(500), name, archiveSize);
+			archive = getArchive(url, name, progress.newChild(500));
 			progress.setWorkRemaining(500);
 		} catch (Exception e) {
 			if (monitor != null)
@@ -245,43 +854,38 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 			}
 			throw new CoreException(new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0,
 				NLS.bind(Messages.errorInstallingServer, e.getLocalizedMessage()), e));
-		} finally {
-			try {
-				if (fout != null)
-					fout.close();
-			} catch (IOException e) {
-				// ignore
-			}
 		}
-		if (progress.isCanceled())
+		if (archive == null || progress.isCanceled())
 			throw new CoreException(Status.CANCEL_STATUS);
 		
+		// only remove a partial install from a folder that was empty to begin with
+		File installDir = path.toFile();
+		String[] existing = installDir.list();
+		boolean removePartial = !installDir.exists() || (existing != null && existing.length == 0);
+		
 		FileInputStream in = null;
 		try {
-			in = new FileInputStream(temp);
+			in = new FileInputStream(archive);
 			if (name.endsWith("zip"))
 				unzip(in, path, progress.newChild(500));
 			else if (name.endsWith("tar"))
 				untar(in, path, progress.newChild(500));
 			else if (name.endsWith("tar.gz")) {
-				File tarFile = File.createTempFile("runtime", ".tar");
-				tarFile.deleteOnExit();
-				String tarName = name;
-				if (slashIdx >= 0)
-					tarName = name.substring(0, name.length() - 3);
-				
+				// uncompress and extract in a single pass, without an intermediate tar file
+				String tarName = name.substring(0, name.length() - 3);
 				progress.subTask(NLS.bind(Messages.taskUncompressing, tarName));
-				int tempSize = Integer.MAX_VALUE;
-				if (temp.length() < Integer.MAX_VALUE)
-					tempSize = (int)temp.length();
-				
-				ungzip(in, tarFile, progress.newChild(250), tempSize);
-				progress.setWorkRemaining(250);
-				if (!progress.isCanceled()) {
-					in = new FileInputStream(tarFile);
-					untar(in, path, progress.newChild(250));
+				untar(new GZIPInputStream(new BufferedInputStream(in, 65536), 65536), path, progress.newChild(500));
+			}
+		} catch (OperationCanceledException e) {
+			if (removePartial) {
+				try {
+					in.close();
+				} catch (IOException ioe) {
+					// ignore
 				}
+				ServerPlugin.deleteDirectory(installDir, null);
 			}
+			throw new CoreException(Status.CANCEL_STATUS);
 		} catch (Exception e) {
 			if (Trace.SEVERE) {
 				Trace.trace(Trace.STRING_SEVERE, "Error uncompressing runtime", e);
@@ -306,6 +910,7 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 	 * @param path
 	 * @param monitor
 	 * @throws IOException
+	 * @throws OperationCanceledException if the monitor was canceled
 	 */
 	private void unzip(InputStream in, IPath path, IProgressMonitor monitor) throws IOException {
 		int fileCnt = getFileCount();
@@ -315,6 +920,10 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 		ZipInputStream zin = new ZipInputStream(bin);
 		ZipEntry entry = zin.getNextEntry();
 		while (entry != null) {
+			if (progress.isCanceled()) {
+				zin.close();
+				throw new OperationCanceledException();
+			}
 			String name = entry.getName();
 			progress.subTask(NLS.bind(Messages.taskUncompressing, name));
 			if (archivePath != null && name.startsWith(archivePath)) {
@@ -324,10 +933,11 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 			}
 			
 			if (name != null && name.length() > 0) {
+				IPath target = getTargetPath(path, name);
 				if (entry.isDirectory())
-					path.append(name).toFile().mkdirs();
+					target.toFile().mkdirs();
 				else {
-					FileOutputStream fout = new FileOutputStream(path.append(name).toFile());
+					FileOutputStream fout = new FileOutputStream(target.toFile());
 					copyWithSize(zin, fout, progress.newChild(1), (int)entry.getSize());
 					fout.close();
 					// if count is not known, use infinite logarithmic progress
@@ -348,6 +958,7 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 	 * @param path
 	 * @param monitor
 	 * @throws IOException
+	 * @throws OperationCanceledException if the monitor was canceled
 	 */
 	protected void untar(InputStream in, IPath path, IProgressMonitor monitor) throws IOException {
 		int fileCnt = getFileCount();
@@ -355,61 +966,58 @@ public class InstallableRuntime2 implements IInstallableRuntime {
 		String archivePath = getArchivePath();
 		BufferedInputStream bin = new BufferedInputStream(in);
 		TarInputStream zin = new TarInputStream(bin);
-		TarEntry entry = zin.getNextEntry();
-		while (entry != null) {
-			String name = entry.getName();
-			progress.subTask(NLS.bind(Messages.taskUncompressing, name));
-			if (archivePath != null && name.startsWith(archivePath)) {
-				name = name.substring(archivePath.length());
-				if (name.length() > 1)
-					name = name.substring(1);
-			}
-			
-			if (name != null && name.length() > 0) {
-				if (entry.getFileType() == TarEntry.DIRECTORY)
-					path.append(name).toFile().mkdirs();
-				else {
-					File dir = path.append(name).removeLastSegments(1).toFile();
-					if (!dir.exists())
-						dir.mkdirs();
-					
-					FileOutputStream fout = new FileOutputStream(path.append(name).toFile());
-					copyWithSize(zin, fout, progress.newChild(1), (int)entry.getSize());
-					fout.close();
-					if (fileCnt <= 0)
-						progress.setWorkRemaining(500);
-				}
-			}
-			entry = zin.getNextEntry();
-		}
-		zin.close();
-	}
-
-	protected void ungzip(InputStream in, File tarFile, IProgressMonitor monitor, int size) throws IOException {
-		GZIPInputStream gzin = null;
-		FileOutputStream fout = null;
+		EntryWriter writer = new EntryWriter(fileCnt <= 0 || fileCnt > PARALLEL_FILE_COUNT);
+		boolean done = false;
 		try {
-			gzin = new GZIPInputStream(in);
-			fout = new FileOutputStream(tarFile);
-			copyWithSize(gzin, fout, monitor, size);
-		} finally {
-			if (gzin != null) {
-				try {
-					gzin.close();
-				} catch (IOException e) {
-					// ignore
+			TarEntry entry = zin.getNextEntry();
+			while (entry != null) {
+				if (progress.isCanceled())
+					throw new OperationCanceledException();
+				String name = entry.getName();
+				progress.subTask(NLS.bind(Messages.taskUncompressing, name));
+				if (archivePath != null && name.startsWith(archivePath)) {
+					name = name.substring(archivePath.length());
+					if (name.length() > 1)
+						name = name.substring(1);
 				}
-				if (fout != null) {
-					try {
-						fout.close();
-					} catch (IOException e) {
-						// ignore
+				
+				if (name != null && name.length() > 0) {
+					IPath target = getTargetPath(path, name);
+					if (entry.getFileType() == TarEntry.DIRECTORY)
+						writer.mkdirs(target.toFile());
+					else {
+						writer.write(target.toFile(), zin, (int)entry.getSize(), progress.newChild(1));
+						if (fileCnt <= 0)
+							progress.setWorkRemaining(500);
 					}
 				}
+				entry = zin.getNextEntry();
 			}
+			writer.finish();
+			done = true;
+		} finally {
+			if (!done)
+				writer.cancel();
+			zin.close();
 		}
 	}
 
+	/**
+	 * Returns the path to extract the given archive entry to, making sure that
+	 * it is within the install path.
+	 * 
+	 * @param path the install path
+	 * @param name the relative name of the archive entry
+	 * @return the path to extract to
+	 * @throws IOException if the entry would be extracted outside of the path
+	 */
+	private static IPath getTargetPath(IPath path, String name) throws IOException {
+		IPath target = path.append(name);
+		if (!path.isPrefixOf(target))
+			throw new IOException(NLS.bind(Messages.errorInvalidArchiveEntry, name));
+		return target;
+	}
+
 	public String toString() {
 		return "InstallableRuntime2[" + getId() + "]";
 	}
@@ -49,9 +49,13 @@ public class Messages extends NLS {
 	public static String errorStopFailed;
 	public static String errorRestartTimeout;
 	public static String errorRestartFailed;
+	public static String errorUpdateServer;
+	public static String errorUpdateServerTimeout;
 	public static String errorModuleRestartFailed;
 	public static String errorInstallingServer;
 	public static String errorInstallingServerFeature;
+	public static String errorInvalidArchiveEntry;
+	public static String errorChecksum;
 	public static String errorRestartModule;
 	public static String errorPublishModule;
 	public static String canStartErrorState;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -155,6 +155,38 @@ public class ModuleArtifactAdapter {
 		return evalEnablementExpression(context, getContextualLaunchEnablementExpression());
 	}
 
+	/**
+	 * Returns true if enabled for the given object, using the result cached for
+	 * the given key if there is one.
+	 * 
+	 * @param obj an object
+	 * @param key the cache key of the object, or <code>null</code> if the
+	 *    result should not be cached
+	 * @return <code>true</code> if enabled
+	 * @throws CoreException if anything goes wrong
+	 * @see ModuleArtifactAdapterCache#getKey(Object)
+	 */
+	public boolean isEnabled(Object obj, ModuleArtifactAdapterCache.Key key) throws CoreException {
+		Boolean b = ModuleArtifactAdapterCache.get(key, this);
+		if (b != null)
+			return b.booleanValue();
+		
+		Expression exp = getContextualLaunchEnablementExpression();
+		if (exp == null) {
+			ModuleArtifactAdapterCache.put(key, this, false);
+			return false;
+		}
+		
+		IEvaluationContext context = new EvaluationContext(null, obj);
+		context.addVariable("selection", obj);
+		EvaluationResult result = exp.evaluate(context);
+		
+		// don't cache optimistic results, they may change once the plugin is loaded
+		if (result != EvaluationResult.NOT_LOADED)
+			ModuleArtifactAdapterCache.put(key, this, result == EvaluationResult.TRUE);
+		return result != EvaluationResult.FALSE;
+	}
+
 	public ModuleArtifactAdapterDelegate getDelegate() {
 		if (delegate == null) {
 			try {
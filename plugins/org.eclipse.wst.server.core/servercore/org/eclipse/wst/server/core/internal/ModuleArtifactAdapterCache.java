@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.*;
+/**
+ * Memoizes the results of the module artifact adapters' enablement expressions.
+ * <p>
+ * Only resources are cached. They are keyed by their class and path, and
+ * their results are discarded whenever anything in the resource's project
+ * changes, since expressions typically test project natures or facets. Other
+ * objects, including objects that adapt to a resource, are never cached:
+ * expressions may test more than the resource, and nothing tells us when that
+ * changes. All results are discarded when the module artifact adapter
+ * extensions change. Expressions that could not be fully evaluated because a
+ * plugin is not loaded yet are never cached.
+ * </p>
+ */
+public class ModuleArtifactAdapterCache {
+	// project name -> (adapter id + object key -> enablement), guarded by cache
+	private static final Map<String, Map<String, Boolean>> cache = new HashMap<String, Map<String, Boolean>>();
+
+	private static IResourceChangeListener resourceListener;
+	private static IRegistryChangeListener registryListener;
+
+	/**
+	 * The cache key of an object.
+	 */
+	public static class Key {
+		protected String project;
+		protected String key;
+
+		protected Key(String project, String key) {
+			this.project = project;
+			this.key = key;
+		}
+
+		public String toString() {
+			return "Key [" + project + ", " + key + "]";
+		}
+	}
+
+	private ModuleArtifactAdapterCache() {
+		// can't create
+	}
+
+	/**
+	 * Returns the cache key for the given object, or <code>null</code> if the
+	 * object's results can't be cached.
+	 *
+	 * @param obj an object
+	 * @return the key, or <code>null</code>
+	 */
+	public static Key getKey(Object obj) {
+		if (!(obj instanceof IResource))
+			return null;
+
+		IResource resource = (IResource) obj;
+		if (resource.getProject() == null)
+			return null;
+
+		addListeners();
+		return new Key(resource.getProject().getName(), obj.getClass().getName() + ":" + resource.getFullPath());
+	}
+
+	/**
+	 * Returns the cached enablement of the given adapter for the object with the
+	 * given key, or <code>null</code> if it is not cached.
+	 *
+	 * @param key an object key, or <code>null</code> if the object can't be cached
+	 * @param adapter a module artifact adapter
+	 * @return the cached enablement, or <code>null</code>
+	 */
+	public static Boolean get(Key key, ModuleArtifactAdapter adapter) {
+		if (key == null)
+			return null;
+
+		synchronized (cache) {
+			Map<String, Boolean> map = cache.get(key.project);
+			if (map == null)
+				return null;
+			return map.get(adapter.getId() + "|" + key.key);
+		}
+	}
+
+	/**
+	 * Caches the enablement of the given adapter for the object with the given key.
+	 *
+	 * @param key an object key, or <code>null</code> if the object can't be cached
+	 * @param adapter a module artifact adapter
+	 * @param enabled the enablement
+	 */
+	public static void put(Key key, ModuleArtifactAdapter adapter, boolean enabled) {
+		if (key == null)
+			return;
+
+		synchronized (cache) {
+			Map<String, Boolean> map = cache.get(key.project);
+			if (map == null) {
+				map = new HashMap<String, Boolean>();
+				cache.put(key.project, map);
+			}
+			map.put(adapter.getId() + "|" + key.key, Boolean.valueOf(enabled));
+		}
+	}
+
+	/**
+	 * Clears all cached results.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	private static synchronized void addListeners() {
+		if (resourceListener != null)
+			return;
+
+		resourceListener = new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event) {
+				IResourceDelta delta = event.getDelta();
+				if (delta == null)
+					return;
+
+				IResourceDelta[] children = delta.getAffectedChildren();
+				synchronized (cache) {
+					for (IResourceDelta child : children)
+						cache.remove(child.getResource().getName());
+				}
+			}
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener, IResourceChangeEvent.POST_CHANGE);
+
+		registryListener = new IRegistryChangeListener() {
+			public void registryChanged(IRegistryChangeEvent event) {
+				IExtensionDelta[] deltas = event.getExtensionDeltas(ServerPlugin.PLUGIN_ID, "moduleArtifactAdapters");
+				if (deltas != null && deltas.length > 0) {
+					ServerPlugin.resetModuleArtifactAdapters();
+					clear();
+				}
+			}
+		};
+		Platform.getExtensionRegistry().addRegistryChangeListener(registryListener, ServerPlugin.PLUGIN_ID);
+	}
+
+	/**
+	 * Removes the listeners and clears the cache.
+	 */
+	protected static synchronized void shutdown() {
+		if (resourceListener != null) {
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceListener);
+			resourceListener = null;
+		}
+		if (registryListener != null) {
+			Platform.getExtensionRegistry().removeRegistryChangeListener(registryListener);
+			registryListener = null;
+		}
+		clear();
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.IModule;
+/**
+ * Cache of the modules contained in each project, as returned by
+ * ServerUtil.getModules(IProject).
+ * <p>
+ * Entries are removed when a project module factory clears its own cache for
+ * the project, when a factory reports that its modules have changed, and when
+ * the project itself or its metadata (.project, .settings) changes. Results are
+ * only cached if every enabled factory is a project module factory, since other
+ * factories have no way to tell us when their modules change.
+ * </p>
+ * <p>
+ * Clients that keep their own information about the modules in projects can
+ * add a listener to be told whenever entries are removed.
+ * </p>
+ */
+public class ProjectModuleCache {
+	/**
+	 * A listener that is notified when the modules of a project, or of all
+	 * projects, may have changed.
+	 */
+	public interface IModuleChangeListener {
+		/**
+		 * The modules in the given project may have changed.
+		 * 
+		 * @param project a project, or <code>null</code> if the modules in
+		 *    any project may have changed
+		 */
+		public void modulesChanged(IProject project);
+	}
+
+
+	private static final IPath PROJECT_FILE = new Path(".project");
+	private static final IPath SETTINGS_FOLDER = new Path(".settings");
+
+	private static final int PROJECT_FLAGS = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION
+			| IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO;
+
+	private static Map<IProject, IModule[]> cache = new HashMap<IProject, IModule[]>();
+
+	// incremented on every invalidation, guarded by cache
+	private static long generation;
+
+	private static List<IModuleChangeListener> listeners = new CopyOnWriteArrayList<IModuleChangeListener>();
+
+	private ProjectModuleCache() {
+		// can't create
+	}
+
+	/**
+	 * Returns the current generation. Callers computing the modules of a project
+	 * must obtain the generation before asking the factories, and pass it back
+	 * to put(), so that results computed concurrently with an invalidation are
+	 * not cached.
+	 *
+	 * @return the current generation
+	 */
+	public static long getGeneration() {
+		synchronized (cache) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Returns the cached modules of the given project, or <code>null</code> if
+	 * they are not cached.
+	 *
+	 * @param project a project
+	 * @return the cached modules, or <code>null</code>
+	 */
+	public static IModule[] get(IProject project) {
+		synchronized (cache) {
+			IModule[] modules = cache.get(project);
+			if (modules == null)
+				return null;
+
+			IModule[] copy = new IModule[modules.length];
+			System.arraycopy(modules, 0, copy, 0, modules.length);
+			return copy;
+		}
+	}
+
+	/**
+	 * Caches the modules of the given project, unless the cache was invalidated
+	 * since the given generation was obtained.
+	 *
+	 * @param project a project
+	 * @param modules the modules in the project
+	 * @param gen the generation obtained before computing the modules
+	 */
+	public static void put(IProject project, IModule[] modules, long gen) {
+		synchronized (cache) {
+			if (gen != generation)
+				return;
+
+			IModule[] copy = new IModule[modules.length];
+			System.arraycopy(modules, 0, copy, 0, modules.length);
+			cache.put(project, copy);
+		}
+	}
+
+	/**
+	 * Clears the cached modules of the given project.
+	 *
+	 * @param project a project
+	 */
+	public static void clear(IProject project) {
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Clearing project module cache: " + project);
+		}
+		synchronized (cache) {
+			generation++;
+			cache.remove(project);
+		}
+		fireModulesChanged(project);
+	}
+
+	/**
+	 * Clears the cached modules of all projects.
+	 */
+	public static void clearAll() {
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Clearing project module cache");
+		}
+		synchronized (cache) {
+			generation++;
+			cache.clear();
+		}
+		fireModulesChanged(null);
+	}
+
+	/**
+	 * Adds a listener that is notified whenever the modules of a project may
+	 * have changed. Listeners are called on the thread that caused the change
+	 * and must return quickly.
+	 *
+	 * @param listener a listener
+	 */
+	public static void addModuleChangeListener(IModuleChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a module change listener.
+	 *
+	 * @param listener a listener
+	 */
+	public static void removeModuleChangeListener(IModuleChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	private static void fireModulesChanged(IProject project) {
+		for (IModuleChangeListener listener : listeners) {
+			try {
+				listener.modulesChanged(project);
+			} catch (Exception e) {
+				if (Trace.SEVERE) {
+					Trace.trace(Trace.STRING_SEVERE, "Error notifying module change listener", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clears the cached modules of the project if the given project delta
+	 * adds, removes, opens or closes the project, or changes its metadata.
+	 *
+	 * @param project a project
+	 * @param delta the resource delta of the project
+	 */
+	public static void handleProjectChange(IProject project, IResourceDelta delta) {
+		if (delta == null)
+			return;
+
+		int kind = delta.getKind();
+		if (kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED || (delta.getFlags() & PROJECT_FLAGS) != 0) {
+			clear(project);
+			return;
+		}
+
+		if (delta.findMember(PROJECT_FILE) != null || delta.findMember(SETTINGS_FOLDER) != null)
+			clear(project);
+	}
+}
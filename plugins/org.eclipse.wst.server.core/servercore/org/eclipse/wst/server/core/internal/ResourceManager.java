@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,15 @@
  *******************************************************************************/
 package org.eclipse.wst.server.core.internal;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.resources.*;
 
 import org.eclipse.wst.server.core.*;
@@ -29,9 +34,27 @@ import org.eclipse.wst.server.core.util.ProjectModuleFactoryDelegate;
  * resource, or they may be a folder that contains a group
  * of files. Folder-resource may not contain other servers
  * or configurations.</p>
+ * 
+ * <p>Changes to the list of servers and runtimes are saved by a
+ * background job a short time after they are made, so that a burst
+ * of changes is written once. Files are written to a temporary file
+ * and renamed over the original, and the previous servers.xml is kept
+ * as a backup that is used if the current one can't be read.</p>
  */
 public class ResourceManager {
 	private static final String SERVER_DATA_FILE = "servers.xml";
+	private static final String RUNTIME_BACKUP_FILE = "runtimes.xml";
+	private static final String BACKUP_SUFFIX = ".bak";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// delay before changes are saved, in ms
+	private static final int SAVE_DELAY = 500;
+
+	// delay before a save that failed is tried again, in ms
+	private static final int SAVE_RETRY_DELAY = 5000;
+
+	private static final int SAVE_RUNTIMES = 1;
+	private static final int SAVE_SERVERS = 2;
 
 	private static final byte EVENT_ADDED = 0;
 	private static final byte EVENT_CHANGED = 1;
@@ -39,7 +62,8 @@ public class ResourceManager {
 
 	private static ResourceManager instance = new ResourceManager();
 
-	// currently active runtimes and servers
+	// currently active runtimes and servers, synchronized so that the save job
+	// can take a snapshot while they are changed
 	protected List<IRuntime> runtimes;
 	protected List<IServer> servers;
 
@@ -53,7 +77,24 @@ public class ResourceManager {
 	// resource change listeners
 	private IResourceChangeListener resourceChangeListener;
 	private Preferences.IPropertyChangeListener pcl;
-	protected boolean ignorePreferenceChanges = false;
+	protected volatile boolean ignorePreferenceChanges = false;
+
+	// the lists that need to be saved; guarded by saveLock
+	private final Object saveLock = new Object();
+	private int dirty;
+
+	// true once the final save has started, so that failed saves are not retried
+	private volatile boolean shuttingDown;
+
+	// serializes writing the lists
+	private final Object writeLock = new Object();
+
+	private final Job saveJob = new Job("Saving server state") {
+		protected IStatus run(IProgressMonitor monitor) {
+			save();
+			return Status.OK_STATUS;
+		}
+	};
 
 	protected List moduleServerEventHandlers;
 	protected List moduleServerEventHandlerIndexes;
@@ -187,6 +228,7 @@ public class ResourceManager {
 	 */
 	private ResourceManager() {
 		super();
+		saveJob.setSystem(true);
 	}
 
 	/**
@@ -236,7 +278,7 @@ public class ResourceManager {
 			e.printStackTrace();
 		}*/
 		
-		servers = new ArrayList<IServer>();
+		servers = Collections.synchronizedList(new ArrayList<IServer>());
 		activeBundles = new ArrayList<String>();
 		
 		loadRuntimesList();
@@ -409,6 +451,11 @@ public class ResourceManager {
 		}
 		
 		removeServerLifecycleListener(ServerListener.getInstance());
+		
+		// write any changes that are still waiting for the save job
+		shuttingDown = true;
+		saveJob.cancel();
+		save();
 	}
 
 	/*
@@ -571,12 +618,69 @@ public class ResourceManager {
 		}
 	}
 
+	/**
+	 * Marks the runtimes as changed. They are saved by a background job.
+	 */
 	protected void saveRuntimesList() {
+		markDirty(SAVE_RUNTIMES);
+	}
+
+	private void saveServersList() {
+		markDirty(SAVE_SERVERS);
+	}
+
+	private void markDirty(int kind) {
+		synchronized (saveLock) {
+			dirty |= kind;
+		}
+		// changes made before the job runs are saved together
+		saveJob.schedule(SAVE_DELAY);
+	}
+
+	/**
+	 * Saves any runtimes and servers that have changed. Lists that could not
+	 * be written are marked as changed again, and saved again later.
+	 */
+	protected void save() {
+		synchronized (writeLock) {
+			int kind;
+			synchronized (saveLock) {
+				kind = dirty;
+				dirty = 0;
+			}
+			
+			int failed = 0;
+			if ((kind & SAVE_RUNTIMES) != 0 && !writeRuntimesList())
+				failed |= SAVE_RUNTIMES;
+			if ((kind & SAVE_SERVERS) != 0 && !writeServersList())
+				failed |= SAVE_SERVERS;
+			
+			if (failed != 0) {
+				synchronized (saveLock) {
+					dirty |= failed;
+				}
+				if (!shuttingDown)
+					saveJob.schedule(SAVE_RETRY_DELAY);
+			}
+		}
+	}
+
+	/**
+	 * Writes the runtimes to the preferences and the backup file. Returns
+	 * <code>false</code> if they could not be written.
+	 */
+	private boolean writeRuntimesList() {
+		boolean saved = false;
 		try {
 			ignorePreferenceChanges = true;
 			XMLMemento memento = XMLMemento.createWriteRoot("runtimes");
 			
-			Iterator iterator = runtimes.iterator();
+			List<IRuntime> current = runtimes;
+			List<IRuntime> list;
+			synchronized (current) {
+				list = new ArrayList<IRuntime>(current);
+			}
+			Iterator iterator = list.iterator();
 			while (iterator.hasNext()) {
 				Runtime runtime = (Runtime) iterator.next();
 				
@@ -588,21 +692,33 @@ public class ResourceManager {
 			Preferences prefs = ServerPlugin.getInstance().getPluginPreferences();
 			prefs.setValue("runtimes", xmlString);
 			ServerPlugin.getInstance().savePluginPreferences();
+			
+			// keep a copy in case the preferences are lost or damaged
+			saveToFile(memento, getStateFile(RUNTIME_BACKUP_FILE), false);
+			saved = true;
 		} catch (Exception e) {
 			if (Trace.SEVERE) {
 				Trace.trace(Trace.STRING_SEVERE, "Could not save runtimes", e);
 			}
 		}
 		ignorePreferenceChanges = false;
+		return saved;
 	}
 
-	private void saveServersList() {
-		String filename = ServerPlugin.getInstance().getStateLocation().append(SERVER_DATA_FILE).toOSString();
-		
+	/**
+	 * Writes the servers to servers.xml. Returns <code>false</code> if they
+	 * could not be written.
+	 */
+	private boolean writeServersList() {
 		try {
 			XMLMemento memento = XMLMemento.createWriteRoot("servers");
 			
-			Iterator iterator = servers.iterator();
+			List<IServer> current = servers;
+			List<IServer> list;
+			synchronized (current) {
+				list = new ArrayList<IServer>(current);
+			}
+			Iterator iterator = list.iterator();
 			while (iterator.hasNext()) {
 				Server server = (Server) iterator.next();
 				
@@ -612,11 +728,95 @@ public class ResourceManager {
 				}
 			}
 			
-			memento.saveToFile(filename);
+			saveToFile(memento, getStateFile(SERVER_DATA_FILE), true);
+			return true;
 		} catch (Exception e) {
 			if (Trace.SEVERE) {
 				Trace.trace(Trace.STRING_SEVERE, "Could not save servers", e);
 			}
+			return false;
+		}
+	}
+
+	private static File getStateFile(String name) {
+		return ServerPlugin.getInstance().getStateLocation().append(name).toFile();
+	}
+
+	/**
+	 * Saves a memento to a temporary file, and then renames it over the
+	 * given file, so that the file is never left partly written. If a backup
+	 * is requested, the current file is kept with a .bak suffix.
+	 */
+	private static void saveToFile(XMLMemento memento, File file, boolean backup) throws IOException {
+		File temp = new File(file.getPath() + TEMP_SUFFIX);
+		FileOutputStream fout = null;
+		try {
+			fout = new FileOutputStream(temp);
+			BufferedOutputStream out = new BufferedOutputStream(fout);
+			memento.save(out);
+			out.flush();
+			fout.getFD().sync();
+		} finally {
+			if (fout != null) {
+				try {
+					fout.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}
+		
+		if (backup && file.exists()) {
+			File bak = new File(file.getPath() + BACKUP_SUFFIX);
+			if (bak.exists() && !bak.delete())
+				throw new IOException("Could not delete " + bak);
+			if (!file.renameTo(bak))
+				throw new IOException("Could not rename " + file + " to " + bak);
+		}
+		
+		if (!temp.renameTo(file)) {
+			// on some platforms an existing file can't be replaced
+			file.delete();
+			if (!temp.renameTo(file))
+				throw new IOException("Could not rename " + temp + " to " + file);
+		}
+	}
+
+	/**
+	 * Loads a memento from the given file, or from its backup if the file is
+	 * missing or can't be read. Returns null if neither can be loaded.
+	 */
+	private static IMemento loadFromFile(File file, boolean backup) {
+		IMemento memento = loadFromFile(file);
+		if (memento != null || !backup)
+			return memento;
+		
+		File bak = new File(file.getPath() + BACKUP_SUFFIX);
+		if (!bak.exists())
+			return null;
+		
+		if (Trace.WARNING) {
+			Trace.trace(Trace.STRING_WARNING, "Could not load " + file.getName() + ", using backup");
+		}
+		memento = loadFromFile(bak);
+		
+		// don't let the next save replace the backup with the damaged file
+		if (memento != null && file.exists())
+			file.delete();
+		return memento;
+	}
+
+	private static IMemento loadFromFile(File file) {
+		if (!file.exists())
+			return null;
+		
+		try {
+			return XMLMemento.loadMemento(file.getPath());
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not load " + file.getName(), e);
+			}
+			return null;
 		}
 	}
 
@@ -627,24 +827,40 @@ public class ResourceManager {
 		Preferences prefs = ServerPlugin.getInstance().getPluginPreferences();
 		String xmlString = prefs.getString("runtimes");
 		
-		runtimes = new ArrayList<IRuntime>();
-		if (xmlString != null && xmlString.length() > 0) {
-			try {
+		runtimes = Collections.synchronizedList(new ArrayList<IRuntime>());
+		try {
+			IMemento memento = null;
+			if (xmlString != null && xmlString.length() > 0) {
 				ByteArrayInputStream in = new ByteArrayInputStream(xmlString.getBytes("UTF-8"));
-				IMemento memento = XMLMemento.loadMemento(in);
-				
-				IMemento[] children = memento.getChildren("runtime");
-				int size = children.length;
+				memento = XMLMemento.loadMemento(in);
+			}
+			
+			// the preference is never saved empty, so use the backup if it is missing or damaged
+			if (memento == null) {
+				File file = getStateFile(RUNTIME_BACKUP_FILE);
+				if (!file.exists())
+					return;
 				
-				for (int i = 0; i < size; i++) {
-					Runtime runtime = new Runtime(null);
-					runtime.loadFromMemento(children[i], null);
-					runtimes.add(runtime);
-				}
-			} catch (Exception e) {
 				if (Trace.WARNING) {
-					Trace.trace(Trace.STRING_WARNING, "Could not load runtimes", e);
+					Trace.trace(Trace.STRING_WARNING, "Could not load runtimes, using backup");
 				}
+				memento = loadFromFile(file);
+				if (memento == null)
+					return;
+				saveRuntimesList();
+			}
+			
+			IMemento[] children = memento.getChildren("runtime");
+			int size = children.length;
+			
+			for (int i = 0; i < size; i++) {
+				Runtime runtime = new Runtime(null);
+				runtime.loadFromMemento(children[i], null);
+				runtimes.add(runtime);
+			}
+		} catch (Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not load runtimes", e);
 			}
 		}
 	}
@@ -653,10 +869,12 @@ public class ResourceManager {
 		if (Trace.FINEST) {
 			Trace.trace(Trace.STRING_FINEST, "Loading server info");
 		}
-		String filename = ServerPlugin.getInstance().getStateLocation().append(SERVER_DATA_FILE).toOSString();
+		File file = getStateFile(SERVER_DATA_FILE);
 		
 		try {
-			IMemento memento = XMLMemento.loadMemento(filename);
+			IMemento memento = loadFromFile(file, true);
+			if (memento == null)
+				return;
 			
 			IMemento[] children = memento.getChildren("server");
 			int size = children.length;
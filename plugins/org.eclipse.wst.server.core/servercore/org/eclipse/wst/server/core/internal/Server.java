@@ -680,6 +680,26 @@ public class Server extends Base implements IServer {
 		getServerNotificationManager().addListener(listener, eventMask);
 	}
 
+	/**
+	 * Add a listener to this server with the given event mask, that is notified
+	 * asynchronously from a background job instead of the thread that changed
+	 * the server. Events are still delivered in the order they were fired.
+	 *
+	 * @param listener org.eclipse.wst.server.model.IServerListener
+	 * @param eventMask to limit listening to certain types of events
+	 * @param coalesce <code>true</code> to only deliver the latest of several
+	 *    pending events of the same kind
+	 */
+	public void addAsyncServerListener(IServerListener listener, int eventMask, boolean coalesce) {
+		if (listener == null)
+			throw new IllegalArgumentException("Module cannot be null");
+		if (Trace.LISTENERS) {
+			Trace.trace(Trace.STRING_LISTENERS, "Adding async server listener " + listener + " to " + this
+					+ " with eventMask " + eventMask);
+		}
+		getServerNotificationManager().addListener(listener, eventMask, true, coalesce);
+	}
+
 	/**
 	 * Remove a listener from this server.
 	 *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,13 +11,27 @@
 package org.eclipse.wst.server.core.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.wst.server.core.IServerListener;
 import org.eclipse.wst.server.core.ServerEvent;
 /**
  * Notification manager for server.
+ * <p>
+ * Listeners are notified synchronously on the thread that changed the server
+ * by default. Listeners may instead be added for asynchronous dispatch, in
+ * which case each listener has its own bounded queue that is drained in order
+ * by a system job, so that a slow listener cannot hold up the caller (often a
+ * publish or launch thread) and events for this server are still received in
+ * the order they were fired.
+ * </p>
  */
 public class ServerNotificationManager {
 	private List<ListenerEntry> listenerList = new ArrayList<ListenerEntry>();
@@ -27,13 +41,49 @@ public class ServerNotificationManager {
 	 */
 	public static final int ALL_EVENTS = 0xFFFF;
 
+	/**
+	 * Job family of the jobs that dispatch events to asynchronous listeners.
+	 */
+	public static final String DISPATCH_JOB_FAMILY = ServerPlugin.PLUGIN_ID + ".notification";
+
+	// maximum number of events queued for a single asynchronous listener
+	private static final int MAX_QUEUE_SIZE = 256;
+
+	// listener calls taking longer than this (in ms) are reported as slow
+	private static final long SLOW_LISTENER_THRESHOLD = 250;
+
 	private class ListenerEntry {
 		private IServerListener listener;
 		private int eventMask;
+		private boolean async;
+		private boolean coalesce;
+
+		// pending events for asynchronous listeners, guarded by itself
+		private LinkedList<ServerEvent> queue;
+		private DispatchJob job;
+		private boolean scheduled;
+		private boolean removed;
+
+		// timing metrics, guarded by this entry
+		private long calls;
+		private long totalTime;
+		private long maxTime;
+		private long slowCalls;
+		private long dropped;
 
 		protected ListenerEntry(IServerListener curListener, int curEventMask) {
+			this(curListener, curEventMask, false, false);
+		}
+
+		protected ListenerEntry(IServerListener curListener, int curEventMask, boolean curAsync, boolean curCoalesce) {
 			listener = curListener;
 			eventMask = curEventMask;
+			async = curAsync;
+			coalesce = curCoalesce;
+			if (async) {
+				queue = new LinkedList<ServerEvent>();
+				job = new DispatchJob(this);
+			}
 		}
 
 		protected IServerListener getListener() {
@@ -43,6 +93,151 @@ public class ServerNotificationManager {
 		protected int getEventMask() {
 			return eventMask;
 		}
+
+		protected boolean isAsync() {
+			return async;
+		}
+
+		/**
+		 * Queue the event for this (asynchronous) listener and make sure the
+		 * dispatch job is scheduled.
+		 */
+		protected void enqueue(ServerEvent event) {
+			synchronized (queue) {
+				if (removed)
+					return;
+				
+				// replace a pending event that is superseded by this one
+				if (coalesce && !queue.isEmpty() && isSameChange(queue.getLast(), event))
+					queue.removeLast();
+				
+				if (queue.size() >= MAX_QUEUE_SIZE) {
+					queue.removeFirst();
+					long count;
+					synchronized (this) {
+						count = ++dropped;
+					}
+					if (Trace.WARNING) {
+						Trace.trace(Trace.STRING_WARNING, "Server event queue full, dropped oldest event for listener: "
+								+ listener + " (" + count + " dropped)");
+					}
+				}
+				queue.add(event);
+				
+				if (!scheduled) {
+					scheduled = true;
+					job.schedule();
+				}
+			}
+		}
+
+		/**
+		 * Returns the next queued event, or <code>null</code> if the queue is
+		 * empty, in which case the dispatch job must be rescheduled by the next
+		 * call to enqueue().
+		 */
+		protected ServerEvent dequeue() {
+			synchronized (queue) {
+				ServerEvent event = queue.poll();
+				if (event == null)
+					scheduled = false;
+				return event;
+			}
+		}
+
+		/**
+		 * Discard any pending events. Called when the listener is removed.
+		 */
+		protected void dispose() {
+			if (queue == null)
+				return;
+			
+			synchronized (queue) {
+				removed = true;
+				queue.clear();
+			}
+		}
+
+		/**
+		 * Notify the listener of the event, recording the time it took.
+		 */
+		protected void fire(ServerEvent event) {
+			if (Trace.LISTENERS) {
+				Trace.trace(Trace.STRING_LISTENERS, "  Firing server event to listener: " + listener);
+			}
+			long time = System.currentTimeMillis();
+			try {
+				listener.serverChanged(event);
+			} catch (Exception e) {
+				if (Trace.SEVERE) {
+					Trace.trace(Trace.STRING_SEVERE, "  Error firing server event: " + listener, e);
+				}
+			}
+			time = System.currentTimeMillis() - time;
+			synchronized (this) {
+				calls++;
+				totalTime += time;
+				if (time > maxTime)
+					maxTime = time;
+				if (time >= SLOW_LISTENER_THRESHOLD)
+					slowCalls++;
+			}
+			if (time >= SLOW_LISTENER_THRESHOLD) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Slow server listener: " + listener + " took <" + time
+							+ "> ms " + getStatistics());
+				}
+			}
+			if (Trace.PERFORMANCE) {
+				Trace.trace(Trace.STRING_PERFORMANCE, "ServerNotificationManager.fire(): <" + time + "> " + listener);
+			}
+			if (Trace.LISTENERS) {
+				Trace.trace(Trace.STRING_LISTENERS, "-<- Done firing server event -<-");
+			}
+		}
+
+		protected synchronized String getStatistics() {
+			return "[calls=" + calls + ", avg=" + (calls == 0 ? 0 : totalTime / calls) + "ms, max=" + maxTime
+					+ "ms, slow=" + slowCalls + ", dropped=" + dropped + ", async=" + async + "]";
+		}
+	}
+
+	/**
+	 * System job that drains the queue of a single asynchronous listener. At most
+	 * one instance per listener is running at any time, so events are delivered
+	 * in order.
+	 */
+	private static class DispatchJob extends Job {
+		private ListenerEntry entry;
+
+		protected DispatchJob(ListenerEntry entry) {
+			super("Server event dispatch");
+			this.entry = entry;
+			setSystem(true);
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			ServerEvent event = entry.dequeue();
+			while (event != null) {
+				entry.fire(event);
+				event = entry.dequeue();
+			}
+			return Status.OK_STATUS;
+		}
+
+		public boolean belongsTo(Object family) {
+			return DISPATCH_JOB_FAMILY.equals(family);
+		}
+	}
+
+	/**
+	 * Returns true if the second event describes the same kind of change to the
+	 * same server or module as the first one, and therefore supersedes it.
+	 */
+	protected static boolean isSameChange(ServerEvent event1, ServerEvent event2) {
+		if (event1.getKind() != event2.getKind() || event1.getServer() != event2.getServer())
+			return false;
+		return Arrays.equals(event1.getModule(), event2.getModule());
 	}
 
 	/**
@@ -68,16 +263,34 @@ public class ServerNotificationManager {
 	 * @param eventMask
 	 */
 	public void addListener(IServerListener curListener, int eventMask) {
+		addListener(curListener, eventMask, false, false);
+	}
+
+	/**
+	 * Add listener for the events specified by the mask. If async is true, the
+	 * listener is notified from a background job instead of the thread that
+	 * changed the server; events are still delivered in order. If coalesce is
+	 * also true, a pending event is replaced by a newer event of the same kind
+	 * for the same server or module, so that the listener only sees the latest
+	 * state.
+	 * 
+	 * @param curListener
+	 * @param eventMask
+	 * @param async <code>true</code> to dispatch events asynchronously
+	 * @param coalesce <code>true</code> to coalesce consecutive pending events
+	 *    of the same kind; only used for asynchronous listeners
+	 */
+	public void addListener(IServerListener curListener, int eventMask, boolean async, boolean coalesce) {
 		if (Trace.FINEST) {
 			Trace.trace(Trace.STRING_FINEST, "->- Adding server listener to notification manager: " + curListener + " "
-					+ eventMask + " ->-");
+					+ eventMask + " " + async + " ->-");
 		}
 		if (curListener == null) {
 			return;
 		}
 		
 		synchronized (listenerList) {
-			listenerList.add(new ListenerEntry(curListener, eventMask));
+			listenerList.add(new ListenerEntry(curListener, eventMask, async, coalesce));
 		}
 	}
 
@@ -117,20 +330,10 @@ public class ServerNotificationManager {
 					Trace.trace(Trace.STRING_FINEST, "->- Firing server event to listener: " + curEntry.getListener()
 							+ " ->-");
 				}
-				try {
-					if (Trace.LISTENERS) {
-						Trace.trace(Trace.STRING_LISTENERS,
-								"  Firing server event to listener: " + curEntry.getListener());
-					}
-					curEntry.getListener().serverChanged(event);
-				} catch (Exception e) {
-					if (Trace.SEVERE) {
-						Trace.trace(Trace.STRING_SEVERE, "  Error firing server event: " + curEntry.getListener(), e);
-					}
-				}
-				if (Trace.LISTENERS) {
-					Trace.trace(Trace.STRING_LISTENERS, "-<- Done firing server event -<-");
-				}
+				if (curEntry.isAsync())
+					curEntry.enqueue(event);
+				else
+					curEntry.fire(event);
 			}
 		}
 		if (Trace.FINEST) {
@@ -169,8 +372,14 @@ public class ServerNotificationManager {
 					matchedListenerEntry = curEntry;
 				}
 			}
-			if (matchedListenerEntry != null)
+			if (matchedListenerEntry != null) {
 				listenerList.remove(matchedListenerEntry);
+				matchedListenerEntry.dispose();
+				if (Trace.PERFORMANCE) {
+					Trace.trace(Trace.STRING_PERFORMANCE, "Removed server listener: " + curListener + " "
+							+ matchedListenerEntry.getStatistics());
+				}
+			}
 		}
 	}
 }
\ No newline at end of file
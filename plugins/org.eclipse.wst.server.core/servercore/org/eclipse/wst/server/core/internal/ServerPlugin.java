@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -384,6 +384,7 @@ public class ServerPlugin extends Plugin {
 		
 		ResourceManager.shutdown();
 		ServerMonitorManager.shutdown();
+		ModuleArtifactAdapterCache.shutdown();
 		
 		try {
 			Job.getJobManager().join(SHUTDOWN_JOB_FAMILY, null);
@@ -1150,14 +1151,25 @@ public class ServerPlugin extends Plugin {
 	 * @return a possibly empty array of module artifact adapters
 	 */
 	protected static ModuleArtifactAdapter[] getModuleArtifactAdapters() {
-		if (moduleArtifactAdapters == null)
+		List<ModuleArtifactAdapter> list = moduleArtifactAdapters;
+		if (list == null) {
 			loadModuleArtifactAdapters();
+			list = moduleArtifactAdapters;
+		}
 		
-		ModuleArtifactAdapter[] moa = new ModuleArtifactAdapter[moduleArtifactAdapters.size()];
-		moduleArtifactAdapters.toArray(moa);
+		ModuleArtifactAdapter[] moa = new ModuleArtifactAdapter[list.size()];
+		list.toArray(moa);
 		return moa;
 	}
 
+	/**
+	 * Discard the loaded module artifact adapters, so that they are reloaded
+	 * from the extension point when next used.
+	 */
+	protected static synchronized void resetModuleArtifactAdapters() {
+		moduleArtifactAdapters = null;
+	}
+
 	/**
 	 * Load the module artifact adapters extension point.
 	 */
@@ -1219,10 +1231,11 @@ public class ServerPlugin extends Plugin {
 		}
 		ModuleArtifactAdapter[] adapters = getModuleArtifactAdapters();
 		if (adapters != null) {
+			ModuleArtifactAdapterCache.Key key = ModuleArtifactAdapterCache.getKey(obj);
 			int size = adapters.length;
 			for (int i = 0; i < size; i++) {
 				try {
-					if (adapters[i].isEnabled(obj)) {
+					if (adapters[i].isEnabled(obj, key)) {
 						if (Trace.FINER) {
 							Trace.trace(Trace.STRING_FINER, "ServerPlugin.hasModuleArtifact() - " + adapters[i].getId());
 						}
@@ -1272,10 +1285,11 @@ public class ServerPlugin extends Plugin {
 		}
 		ModuleArtifactAdapter[] adapters = getModuleArtifactAdapters();
 		if (adapters != null) {
+			ModuleArtifactAdapterCache.Key key = ModuleArtifactAdapterCache.getKey(obj);
 			int size = adapters.length;
 			for (int i = 0; i < size; i++) {
 				try {
-					if (adapters[i].isEnabled(obj)) {
+					if (adapters[i].isEnabled(obj, key)) {
 						IModuleArtifact[] ma = adapters[i].getModuleArtifacts(obj);
 						if (ma != null)
 							return ma;
@@ -1,17 +1,23 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2010 IBM Corporation and others.
+ * Copyright (c) 2005, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     IBM Corporation - Initial API and implementation
  *******************************************************************************/
 package org.eclipse.wst.server.core.internal;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.osgi.util.NLS;
@@ -19,27 +25,169 @@ import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
 /**
  * Action to update a server's status.
+ * <p>
+ * The behaviour delegates of the servers are loaded in parallel, a few at a
+ * time, each on its own thread. A server whose delegate fails to load, or
+ * takes longer than the timeout, is reported in the job's result without
+ * holding up the others. The thread of a server that timed out is abandoned
+ * rather than reused, and another server is started in its place, until
+ * every server has been tried or the job is canceled.
+ * </p>
  */
 public class UpdateServerJob extends Job {
+	// maximum number of servers updated at the same time
+	private static final int MAX_THREADS = 4;
+
+	// time allowed to load a single server's behaviour delegate, in ms
+	private static final long SERVER_TIMEOUT = 30000;
+
+	// how often to check for completion and cancellation, in ms
+	private static final long POLL_INTERVAL = 100;
+
 	/**
 	 * An action to update the status of a server.
-	 * 
+	 *
 	 * @param server a server
 	 */
 	private IServer[] servers;
 
+	/**
+	 * The update of a single server.
+	 */
+	private static class ServerUpdate implements Runnable {
+		protected IServer server;
+		protected IProgressMonitor monitor = new NullProgressMonitor();
+		protected long startTime;
+		protected volatile boolean done;
+		protected volatile boolean failed;
+		protected volatile Throwable error;
+
+		protected ServerUpdate(IServer server) {
+			this.server = server;
+		}
+
+		protected void start(int count) {
+			startTime = System.currentTimeMillis();
+			Thread thread = new Thread(this, "Server Update " + count);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public void run() {
+			try {
+				if (monitor.isCanceled())
+					return;
+
+				long time = System.currentTimeMillis();
+				if (server.loadAdapter(ServerBehaviourDelegate.class, monitor) == null)
+					failed = true;
+				if (Trace.PERFORMANCE) {
+					Trace.trace(Trace.STRING_PERFORMANCE, "UpdateServerJob.run(): <"
+							+ (System.currentTimeMillis() - time) + "> " + server.getName());
+				}
+			} catch (Throwable t) {
+				failed = true;
+				error = t;
+			} finally {
+				done = true;
+			}
+		}
+
+		protected boolean isTimedOut() {
+			return System.currentTimeMillis() - startTime > SERVER_TIMEOUT;
+		}
+
+		/**
+		 * Asks the delegate to stop. The thread is not interrupted, since it may
+		 * be activating a bundle or loading classes; it is left to finish on
+		 * its own.
+		 */
+		protected void cancel() {
+			monitor.setCanceled(true);
+		}
+	}
+
 	public UpdateServerJob(IServer[] servers2) {
 		super(Messages.jobUpdatingServers);
-		this.servers = servers2;	
+		this.servers = servers2;
 	}
 
 	public IStatus run(IProgressMonitor monitor) {
+		List<ServerUpdate> queued = new ArrayList<ServerUpdate>();
 		for (IServer server : servers){
-			if (server.getServerType() != null && server.getServerState() == IServer.STATE_UNKNOWN) {
-				monitor.subTask(NLS.bind(Messages.jobUpdateServer, server.getName()));
-				server.loadAdapter(ServerBehaviourDelegate.class, monitor);	
+			if (server.getServerType() != null && server.getServerState() == IServer.STATE_UNKNOWN)
+				queued.add(new ServerUpdate(server));
+		}
+
+		int size = queued.size();
+		if (size == 0)
+			return Status.OK_STATUS;
+
+		monitor.beginTask(Messages.jobUpdatingServers, size);
+		MultiStatus status = new MultiStatus(ServerPlugin.PLUGIN_ID, 0, Messages.jobUpdatingServers, null);
+		List<ServerUpdate> running = new ArrayList<ServerUpdate>(MAX_THREADS);
+		int count = 0;
+
+		try {
+			while (!queued.isEmpty() || !running.isEmpty()) {
+				if (monitor.isCanceled()) {
+					for (ServerUpdate update : running)
+						update.cancel();
+					return Status.CANCEL_STATUS;
+				}
+
+				// threads stuck in a delegate that timed out don't count
+				while (running.size() < MAX_THREADS && !queued.isEmpty()) {
+					ServerUpdate update = queued.remove(0);
+					update.start(++count);
+					running.add(update);
+				}
+
+				Iterator<ServerUpdate> iterator = running.iterator();
+				while (iterator.hasNext()) {
+					ServerUpdate update = iterator.next();
+					if (update.done) {
+						iterator.remove();
+						if (update.failed && !update.monitor.isCanceled()) {
+							if (Trace.WARNING) {
+								Trace.trace(Trace.STRING_WARNING, "Could not update server " + update.server.getName(),
+										update.error);
+							}
+							status.add(new Status(IStatus.WARNING, ServerPlugin.PLUGIN_ID,
+									NLS.bind(Messages.errorUpdateServer, update.server.getName()), update.error));
+						}
+						monitor.worked(1);
+					} else if (update.isTimedOut()) {
+						iterator.remove();
+						update.cancel();
+						addTimeout(status, update);
+						monitor.worked(1);
+					} else
+						monitor.subTask(NLS.bind(Messages.jobUpdateServer, update.server.getName()));
+				}
+
+				if (!queued.isEmpty() || !running.isEmpty()) {
+					try {
+						Thread.sleep(POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
 			}
+		} finally {
+			monitor.done();
+		}
+
+		if (status.isOK())
+			return Status.OK_STATUS;
+		return status;
+	}
+
+	private static void addTimeout(MultiStatus status, ServerUpdate update) {
+		if (Trace.WARNING) {
+			Trace.trace(Trace.STRING_WARNING, "Timed out updating server " + update.server.getName());
 		}
-		return Status.OK_STATUS;
+		status.add(new Status(IStatus.WARNING, ServerPlugin.PLUGIN_ID, NLS.bind(
+				Messages.errorUpdateServerTimeout, update.server.getName(), (SERVER_TIMEOUT / 1000) + "")));
 	}
-}
\ No newline at end of file
+}
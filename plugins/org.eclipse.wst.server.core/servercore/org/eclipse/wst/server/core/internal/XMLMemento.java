@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,65 +12,162 @@ package org.eclipse.wst.server.core.internal;
 
 import java.io.*;
 import java.util.*;
-import org.w3c.dom.*;
 import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 /**
  * A Memento is a class independent container for persistence
  * info.  It is a reflection of 3 storage requirements.
  *
- * 1)   We need the ability to persist an object and restore it.  
- * 2)   The class for an object may be absent.  If so we would 
- *      like to skip the object and keep reading. 
- * 3)   The class for an object may change.  If so the new class 
+ * 1)   We need the ability to persist an object and restore it.
+ * 2)   The class for an object may be absent.  If so we would
+ *      like to skip the object and keep reading.
+ * 3)   The class for an object may change.  If so the new class
  *      should be able to read the old persistence info.
  *
- * We could ask the objects to serialize themselves into an 
- * ObjectOutputStream, DataOutputStream, or Hashtable.  However 
+ * We could ask the objects to serialize themselves into an
+ * ObjectOutputStream, DataOutputStream, or Hashtable.  However
  * all of these approaches fail to meet the second requirement.
  *
  * Memento supports binary persistance with a version ID.
+ *
+ * <p>Documents are read in a single SAX pass into a tree of mementos,
+ * and written directly to the output stream. Attributes are kept sorted
+ * by name, and children are indexed by type the first time they are
+ * looked up. The files that are written are the same as those that
+ * were written through a DOM.</p>
  */
 public final class XMLMemento implements IMemento {
-	private Document factory;
-	private Element element;
+	private static final String[] EMPTY = new String[0];
+	private static final IMemento[] EMPTY_CHILDREN = new IMemento[0];
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final String INDENT = "  ";
+
+	// creates a parser for each document; guarded by XMLMemento.class
+	private static SAXParserFactory parserFactory;
+
+	private final String type;
+
+	// attribute names, sorted and interned, and their values
+	private String[] names = EMPTY;
+	private String[] values = EMPTY;
+	private int size;
+
+	private String text;
+
+	// children in document order, and the same children by type
+	private List<XMLMemento> children;
+	private Map<String, List<XMLMemento>> index;
 
 	/**
-	 * Answer a memento for the document and element.  For simplicity
+	 * Answer a memento of the given type.  For simplicity
 	 * you should use createReadRoot and createWriteRoot to create the initial
 	 * mementos on a document.
 	 */
-	private XMLMemento(Document doc, Element el) {
-		factory = doc;
-		element = el;
+	private XMLMemento(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * SAX handler that builds a tree of mementos.
+	 */
+	private static class TreeHandler extends DefaultHandler {
+		protected XMLMemento root;
+		private List<XMLMemento> stack = new ArrayList<XMLMemento>();
+		private StringBuffer sb = new StringBuffer();
+
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			XMLMemento memento = new XMLMemento(qName);
+			int n = attributes.getLength();
+			for (int i = 0; i < n; i++)
+				memento.setAttribute(attributes.getQName(i), attributes.getValue(i));
+
+			int depth = stack.size();
+			if (depth == 0)
+				root = memento;
+			else {
+				XMLMemento parent = stack.get(depth - 1);
+				setText(parent);
+				parent.addChild(memento);
+			}
+			stack.add(memento);
+		}
+
+		public void endElement(String uri, String localName, String qName) {
+			setText(stack.remove(stack.size() - 1));
+		}
+
+		public void characters(char[] ch, int start, int length) {
+			sb.append(ch, start, length);
+		}
+
+		public void ignorableWhitespace(char[] ch, int start, int length) {
+			// ignore
+		}
+
+		/**
+		 * Keeps the first text that isn't only whitespace, as the memento's text.
+		 */
+		private void setText(XMLMemento memento) {
+			if (sb.length() == 0)
+				return;
+
+			if (memento.text == null && sb.toString().trim().length() > 0)
+				memento.text = sb.toString();
+			sb.setLength(0);
+		}
 	}
 
 	/*
 	 * @see IMemento
 	 */
 	public IMemento createChild(String type) {
-		Element child = factory.createElement(type);
-		element.appendChild(child);
-		return new XMLMemento(factory, child);
+		XMLMemento child = new XMLMemento(type);
+		addChild(child);
+		return child;
+	}
+
+	private void addChild(XMLMemento child) {
+		if (children == null)
+			children = new ArrayList<XMLMemento>(4);
+		children.add(child);
+
+		if (index != null)
+			addToIndex(child);
+	}
+
+	private void addToIndex(XMLMemento child) {
+		List<XMLMemento> list = index.get(child.type);
+		if (list == null) {
+			list = new ArrayList<XMLMemento>(2);
+			index.put(child.type, list);
+		}
+		list.add(child);
+	}
+
+	private List<XMLMemento> getIndexedChildren(String type) {
+		if (children == null)
+			return null;
+
+		if (index == null) {
+			index = new HashMap<String, List<XMLMemento>>();
+			for (XMLMemento child : children)
+				addToIndex(child);
+		}
+		return index.get(type);
 	}
 
 	/**
-	 * Create a Document from a Reader and answer a root memento for reading 
+	 * Create a Document from a Reader and answer a root memento for reading
 	 * a document.
 	 */
 	protected static XMLMemento createReadRoot(InputStream in) {
-		Document document = null;
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder parser = factory.newDocumentBuilder();
-			document = parser.parse(new InputSource(in));
-			Node node = document.getFirstChild();
-			if (node instanceof Element)
-				return new XMLMemento(document, (Element) node);
+			TreeHandler handler = new TreeHandler();
+			newParser().parse(new InputSource(in), handler);
+			return handler.root;
 		} catch (Exception e) {
 			// ignore
 		} finally {
@@ -82,77 +179,41 @@ public final class XMLMemento implements IMemento {
 		}
 		return null;
 	}
-	
+
+	private static synchronized SAXParser newParser() throws ParserConfigurationException, SAXException {
+		if (parserFactory == null)
+			parserFactory = SAXParserFactory.newInstance();
+		return parserFactory.newSAXParser();
+	}
+
 	/**
 	 * Answer a root memento for writing a document.
-	 * 
+	 *
 	 * @param type a type
 	 * @return a memento
 	 */
 	public static XMLMemento createWriteRoot(String type) {
-		Document document;
-		try {
-			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-			Element element = document.createElement(type);
-			document.appendChild(element);
-			return new XMLMemento(document, element);            
-		} catch (ParserConfigurationException e) {
-			throw new Error(e);
-		}
+		return new XMLMemento(type);
 	}
-	
+
 	/*
 	 * @see IMemento
 	 */
 	public IMemento getChild(String type) {
-		// Get the nodes.
-		NodeList nodes = element.getChildNodes();
-		int size = nodes.getLength();
-		if (size == 0)
+		List<XMLMemento> list = getIndexedChildren(type);
+		if (list == null)
 			return null;
-	
-		// Find the first node which is a child of this node.
-		for (int nX = 0; nX < size; nX ++) {
-			Node node = nodes.item(nX);
-			if (node instanceof Element) {
-				Element element2 = (Element)node;
-				if (element2.getNodeName().equals(type))
-					return new XMLMemento(factory, element2);
-			}
-		}
-	
-		// A child was not found.
-		return null;
+		return list.get(0);
 	}
 
 	/*
 	 * @see IMemento
 	 */
 	public IMemento [] getChildren(String type) {
-		// Get the nodes.
-		NodeList nodes = element.getChildNodes();
-		int size = nodes.getLength();
-		if (size == 0)
-			return new IMemento[0];
-	
-		// Extract each node with given type.
-		List<Element> list = new ArrayList<Element>(size);
-		for (int nX = 0; nX < size; nX ++) {
-			Node node = nodes.item(nX);
-			if (node instanceof Element) {
-				Element element2 = (Element)node;
-				if (element2.getNodeName().equals(type))
-					list.add(element2);
-			}
-		}
-	
-		// Create a memento for each node.
-		size = list.size();
-		IMemento [] results = new IMemento[size];
-		for (int x = 0; x < size; x ++) {
-			results[x] = new XMLMemento(factory, list.get(x));
-		}
-		return results;
+		List<XMLMemento> list = getIndexedChildren(type);
+		if (list == null)
+			return EMPTY_CHILDREN;
+		return list.toArray(new IMemento[list.size()]);
 	}
 
 	/**
@@ -183,10 +244,9 @@ public final class XMLMemento implements IMemento {
 	 * @see IMemento
 	 */
 	public Float getFloat(String key) {
-		Attr attr = element.getAttributeNode(key);
-		if (attr == null)
-			return null; 
-		String strValue = attr.getValue();
+		String strValue = getAttribute(key);
+		if (strValue == null)
+			return null;
 		try {
 			return new Float(strValue);
 		} catch (NumberFormatException e) {
@@ -198,10 +258,9 @@ public final class XMLMemento implements IMemento {
 	 * @see IMemento
 	 */
 	public Integer getInteger(String key) {
-		Attr attr = element.getAttributeNode(key);
-		if (attr == null)
-			return null; 
-		String strValue = attr.getValue();
+		String strValue = getAttribute(key);
+		if (strValue == null)
+			return null;
 		try {
 			return new Integer(strValue);
 		} catch (NumberFormatException e) {
@@ -213,24 +272,67 @@ public final class XMLMemento implements IMemento {
 	 * @see IMemento
 	 */
 	public String getString(String key) {
-		Attr attr = element.getAttributeNode(key);
-		if (attr == null)
-			return null; 
-		return attr.getValue();
+		return getAttribute(key);
 	}
 
 	public List<String> getNames() {
-		NamedNodeMap map = element.getAttributes();
-		int size = map.getLength();
-		List<String> list = new ArrayList<String>();
-		for (int i = 0; i < size; i++) {
-			Node node = map.item(i);
-			String name = node.getNodeName();
-			list.add(name);
-		}
+		List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			list.add(names[i]);
 		return list;
 	}
 
+	private String getAttribute(String key) {
+		int ind = indexOf(key);
+		if (ind < 0)
+			return null;
+		return values[ind];
+	}
+
+	private void setAttribute(String key, String value) {
+		int ind = indexOf(key);
+		if (ind >= 0) {
+			values[ind] = value;
+			return;
+		}
+
+		ind = -ind - 1;
+		if (size == names.length) {
+			int len = size == 0 ? 4 : size * 2;
+			String[] names2 = new String[len];
+			String[] values2 = new String[len];
+			System.arraycopy(names, 0, names2, 0, size);
+			System.arraycopy(values, 0, values2, 0, size);
+			names = names2;
+			values = values2;
+		}
+		System.arraycopy(names, ind, names, ind + 1, size - ind);
+		System.arraycopy(values, ind, values, ind + 1, size - ind);
+		names[ind] = key.intern();
+		values[ind] = value;
+		size++;
+	}
+
+	/**
+	 * Returns the index of the given attribute, or (-(insertion point) - 1)
+	 * if there is no such attribute.
+	 */
+	private int indexOf(String key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = names[mid].compareTo(key);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
 	/**
 	 * Loads a memento from the given filename.
 	 *
@@ -267,7 +369,7 @@ public final class XMLMemento implements IMemento {
 	 * @see IMemento
 	 */
 	public void putInteger(String key, int n) {
-		element.setAttribute(key, String.valueOf(n));
+		setAttribute(key, String.valueOf(n));
 	}
 
 	/*
@@ -276,26 +378,91 @@ public final class XMLMemento implements IMemento {
 	public void putString(String key, String value) {
 		if (value == null)
 			return;
-		element.setAttribute(key, value);
+		setAttribute(key, value);
 	}
-	
+
 	/**
 	 * Save this Memento to a Writer.
-	 * 
+	 *
 	 * @throws IOException if there is a problem saving
 	 */
 	public void save(OutputStream os) throws IOException {
-		Result result = new StreamResult(os);
-		Source source = new DOMSource(factory);
-		try {
-			Transformer transformer = TransformerFactory.newInstance().newTransformer();
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-			transformer.setOutputProperty("{http://xml.apache.org/xalan}indent-amount", "2");
-			transformer.transform(source, result);
-		} catch (Exception e) {
-			throw (IOException) (new IOException().initCause(e));
+		Writer w = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+		w.write(LINE_SEPARATOR);
+		write(w, 0);
+		w.flush();
+	}
+
+	private void write(Writer w, int depth) throws IOException {
+		w.write('<');
+		w.write(type);
+		for (int i = 0; i < size; i++) {
+			w.write(' ');
+			w.write(names[i]);
+			w.write("=\"");
+			escape(w, values[i], true);
+			w.write('"');
+		}
+
+		if (text == null && children == null) {
+			w.write("/>");
+			return;
+		}
+		w.write('>');
+
+		if (text != null)
+			escape(w, text, false);
+
+		if (children != null) {
+			for (XMLMemento child : children) {
+				if (text == null) {
+					w.write(LINE_SEPARATOR);
+					for (int i = 0; i <= depth; i++)
+						w.write(INDENT);
+				}
+				child.write(w, depth + 1);
+			}
+			if (text == null) {
+				w.write(LINE_SEPARATOR);
+				for (int i = 0; i < depth; i++)
+					w.write(INDENT);
+			}
+		}
+
+		w.write("</");
+		w.write(type);
+		w.write('>');
+	}
+
+	private static void escape(Writer w, String s, boolean attribute) throws IOException {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '&':
+					w.write("&amp;");
+					break;
+				case '<':
+					w.write("&lt;");
+					break;
+				case '>':
+					w.write("&gt;");
+					break;
+				case '"':
+					if (attribute)
+						w.write("&quot;");
+					else
+						w.write(c);
+					break;
+				default:
+					if (c < 0x20 && (attribute || (c != '\n' && c != '\r' && c != '\t'))) {
+						w.write("&#");
+						w.write(Integer.toString(c));
+						w.write(';');
+					} else
+						w.write(c);
+			}
 		}
 	}
 
@@ -324,21 +491,20 @@ public final class XMLMemento implements IMemento {
 			}
 		}
 	}
-	
+
 	public String saveToString() throws IOException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		save(out);
 		return out.toString("UTF-8");
 	}
-	
+
 	/*
 	 * @see IMemento#getBoolean(String)
 	 */
 	public Boolean getBoolean(String key) {
-		Attr attr = element.getAttributeNode(key);
-		if (attr == null)
+		String strValue = getAttribute(key);
+		if (strValue == null)
 			return null;
-		String strValue = attr.getValue();
 		if ("true".equalsIgnoreCase(strValue))
 			return new Boolean(true);
 		return new Boolean(false);
@@ -348,43 +514,16 @@ public final class XMLMemento implements IMemento {
 	 * @see IMemento#putBoolean(String, boolean)
 	 */
 	public void putBoolean(String key, boolean value) {
-		element.setAttribute(key, value ? "true" : "false");
+		setAttribute(key, value ? "true" : "false");
 	}
 
 	/**
-    * Returns the Text node of the memento. Each memento is allowed only 
-    * one Text node.
-    * 
-    * @return the Text node of the memento, or <code>null</code> if
-    * the memento has no Text node.
-    */
-   private Text getTextNode() {
-       // Get the nodes.
-       NodeList nodes = element.getChildNodes();
-       int size = nodes.getLength();
-       if (size == 0) {
-			return null;
-		}
-       for (int nX = 0; nX < size; nX++) {
-           Node node = nodes.item(nX);
-           if (node instanceof Text) {
-               return (Text) node;
-           }
-       }
-       // a Text node was not found
-       return null;
-   }
-  
-	/* (non-Javadoc)
-    */
-   public void putTextData(String data) {
-       Text textNode = getTextNode();
-       if (textNode == null) {
-           textNode = factory.createTextNode(data);
-			// Always add the text node as the first child (fixes bug 93718) 
-			element.insertBefore(textNode, element.getFirstChild());
-       } else {
-           textNode.setData(data);
-       }
-   }
-}
\ No newline at end of file
+	 * Sets the text of the memento. Each memento is allowed only one
+	 * text, which is written before any children.
+	 *
+	 * @param data the text
+	 */
+	public void putTextData(String data) {
+		text = data;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,6 +21,7 @@ import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.ServerCore;
 import org.eclipse.wst.server.core.internal.Module;
 import org.eclipse.wst.server.core.internal.ModuleFactory;
+import org.eclipse.wst.server.core.internal.ProjectModuleCache;
 import org.eclipse.wst.server.core.internal.Server;
 /**
  * A module factory delegate provides a mechanism for discovering
@@ -244,6 +245,7 @@ public abstract class ModuleFactoryDelegate {
 	 * has changed, and caches may no longer be accurate 
 	 */
 	protected void modulesChanged() {
+		ProjectModuleCache.clearAll();
 		IServer[] allServers = ServerCore.getServers();
 		for( int i = 0; i < allServers.length; i++ ) {
 			((Server)allServers[i]).clearModuleCache();
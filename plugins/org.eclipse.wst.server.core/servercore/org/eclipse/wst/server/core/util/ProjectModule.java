@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,12 @@
  *******************************************************************************/
 package org.eclipse.wst.server.core.util;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.CoreException;
@@ -20,6 +24,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 
 import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.internal.Trace;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.ModuleDelegate;
 /**
@@ -29,8 +36,59 @@ import org.eclipse.wst.server.core.model.ModuleDelegate;
  * @since 1.0
  */
 public abstract class ProjectModule extends ModuleDelegate {
+	private static final IModuleResource[] EMPTY_RESOURCE_ARRAY = new IModuleResource[0];
+
+	// classes that do not override getModuleResources(), and can therefore be cached
+	private static final Map<Class<?>, Boolean> cacheableClasses = new HashMap<Class<?>, Boolean>();
+
+	private static ResourceTreeListener treeListener;
+
 	private IProject project;
 
+	// cached result of members(), guarded by this; patched from resource deltas
+	// and never modified after it has been returned
+	private IModuleResource[] cachedMembers;
+
+	// true once this module has been added to the tree listener, guarded by this
+	private boolean registered;
+
+	/**
+	 * Workspace listener that patches the cached resource trees of all project
+	 * modules that have one.
+	 */
+	private static class ResourceTreeListener implements IResourceChangeListener {
+		private List<WeakReference<ProjectModule>> modules = new ArrayList<WeakReference<ProjectModule>>();
+
+		protected synchronized void add(ProjectModule module) {
+			modules.add(new WeakReference<ProjectModule>(module));
+		}
+
+		public void resourceChanged(IResourceChangeEvent event) {
+			IResourceDelta delta = event.getDelta();
+			if (delta == null)
+				return;
+			
+			List<ProjectModule> list = new ArrayList<ProjectModule>();
+			synchronized (this) {
+				Iterator<WeakReference<ProjectModule>> iterator = modules.iterator();
+				while (iterator.hasNext()) {
+					ProjectModule module = iterator.next().get();
+					if (module == null)
+						iterator.remove();
+					else
+						list.add(module);
+				}
+			}
+			
+			for (ProjectModule module : list) {
+				IProject project2 = module.getProject();
+				IResourceDelta projectDelta = delta.findMember(project2.getFullPath());
+				if (projectDelta != null)
+					module.handleResourceDelta(projectDelta);
+			}
+		}
+	}
+
 	/**
 	 * Create a new project module.
 	 */
@@ -140,12 +198,166 @@ public abstract class ProjectModule extends ModuleDelegate {
 
 	/**
 	 * Basic implementation of members() method. Assumes that the entire project should
-	 * be published to a server.
+	 * be published to a server. Unless getModuleResources() is overridden, the
+	 * resource tree is cached and each call returns a copy that callers may modify.
 	 * 
 	 * @see ModuleDelegate#members()
 	 */
 	public IModuleResource[] members() throws CoreException {
-		return getModuleResources(Path.EMPTY, getProject());
+		if (getProject() == null || !isCacheable(getClass()))
+			return getModuleResources(Path.EMPTY, getProject());
+		
+		synchronized (this) {
+			if (cachedMembers == null) {
+				if (!registered) {
+					addResourceTreeListener(this);
+					registered = true;
+				}
+				cachedMembers = getModuleResources(Path.EMPTY, getProject());
+			}
+			return copyModuleResources(cachedMembers);
+		}
+	}
+
+	/**
+	 * Returns a copy of the given resource tree. Folders are mutable, so each
+	 * caller gets its own folders; files can't be changed and are shared.
+	 */
+	private static IModuleResource[] copyModuleResources(IModuleResource[] resources) {
+		IModuleResource[] copy = new IModuleResource[resources.length];
+		for (int i = 0; i < resources.length; i++) {
+			IModuleResource mr = resources[i];
+			if (mr instanceof IModuleFolder) {
+				IModuleFolder folder = (IModuleFolder) mr;
+				IContainer container = (IContainer) folder.getAdapter(IContainer.class);
+				ModuleFolder mf = new ModuleFolder(container, folder.getName(), folder.getModuleRelativePath());
+				mf.setMembers(copyModuleResources(folder.members()));
+				copy[i] = mf;
+			} else
+				copy[i] = mr;
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given class uses the default implementation
+	 * of getModuleResources(), and the resource tree can therefore be cached and
+	 * patched from resource deltas.
+	 */
+	private static boolean isCacheable(Class<?> cl) {
+		synchronized (cacheableClasses) {
+			Boolean b = cacheableClasses.get(cl);
+			if (b != null)
+				return b.booleanValue();
+			
+			boolean cacheable = true;
+			Class<?> cl2 = cl;
+			while (cacheable && cl2 != null && !ProjectModule.class.equals(cl2)) {
+				try {
+					cl2.getDeclaredMethod("getModuleResources", new Class<?>[] { IPath.class, IContainer.class });
+					cacheable = false;
+				} catch (NoSuchMethodException e) {
+					cl2 = cl2.getSuperclass();
+				} catch (SecurityException e) {
+					cacheable = false;
+				}
+			}
+			cacheableClasses.put(cl, Boolean.valueOf(cacheable));
+			return cacheable;
+		}
+	}
+
+	private static synchronized void addResourceTreeListener(ProjectModule module) {
+		if (treeListener == null) {
+			treeListener = new ResourceTreeListener();
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(treeListener, IResourceChangeEvent.POST_CHANGE);
+		}
+		treeListener.add(module);
+	}
+
+	/**
+	 * Update the cached resource tree from the given project delta. Only the
+	 * folders along the changed paths are recreated, all other resources are
+	 * shared with the previous tree.
+	 * 
+	 * @param delta the resource delta of this module's project
+	 */
+	private synchronized void handleResourceDelta(IResourceDelta delta) {
+		if (cachedMembers == null)
+			return;
+		
+		if (delta.getKind() != IResourceDelta.CHANGED || (delta.getFlags() & IResourceDelta.OPEN) != 0
+				|| !getProject().isAccessible()) {
+			cachedMembers = null;
+			return;
+		}
+		
+		try {
+			cachedMembers = patchModuleResources(cachedMembers, Path.EMPTY, getProject(), delta);
+		} catch (CoreException ce) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not update module resources for " + getProject(), ce);
+			}
+			cachedMembers = null;
+		}
+	}
+
+	/**
+	 * Returns the module resources of the given container, reusing the unchanged
+	 * resources from the given (previous) module resources.
+	 */
+	private IModuleResource[] patchModuleResources(IModuleResource[] previous, IPath path, IContainer container,
+			IResourceDelta delta) throws CoreException {
+		if (delta.getAffectedChildren().length == 0)
+			return previous;
+		
+		Map<String, IModuleResource> previousMap = new HashMap<String, IModuleResource>(previous.length * 2);
+		for (IModuleResource mr : previous)
+			previousMap.put(mr.getName(), mr);
+		
+		IResource[] resources = container.members();
+		if (resources == null)
+			return EMPTY_RESOURCE_ARRAY;
+		
+		int size = resources.length;
+		List<IModuleResource> list = new ArrayList<IModuleResource>(size);
+		for (int i = 0; i < size; i++) {
+			IResource resource = resources[i];
+			if (resource == null || !resource.exists())
+				continue;
+			
+			String name = resource.getName();
+			IModuleResource mr = previousMap.get(name);
+			IResourceDelta childDelta = delta.findMember(new Path(name));
+			boolean replaced = childDelta != null
+				&& (childDelta.getKind() != IResourceDelta.CHANGED
+					|| (childDelta.getFlags() & (IResourceDelta.TYPE | IResourceDelta.REPLACED)) != 0);
+			
+			if (resource instanceof IContainer) {
+				IContainer container2 = (IContainer) resource;
+				if (mr instanceof IModuleFolder && childDelta == null) {
+					list.add(mr);
+				} else {
+					IModuleResource[] members;
+					if (mr instanceof IModuleFolder && !replaced)
+						members = patchModuleResources(((IModuleFolder) mr).members(), path.append(name), container2, childDelta);
+					else
+						members = getModuleResources(path.append(name), container2);
+					
+					ModuleFolder mf = new ModuleFolder(container2, name, path);
+					mf.setMembers(members);
+					list.add(mf);
+				}
+			} else if (resource instanceof IFile) {
+				if (mr instanceof IModuleFile && childDelta == null)
+					list.add(mr);
+				else
+					list.add(new ModuleFile((IFile) resource, name, path));
+			}
+		}
+		IModuleResource[] moduleResources = new IModuleResource[list.size()];
+		list.toArray(moduleResources);
+		return moduleResources;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /**********************************************************************
- * Copyright (c) 2003, 2013 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.internal.ModuleFactory;
+import org.eclipse.wst.server.core.internal.ProjectModuleCache;
 import org.eclipse.wst.server.core.internal.ServerPlugin;
 import org.eclipse.wst.server.core.internal.Trace;
 import org.eclipse.wst.server.core.model.ModuleFactoryDelegate;
@@ -146,6 +147,8 @@ public abstract class ProjectModuleFactoryDelegate extends ModuleFactoryDelegate
 	 * @param delta a resource delta
 	 */
 	public final static void handleGlobalProjectChange(IProject project, IResourceDelta delta) {
+		ProjectModuleCache.handleProjectChange(project, delta);
+		
 		ModuleFactory[] factories = ServerPlugin.getModuleFactories();
 		int size = factories.length;
 		for (int i = 0; i < size; i++) {
@@ -154,6 +157,7 @@ public abstract class ProjectModuleFactoryDelegate extends ModuleFactoryDelegate
 				if (pmfd.deltaAffectsModules(delta)) {
 					pmfd.clearCache(project);
 					pmfd.clearCache();
+					ProjectModuleCache.clear(project);
 				}
 			}
 		}
@@ -217,6 +221,7 @@ public abstract class ProjectModuleFactoryDelegate extends ModuleFactoryDelegate
 	 */
 	protected void clearCache(IProject project) {
 		modules = new HashMap<IProject, IModule[]>();
+		ProjectModuleCache.clear(project);
 	}
 
 	/**
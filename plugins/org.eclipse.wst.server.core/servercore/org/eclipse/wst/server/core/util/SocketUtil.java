@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,17 +24,40 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
+import org.eclipse.wst.server.core.ServerPort;
 import org.eclipse.wst.server.core.internal.Trace;
 /**
  * A utility class for socket-related function. It's main purposes are to find
  * unused ports, check whether a port is in use, and check whether a given
  * address is a local(host) address.
+ * <p>
+ * Ports that are returned by <code>findUnusedPort</code> are reserved within
+ * this VM for a short time, so that two callers looking for a port at the
+ * same time never get the same one before either has had a chance to bind it.
+ * </p>
  * 
  * @since 1.0
  */
 public class SocketUtil {
 	private static final Random rand = new Random(System.currentTimeMillis());
 
+	// how long a port returned by findUnusedPort is reserved for, in ms
+	private static final long RESERVATION_TIME = 60000;
+
+	// default time between checks of a port that is in use, in ms
+	private static final long RETRY_DELAY = 500;
+
+	// first and longest delay between checks of ports that are in use, in ms
+	private static final long RETRY_INITIAL_DELAY = 50;
+	private static final long RETRY_MAX_DELAY = 500;
+
+	// reserved port -> expiry time; guarded by portLock
+	private static final Object portLock = new Object();
+	private static Map<Integer, Long> reservedPorts = new HashMap<Integer, Long>();
+
+	// the next port to try; guarded by portLock
+	private static int nextPort = -1;
+
 	protected static final Object lock = new Object();
 
 	protected static Set<String> localHostCache = new HashSet<String>();
@@ -128,6 +151,13 @@ public class SocketUtil {
 
 	/**
 	 * Finds an unused local port between the given from and to values.
+	 * <p>
+	 * Ports are tried in order, starting after the last port that was found
+	 * and wrapping around to the low end of the range, so that every port in
+	 * the range is tried before giving up. The port that is returned is
+	 * reserved for a short time, and will not be returned again until the
+	 * reservation expires or the port is released.
+	 * </p>
 	 * 
 	 * @param address a local InetAddress
 	 * @param low lowest possible port number
@@ -139,14 +169,70 @@ public class SocketUtil {
 		if (high < low)
 			return -1;
 		
-		for (int i = 0; i < 10; i++) {
-			int port = getRandomPort(low, high);
-			if (!isPortInUse(address, port))
+		int size = high - low + 1;
+		int start;
+		synchronized (portLock) {
+			if (nextPort < low || nextPort > high)
+				nextPort = getRandomPort(low, high);
+			start = nextPort;
+		}
+		
+		for (int i = 0; i < size; i++) {
+			int port = low + (start - low + i) % size;
+			if (!reservePort(port))
+				continue;
+			
+			if (!isPortInUse(address, port)) {
+				synchronized (portLock) {
+					nextPort = port < high ? port + 1 : low;
+				}
 				return port;
+			}
+			releasePort(port);
 		}
 		return -1;
 	}
 
+	/**
+	 * Reserves the given port, unless it is already reserved.
+	 */
+	private static boolean reservePort(int port) {
+		Integer key = new Integer(port);
+		long now = System.currentTimeMillis();
+		synchronized (portLock) {
+			Long expiry = reservedPorts.get(key);
+			if (expiry != null && expiry.longValue() > now)
+				return false;
+			
+			reservedPorts.put(key, new Long(now + RESERVATION_TIME));
+			
+			// drop expired reservations now and then
+			if (reservedPorts.size() > 64) {
+				Iterator<Long> iter = reservedPorts.values().iterator();
+				while (iter.hasNext()) {
+					if (iter.next().longValue() <= now)
+						iter.remove();
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Releases a port that was returned by <code>findUnusedPort</code>, so that
+	 * it may be returned again. Ports are released automatically a short time
+	 * after they are returned, so calling this method is only necessary if the
+	 * port was not used.
+	 * 
+	 * @param port a port number
+	 * @since 1.7
+	 */
+	public static void releasePort(int port) {
+		synchronized (portLock) {
+			reservedPorts.remove(new Integer(port));
+		}
+	}
+
 	/**
 	 * Return a random local port number in the given range.
 	 * 
@@ -155,13 +241,13 @@ public class SocketUtil {
 	 * @return a random port number in the given range
 	 */
 	private static int getRandomPort(int low, int high) {
-		return rand.nextInt(high - low) + low;
+		return rand.nextInt(high - low + 1) + low;
 	}
 
 	/**
 	 * Checks to see if the given local port number is being used. 
 	 * Returns <code>true</code> if the given port is in use, and <code>false</code>
-	 * otherwise. Retries every 500ms for "count" tries.
+	 * otherwise. Retries for up to 500ms for each of "count" tries.
 	 *
 	 * @param port the port number to check
 	 * @param count the number of times to retry
@@ -175,7 +261,7 @@ public class SocketUtil {
 	/**
 	 * Checks to see if the given local port number is being used. 
 	 * Returns <code>true</code> if the given port is in use, and <code>false</code>
-	 * otherwise. Retries every 500ms for "count" tries.
+	 * otherwise. Retries for up to 500ms for each of "count" tries.
 	 *
 	 * @param address a local InetAddress
 	 * @param port the port number to check
@@ -185,17 +271,75 @@ public class SocketUtil {
 	 * @since 1.1
 	 */
 	public static boolean isPortInUse(InetAddress address, int port, int count) {
-		boolean inUse = isPortInUse(address, port);
-		while (inUse && count > 0) {
+		return arePortsInUse(address, new int[] { port }, count * RETRY_DELAY, RETRY_INITIAL_DELAY)[0];
+	}
+
+	/**
+	 * Checks to see if the given server ports are being used on the local
+	 * machine. Ports that are in use are checked again, all at the same time,
+	 * for up to 500ms for each of "count" tries.
+	 * 
+	 * @param ports the server ports to check
+	 * @param count the number of times to retry
+	 * @return an array with <code>true</code> for each port that is in use,
+	 *    and <code>false</code> for each port that is free
+	 * @since 1.7
+	 */
+	public static boolean[] arePortsInUse(ServerPort[] ports, int count) {
+		int[] ports2 = new int[ports.length];
+		for (int i = 0; i < ports.length; i++)
+			ports2[i] = ports[i].getPort();
+		return arePortsInUse(null, ports2, count * RETRY_DELAY, RETRY_INITIAL_DELAY);
+	}
+
+	/**
+	 * Checks to see if the given local ports are being used. Ports that are
+	 * in use are checked again, all at the same time, until they are free or
+	 * the timeout expires. The delay between checks starts at the given
+	 * initial delay and doubles after each check, up to 500ms.
+	 * 
+	 * @param address a local InetAddress, or <code>null</code> for any
+	 *    local address
+	 * @param ports the port numbers to check
+	 * @param timeout how long to wait for ports to become free, in ms
+	 * @param initialDelay the delay before the first retry, in ms
+	 * @return an array with <code>true</code> for each port that is in use,
+	 *    and <code>false</code> for each port that is free
+	 * @since 1.7
+	 */
+	public static boolean[] arePortsInUse(InetAddress address, int[] ports, long timeout, long initialDelay) {
+		int size = ports.length;
+		boolean[] inUse = new boolean[size];
+		int remaining = 0;
+		for (int i = 0; i < size; i++) {
+			inUse[i] = isPortInUse(address, ports[i]);
+			if (inUse[i])
+				remaining++;
+		}
+		
+		long end = System.currentTimeMillis() + timeout;
+		long delay = Math.max(1, initialDelay);
+		while (remaining > 0) {
+			long left = end - System.currentTimeMillis();
+			if (left <= 0)
+				break;
+			
 			try {
-				Thread.sleep(500);
-			} catch (Exception e) {
-				// ignore
+				Thread.sleep(Math.min(delay, left));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			delay = Math.min(delay * 2, RETRY_MAX_DELAY);
+			
+			for (int i = 0; i < size; i++) {
+				if (inUse[i] && !isPortInUse(address, ports[i])) {
+					inUse[i] = false;
+					remaining--;
+				}
 			}
-			inUse = isPortInUse(address, port);
-			count --;
 		}
-	
+		
 		return inUse;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,11 @@
 package org.eclipse.wst.server.discovery.internal;
 
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.engine.IProfile;
@@ -27,6 +30,76 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 public class ExtensionUtility {
+	// maximum number of sites that are searched at the same time
+	private static final int MAX_THREADS = 4;
+
+	// time allowed for each site, in ms
+	private static final long SITE_TIMEOUT = 60000;
+
+	// time allowed to search all sites, in ms
+	private static final long SEARCH_TIMEOUT = 2 * SITE_TIMEOUT;
+
+	// how often to check for completion and cancellation, in ms
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * The search of a single site, on its own thread.
+	 */
+	private static class SiteSearch implements Runnable {
+		protected ExtensionUpdateSite site;
+		protected List<Extension> list;
+		protected List<Extension> existing;
+		protected ExtensionListener listener;
+		protected IProgressMonitor monitor = new NullProgressMonitor();
+		protected Thread thread;
+		protected long startTime;
+		protected volatile boolean done;
+
+		protected SiteSearch(ExtensionUpdateSite site, List<Extension> list, List<Extension> existing, ExtensionListener listener) {
+			this.site = site;
+			this.list = list;
+			this.existing = existing;
+			this.listener = listener;
+		}
+
+		protected void start(int count) {
+			startTime = System.currentTimeMillis();
+			thread = new Thread(this, "Extension Checker " + count);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		protected boolean isTimedOut() {
+			return System.currentTimeMillis() - startTime > SITE_TIMEOUT;
+		}
+
+		/**
+		 * Cancels the search. Blocking socket I/O does not respond to
+		 * interrupts, so the thread may keep running; its results are ignored.
+		 */
+		protected void cancel() {
+			monitor.setCanceled(true);
+			if (thread != null)
+				thread.interrupt();
+		}
+
+		public void run() {
+			try {
+				List<Extension> list2 = site.getExtensions(monitor);
+				if (!monitor.isCanceled())
+					addExtensions(list, existing, list2, listener);
+			} catch (CoreException ce) {
+				if (!monitor.isCanceled())
+					listener.siteFailure(getHost(site.getUrl()));
+				Trace.trace(Trace.WARNING, "Error downloading extension info", ce);
+			} catch (OperationCanceledException e) {
+				// timed out or canceled
+			} finally {
+				done = true;
+			}
+		}
+	}
+
 	private static ExtensionUpdateSite[] getExtensionUpdateSites(URL url) throws CoreException {
 		InputStream in = null;
 		try {
@@ -170,6 +243,23 @@ public class ExtensionUtility {
 		return list;
 	}
 
+	/**
+	 * Returns the server adapters that are available from all known sites.
+	 * <p>
+	 * Sites are queried concurrently, by at most {@link #MAX_THREADS} threads.
+	 * Server adapters are passed to the listener as soon as each site answers,
+	 * and sites that fail or take longer than {@link #SITE_TIMEOUT} are
+	 * reported to the listener and skipped. Sites that have not answered
+	 * within {@link #SEARCH_TIMEOUT} of the start of the search are skipped
+	 * too, including those that were still waiting for a thread.
+	 * </p>
+	 *
+	 * @param id unused
+	 * @param listener a listener
+	 * @param monitor a progress monitor
+	 * @return the server adapters, or <code>null</code> if the search was canceled
+	 * @throws CoreException if the local configuration could not be read
+	 */
 	public static Extension[] getAllExtensions(final String id, final ExtensionListener listener, IProgressMonitor monitor) throws CoreException {
 		monitor = ProgressUtil.getMonitorFor(monitor);
 		monitor.beginTask("", 1100);
@@ -186,51 +276,100 @@ public class ExtensionUtility {
 		final List<Extension> list = new ArrayList<Extension>();
 		int size = items.length;
 
-		Thread[] threads = new Thread[size];
-		for (int i = 0; i < size; i++) {
-			try {
-				if (monitor.isCanceled())
-					return null;
-
-				monitor.subTask(NLS.bind(Messages.discoverSearching, items[i].getUrl()));
-				final int ii = i;
-				final IProgressMonitor monitor2 = monitor;
-				threads[i] = new Thread("Extension Checker for " + items[i].getUrl()) {
-					public void run() {
-						try {
-							List<Extension> list2 = items[ii].getExtensions(ProgressUtil.getSubMonitorFor(monitor2, x));
-							addExtensions(list, existing, list2, listener);
-						} catch (CoreException ce) {
-							listener.siteFailure(ce.getLocalizedMessage());
-							Trace.trace(Trace.WARNING, "Error downloading extension info", ce);
-						}
-					}
-				};
-				threads[i].setDaemon(true);
-				threads[i].start();
-			} catch (Exception e) {
-				Trace.trace(Trace.WARNING, "Error downloading extension info 2", e);
+		SiteSearch[] searches = new SiteSearch[size];
+		for (int i = 0; i < size; i++)
+			searches[i] = new SiteSearch(items[i], list, existing, listener);
+
+		// wait for the sites, reporting progress as each one finishes. A site
+		// that times out keeps its thread, so the next site is started on a new one
+		boolean[] finished = new boolean[size];
+		long deadline = System.currentTimeMillis() + SEARCH_TIMEOUT;
+		int next = 0;
+		int running = 0;
+		int remaining = size;
+		while (remaining > 0) {
+			if (monitor.isCanceled()) {
+				for (int i = 0; i < next; i++) {
+					if (!finished[i])
+						searches[i].cancel();
+				}
+				return null;
 			}
-		}
 
-		for (int i = 0; i < size; i++) {
-			try {
-				if (monitor.isCanceled())
-					return null;
+			boolean pastDeadline = System.currentTimeMillis() > deadline;
+			for (int i = 0; i < next; i++) {
+				if (finished[i])
+					continue;
+
+				if (searches[i].done) {
+					finished[i] = true;
+					running--;
+					remaining--;
+					monitor.worked(x);
+				} else if (pastDeadline || searches[i].isTimedOut()) {
+					Trace.trace(Trace.WARNING, "Timed out searching " + items[i].getUrl());
+					searches[i].cancel();
+					listener.siteFailure(getHost(items[i].getUrl()));
+					finished[i] = true;
+					running--;
+					remaining--;
+					monitor.worked(x);
+				}
+			}
+
+			if (pastDeadline) {
+				// sites that never started are skipped
+				for (int i = next; i < size; i++) {
+					Trace.trace(Trace.WARNING, "Timed out before searching " + items[i].getUrl());
+					listener.siteFailure(getHost(items[i].getUrl()));
+					finished[i] = true;
+					remaining--;
+					monitor.worked(x);
+				}
+				next = size;
+			}
 
-				if (threads[i].isAlive())
-					threads[i].join();
-			} catch (Exception e) {
-				Trace.trace(Trace.WARNING, "Error downloading extension info 3", e);
+			while (running < MAX_THREADS && next < size) {
+				searches[next].start(next + 1);
+				next++;
+				running++;
+			}
+
+			if (remaining > 0) {
+				for (int i = 0; i < size; i++) {
+					if (!finished[i]) {
+						monitor.subTask(NLS.bind(Messages.discoverSearching, items[i].getUrl()));
+						break;
+					}
+				}
+				try {
+					Thread.sleep(POLL_INTERVAL);
+				} catch (InterruptedException e) {
+					// ignore
+				}
 			}
 		}
 
-		Extension[] ef = new Extension[list.size()];
-		list.toArray(ef);
+		Extension[] ef;
+		synchronized (list) {
+			ef = new Extension[list.size()];
+			list.toArray(ef);
+		}
 		monitor.done();
 		return ef;
 	}
 
+	private static String getHost(String url) {
+		try {
+			String host = new URI(url).getHost();
+			if (host != null)
+				return host;
+		} catch (URISyntaxException e) {
+			// ignore
+		}
+		return url;
+	}
+
 	/**
 	 * Returns the service described by the given arguments.  Note that this is a helper class
 	 * that <b>immediately</b> ungets the service reference.  This results in a window where the
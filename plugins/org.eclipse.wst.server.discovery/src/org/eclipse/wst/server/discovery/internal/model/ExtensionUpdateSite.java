@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 IBM Corporation and others.
+ * Copyright (c) 2008, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,19 +11,19 @@
 package org.eclipse.wst.server.discovery.internal.model;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.*;
 
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.updatesite.metadata.UpdateSiteMetadataRepositoryFactory;
-import org.eclipse.equinox.p2.engine.IProfile;
-import org.eclipse.equinox.p2.engine.IProfileRegistry;
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.IRequirement;
 import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.equinox.p2.repository.IRepositoryManager;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.wst.server.discovery.internal.Activator;
 import org.eclipse.wst.server.discovery.internal.ExtensionUtility;
 import org.eclipse.wst.server.discovery.internal.Trace;
 import org.osgi.framework.BundleContext;
@@ -63,65 +63,95 @@ public class ExtensionUpdateSite {
 		return categories;
 	}
 
+	/**
+	 * Returns the server adapters that are available from this site.
+	 * <p>
+	 * http and https sites are cached on disk; if the site has not changed
+	 * since it was last loaded, the cached metadata is used.
+	 * </p>
+	 *
+	 * @param monitor a progress monitor
+	 * @return the server adapters on this site
+	 * @throws CoreException if the site could not be loaded
+	 */
 	public List<Extension> getExtensions(IProgressMonitor monitor) throws CoreException {
+		URI url2;
 		try {
-			UpdateSiteMetadataRepositoryFactory mrf = new UpdateSiteMetadataRepositoryFactory();
+			url2 = new URI(url);
+		} catch (URISyntaxException e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, e.getMessage(), e));
+		}
+
+		BundleContext bd = Activator.getDefault().getBundle().getBundleContext();
+		IProvisioningAgent agent = ExtensionUtility.getAgent(bd);
+
+		SiteMetadataCache cache = null;
+		SiteMetadataCache.Validators v = null;
+		if (SiteMetadataCache.isCacheable(url2)) {
+			cache = SiteMetadataCache.getInstance();
+			v = cache.revalidate(url2);
+			if (v != null && v.isNotModified()) {
+				IMetadataRepository repo = cache.load(agent, url2, monitor);
+				if (repo != null) {
+					Trace.trace(Trace.FINEST, "Using cached metadata for " + url);
+					List<Extension> list = new ArrayList<Extension>();
+					getServerAdapters(repo, url2, list, new HashSet<IInstallableUnit>(), monitor);
+					return list;
+				}
+			}
+		}
 
-			BundleContext bd = org.eclipse.wst.server.discovery.internal.Activator.getDefault().getBundle().getBundleContext();			
-			mrf.setAgent(ExtensionUtility.getAgent(bd));
-			
-			URI url2 = new URI(url);
+		try {
+			UpdateSiteMetadataRepositoryFactory mrf = new UpdateSiteMetadataRepositoryFactory();
+			mrf.setAgent(agent);
 			IMetadataRepository repo = mrf.load(url2, IRepositoryManager.REPOSITORIES_ALL, monitor);
-			//Query query = new InstallableUnitQuery("org.eclipse.wst.server.core.serverAdapter");
-			//Query query = CompoundQuery.createCompoundQuery(new Query[] {new
-			//		IUPropertyQuery(IInstallableUnit.PROP_TYPE_CATEGORY, Boolean.toString(true)),
-			//		new IUPropertyQuery(IInstallableUnit.PROP_NAME,"org.eclipse.wst.server.core.serverAdapter")}, true);
-			
-//---->>>>
-			IProfileRegistry profileRegistry = (IProfileRegistry) ExtensionUtility.getService(bd, IProfileRegistry.class.getName());
-			IProfile[] profiles = profileRegistry.getProfiles();
-			IProfile profile = profileRegistry.getProfile(IProfileRegistry.SELF);
-			
-			//IQuery<IInstallableUnit> query = QueryUtil.createIUAnyQuery();
-			//			IQuery<IInstallableUnit> query = QueryUtil.createIUQuery("org.eclipse.wst.server.core.serverAdapter");
-			//Query query = new InstallableUnitQuery("org.eclipse.wst.server.core.serverAdapter");
-			//List<String> list2 = new ArrayList();
-			//Query query = new ExtensionInstallableUnitQuery(list2);
-			//IQueryResult<IInstallableUnit> collector = profile.query(query, monitor);
-//<-------	
-			
-			//IQuery<IInstallableUnit> query = QueryUtil.createIUCategoryQuery();
-			IQuery<IInstallableUnit> query = QueryUtil.createMatchQuery("id ~=/*org.eclipse.wst.server.core.serverAdapter/");
-
-			IQueryResult<IInstallableUnit> collector = repo.query(query, monitor);
-			
+
 			List<Extension> list = new ArrayList<Extension>();
-			for (IInstallableUnit iu: collector.toUnmodifiableSet()) {
-				Collection<IRequirement> req = iu.getRequirements();
-				if (req != null) {
-					for (IRequirement requirement : req) {
-						
-						//IMatchExpression<IInstallableUnit> matches = requirement.getMatches();
-						//query = QueryUtil.createQuery(matches);
-						IMatchExpression<IInstallableUnit> matches = requirement.getMatches();
-						query = new ExpressionMatchQuery<IInstallableUnit>(IInstallableUnit.class, matches);
-
-					    IQueryResult<IInstallableUnit> collector2 = repo.query(query, monitor);						
-						Iterator<IInstallableUnit> iter2 = collector2.iterator();
-						while (iter2.hasNext()) {
-							IInstallableUnit iu2 = iter2.next();
-							if (!list.contains(iu2)) {
-								Extension ext = new Extension(iu2, url2);
-								list.add(ext);
-							}
-						}
+			Set<IInstallableUnit> units = new HashSet<IInstallableUnit>();
+			getServerAdapters(repo, url2, list, units, monitor);
+
+			if (cache != null && !monitor.isCanceled())
+				cache.store(agent, url2, v, units);
+			return list;
+		} catch (OperationCanceledException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, e.getMessage(), e));
+		}
+	}
+
+	/**
+	 * Finds the server adapters in a repository.
+	 *
+	 * @param repo a repository
+	 * @param uri the site that server adapters are installed from
+	 * @param list the list to add server adapters to
+	 * @param units the set to add every unit that was used to
+	 * @param monitor a progress monitor
+	 */
+	private static void getServerAdapters(IMetadataRepository repo, URI uri, List<Extension> list, Set<IInstallableUnit> units, IProgressMonitor monitor) {
+		IQuery<IInstallableUnit> query = QueryUtil.createMatchQuery("id ~=/*org.eclipse.wst.server.core.serverAdapter/");
+		IQueryResult<IInstallableUnit> collector = repo.query(query, monitor);
+
+		Set<IInstallableUnit> found = new HashSet<IInstallableUnit>();
+		for (IInstallableUnit iu: collector.toUnmodifiableSet()) {
+			units.add(iu);
+			Collection<IRequirement> req = iu.getRequirements();
+			if (req != null) {
+				for (IRequirement requirement : req) {
+					IMatchExpression<IInstallableUnit> matches = requirement.getMatches();
+					query = new ExpressionMatchQuery<IInstallableUnit>(IInstallableUnit.class, matches);
+
+					IQueryResult<IInstallableUnit> collector2 = repo.query(query, monitor);
+					Iterator<IInstallableUnit> iter2 = collector2.iterator();
+					while (iter2.hasNext()) {
+						IInstallableUnit iu2 = iter2.next();
+						units.add(iu2);
+						if (found.add(iu2))
+							list.add(new Extension(iu2, uri));
 					}
 				}
 			}
-			return list;
-		} catch (Exception e) {
-			Trace.trace(Trace.WARNING, "Error getting update info", e);
-			return new ArrayList<Extension>(0);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.discovery.internal.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.internal.p2.metadata.repository.SimpleMetadataRepositoryFactory;
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.repository.IRepositoryManager;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.wst.server.discovery.internal.Activator;
+import org.eclipse.wst.server.discovery.internal.Trace;
+/**
+ * An on-disk cache of the server adapter metadata of extension update sites.
+ * <p>
+ * The installable units that were found on each site are kept in a small
+ * local repository in the plug-in's state location, along with the ETag and
+ * Last-Modified validators of the site's site.xml. Before a site is loaded
+ * again, a conditional HEAD request is sent for its site.xml, and if the site
+ * has not changed the local repository is used instead of downloading and
+ * parsing the site. Only http and https sites are cached.
+ * </p>
+ */
+public class SiteMetadataCache {
+	private static final String CACHE_FOLDER = "siteCache";
+	private static final String INDEX_FILE = "index.properties";
+	private static final String SITE_FILE = "site.xml";
+
+	private static final String ETAG = ".etag";
+	private static final String LAST_MODIFIED = ".lastModified";
+	private static final String URL = ".url";
+
+	private static final int TIMEOUT = 15000;
+
+	/**
+	 * The validators returned by a site.
+	 */
+	public static class Validators {
+		protected String etag;
+		protected String lastModified;
+		protected boolean notModified;
+
+		/**
+		 * Returns true if the site has not changed since it was cached.
+		 *
+		 * @return true if the cached metadata is current
+		 */
+		public boolean isNotModified() {
+			return notModified;
+		}
+	}
+
+	private static SiteMetadataCache instance;
+
+	private File folder;
+
+	// site key -> validators; guarded by this
+	private Properties index;
+
+	private SiteMetadataCache(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Returns the cache.
+	 *
+	 * @return the cache
+	 */
+	public static synchronized SiteMetadataCache getInstance() {
+		if (instance == null)
+			instance = new SiteMetadataCache(Activator.getDefault().getStateLocation().append(CACHE_FOLDER).toFile());
+		return instance;
+	}
+
+	/**
+	 * Returns true if the given site can be cached.
+	 *
+	 * @param uri a site
+	 * @return true if the site can be cached
+	 */
+	public static boolean isCacheable(URI uri) {
+		String scheme = uri.getScheme();
+		return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+	}
+
+	/**
+	 * Asks the site whether it has changed since it was cached, and returns
+	 * its current validators. Returns <code>null</code> if the site did not
+	 * answer, in which case it should be loaded normally.
+	 *
+	 * @param uri a site
+	 * @return the site's validators, or <code>null</code>
+	 */
+	public Validators revalidate(URI uri) {
+		String key = getKey(uri);
+		String etag;
+		String lastModified;
+		synchronized (this) {
+			Properties p = getIndex();
+			if (!uri.toString().equals(p.getProperty(key + URL))) {
+				etag = null;
+				lastModified = null;
+			} else {
+				etag = p.getProperty(key + ETAG);
+				lastModified = p.getProperty(key + LAST_MODIFIED);
+			}
+		}
+
+		HttpURLConnection conn = null;
+		try {
+			URLConnection conn2 = getSiteFile(uri).toURL().openConnection();
+			if (!(conn2 instanceof HttpURLConnection))
+				return null;
+			conn = (HttpURLConnection) conn2;
+			conn.setRequestMethod("HEAD");
+			conn.setConnectTimeout(TIMEOUT);
+			conn.setReadTimeout(TIMEOUT);
+			conn.setUseCaches(false);
+			if (etag != null)
+				conn.setRequestProperty("If-None-Match", etag);
+			if (lastModified != null)
+				conn.setRequestProperty("If-Modified-Since", lastModified);
+
+			int code = conn.getResponseCode();
+			Validators v = new Validators();
+			if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				v.etag = etag;
+				v.lastModified = lastModified;
+				v.notModified = getRepositoryFolder(key).exists();
+				return v;
+			}
+			if (code != HttpURLConnection.HTTP_OK)
+				return null;
+
+			v.etag = conn.getHeaderField("ETag");
+			v.lastModified = conn.getHeaderField("Last-Modified");
+			return v;
+		} catch (Exception e) {
+			Trace.trace(Trace.FINEST, "Could not revalidate " + uri, e);
+			return null;
+		} finally {
+			if (conn != null)
+				conn.disconnect();
+		}
+	}
+
+	/**
+	 * Loads the cached metadata of the given site.
+	 *
+	 * @param agent a provisioning agent
+	 * @param uri a site
+	 * @param monitor a progress monitor
+	 * @return the cached metadata, or <code>null</code> if it could not be loaded
+	 */
+	public IMetadataRepository load(IProvisioningAgent agent, URI uri, IProgressMonitor monitor) {
+		File dir = getRepositoryFolder(getKey(uri));
+		if (!dir.exists())
+			return null;
+
+		try {
+			SimpleMetadataRepositoryFactory factory = new SimpleMetadataRepositoryFactory();
+			factory.setAgent(agent);
+			return factory.load(dir.toURI(), IRepositoryManager.REPOSITORIES_ALL, monitor);
+		} catch (Exception e) {
+			Trace.trace(Trace.WARNING, "Could not load cached metadata for " + uri, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the cached metadata of the given site. Sites that returned no
+	 * validators are not cached, since they could never be revalidated.
+	 *
+	 * @param agent a provisioning agent
+	 * @param uri a site
+	 * @param v the site's validators
+	 * @param units the installable units to cache
+	 */
+	public void store(IProvisioningAgent agent, URI uri, Validators v, Collection<IInstallableUnit> units) {
+		String key = getKey(uri);
+		synchronized (this) {
+			Properties p = getIndex();
+			p.remove(key + URL);
+			p.remove(key + ETAG);
+			p.remove(key + LAST_MODIFIED);
+			File dir = getRepositoryFolder(key);
+			delete(dir);
+
+			if (v == null || (v.etag == null && v.lastModified == null)) {
+				saveIndex();
+				return;
+			}
+
+			try {
+				SimpleMetadataRepositoryFactory factory = new SimpleMetadataRepositoryFactory();
+				factory.setAgent(agent);
+				IMetadataRepository repo = factory.create(dir.toURI(), uri.toString(), IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+				repo.addInstallableUnits(units);
+			} catch (Exception e) {
+				Trace.trace(Trace.WARNING, "Could not cache metadata for " + uri, e);
+				delete(dir);
+				saveIndex();
+				return;
+			}
+
+			p.setProperty(key + URL, uri.toString());
+			if (v.etag != null)
+				p.setProperty(key + ETAG, v.etag);
+			if (v.lastModified != null)
+				p.setProperty(key + LAST_MODIFIED, v.lastModified);
+			saveIndex();
+		}
+	}
+
+	private static URI getSiteFile(URI uri) {
+		String s = uri.toString();
+		if (s.endsWith(".xml"))
+			return uri;
+		if (!s.endsWith("/"))
+			s += "/";
+		return URI.create(s + SITE_FILE);
+	}
+
+	private static String getKey(URI uri) {
+		return Integer.toHexString(uri.toString().hashCode());
+	}
+
+	private File getRepositoryFolder(String key) {
+		return new File(folder, key);
+	}
+
+	private Properties getIndex() {
+		if (index != null)
+			return index;
+
+		index = new Properties();
+		File file = new File(folder, INDEX_FILE);
+		if (!file.exists())
+			return index;
+
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			index.load(in);
+		} catch (IOException e) {
+			Trace.trace(Trace.WARNING, "Could not load site cache index", e);
+			index.clear();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		return index;
+	}
+
+	private void saveIndex() {
+		File file = new File(folder, INDEX_FILE);
+		File temp = new File(folder, INDEX_FILE + ".tmp");
+		OutputStream out = null;
+		try {
+			folder.mkdirs();
+			out = new FileOutputStream(temp);
+			index.store(out, null);
+			out.close();
+			out = null;
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file))
+					Trace.trace(Trace.WARNING, "Could not save site cache index");
+			}
+		} catch (IOException e) {
+			Trace.trace(Trace.WARNING, "Could not save site cache index", e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+}
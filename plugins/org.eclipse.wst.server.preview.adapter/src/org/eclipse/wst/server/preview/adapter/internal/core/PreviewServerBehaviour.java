@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,13 @@
  *******************************************************************************/
 package org.eclipse.wst.server.preview.adapter.internal.core;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -27,6 +32,7 @@ import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.ServerPort;
+import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.IModuleResourceDelta;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
@@ -91,6 +97,32 @@ public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 			throw new CoreException(new Status(IStatus.ERROR, PreviewPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorPortInUse, new String[] {port + "", getServer().getName()}), null));
 		
 		// generate preview config file
+		writeConfig(port);
+		
+		setServerRestartState(false);
+		setServerState(IServer.STATE_STARTING);
+		setMode(launchMode);
+		
+		// ping server to check for startup
+		try {
+			String url = "http://localhost";
+			if (port != 80)
+				url += ":" + port;
+			ping = new PingThread(getServer(), url, this);
+		} catch (Exception e) {
+			Trace.trace(Trace.SEVERE, "Can't ping for Tomcat startup.");
+		}
+	}
+
+	/**
+	 * Writes the preview server configuration file. The preview server checks
+	 * this file while it is running, and adds, removes, or redeploys
+	 * modules to match it.
+	 * 
+	 * @param port the server port
+	 * @throws CoreException if the file could not be written
+	 */
+	protected synchronized void writeConfig(int port) throws CoreException {
 		XMLMemento memento = XMLMemento.createWriteRoot("server");
 		memento.putInteger("port", port);
 		
@@ -105,28 +137,36 @@ public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 					mod.putString("context", staticWeb.getContextRoot());
 				mod.putString("type", "static");
 			}
-			mod.putString("path", getModulePublishDirectory(module).toPortableString());
+			IPath[] paths = getModuleServeDirectories(module);
+			mod.putString("path", paths[0].toPortableString());
+			for (int i = 1; i < paths.length; i++)
+				mod.createChild("root").putString("path", paths[i].toPortableString());
 		}
 		try {
-			memento.saveToFile(getTempDirectory().append("preview.xml").toOSString());
+			// replace the file in one step, so the running server never reads a partial config
+			File file = getTempDirectory().append("preview.xml").toFile();
+			File temp = getTempDirectory().append("preview.xml.tmp").toFile();
+			memento.saveToFile(temp.getAbsolutePath());
+			if (!temp.renameTo(file)) {
+				// on some platforms an existing file can't be replaced
+				file.delete();
+				if (!temp.renameTo(file))
+					throw new IOException("Could not rename " + temp + " to " + file);
+			}
 		} catch (IOException e) {
 			Trace.trace(Trace.SEVERE, "Could not write preview config", e);
 			throw new CoreException(new Status(IStatus.ERROR, PreviewPlugin.PLUGIN_ID, 0, "Could not write preview configuration", null));
 		}
-		
-		setServerRestartState(false);
-		setServerState(IServer.STATE_STARTING);
-		setMode(launchMode);
-		
-		// ping server to check for startup
-		try {
-			String url = "http://localhost";
-			if (port != 80)
-				url += ":" + port;
-			ping = new PingThread(getServer(), url, this);
-		} catch (Exception e) {
-			Trace.trace(Trace.SEVERE, "Can't ping for Tomcat startup.");
-		}
+	}
+
+	/*
+	 * Updates the configuration of a running server after publishing, so that
+	 * module changes take effect without a restart.
+	 */
+	protected void publishFinish(IProgressMonitor monitor) throws CoreException {
+		int state = getServer().getServerState();
+		if (state == IServer.STATE_STARTED || state == IServer.STATE_STARTING)
+			writeConfig(getPreviewServer().getServerPorts()[0].getPort());
 	}
 
 	protected void addProcessListener(final IProcess newProcess) {
@@ -163,9 +203,16 @@ public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 	 */
 	protected void publishModule(int kind, int deltaKind, IModule[] moduleTree, IProgressMonitor monitor) throws CoreException {
 		IModule module = moduleTree[moduleTree.length - 1];
-		if (isSingleRootStructure(module))
+		// static web modules are served from the workspace when possible
+		if (deltaKind != ServerBehaviourDelegate.REMOVED && getModuleRoots(module) != null) {
+			File temp = getTempDirectory().append(module.getName()).toFile();
+			if (temp.exists())
+				throwException(PublishUtil.deleteDirectory(temp, monitor));
+			setModulePublishState(moduleTree, IServer.PUBLISH_STATE_NONE);
 			return;
+		}
 		
+		// always the temp directory, never the workspace folders the module is served from
 		IPath to = getModulePublishDirectory(module);
 		
 		if (kind == IServer.PUBLISH_CLEAN || deltaKind == ServerBehaviourDelegate.REMOVED) {
@@ -260,21 +307,92 @@ public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	/**
-	 * Returns the module's publish path.
+	 * Returns the workspace folders that a static web module can be served
+	 * from in place, without publishing, or <code>null</code> if it must be
+	 * copied. Each file in the module must be at the same relative path in
+	 * one of the folders, and must not be hidden by a file in an earlier
+	 * folder.
 	 * 
 	 * @param module a module
-	 * @return the publish directory for the module
+	 * @return the locations of the folders, or <code>null</code>
 	 */
-	protected IPath getModulePublishDirectory(IModule module) {
-		if (isSingleRootStructure(module)) {
-			IStaticWeb webModule = (IStaticWeb) module.loadAdapter(IStaticWeb.class, null);
-			if (webModule != null) {
-				//IContainer[] moduleFolder = webModule.getResourceFolders();
-				//if (moduleFolder != null && moduleFolder.length > 0)
-				//	return moduleFolder[0].getLocation();							
+	protected IPath[] getModuleRoots(IModule module) {
+		if (!"wst.web".equals(module.getModuleType().getId()))
+			return null;
+		
+		IModuleResource[] members = getResources(new IModule[] { module });
+		List<IContainer> roots = new ArrayList<IContainer>(2);
+		if (members == null || !addModuleRoots(members, roots) || roots.isEmpty())
+			return null;
+		
+		IPath[] paths = new IPath[roots.size()];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = roots.get(i).getLocation();
+			if (paths[i] == null)
+				return null;
+		}
+		return paths;
+	}
+
+	private static boolean addModuleRoots(IModuleResource[] resources, List<IContainer> roots) {
+		for (IModuleResource resource : resources) {
+			if (resource instanceof IModuleFolder) {
+				if (!addModuleRoots(((IModuleFolder) resource).members(), roots))
+					return false;
+				continue;
+			}
+			
+			IFile file = (IFile) resource.getAdapter(IFile.class);
+			if (file == null)
+				return false;
+			
+			IPath path = resource.getModuleRelativePath().append(resource.getName());
+			int count = path.segmentCount();
+			IPath fullPath = file.getFullPath();
+			if (fullPath.segmentCount() <= count || !fullPath.removeFirstSegments(fullPath.segmentCount() - count).equals(path))
+				return false;
+			
+			IContainer root = file.getParent();
+			for (int i = 1; i < count; i++)
+				root = root.getParent();
+			
+			int index = roots.indexOf(root);
+			if (index < 0) {
+				index = roots.size();
+				roots.add(root);
+			}
+			for (int i = 0; i < index; i++) {
+				if (roots.get(i).getFile(path).exists())
+					return false;
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * Returns the folders that the preview server serves the module from:
+	 * the workspace folders if the module can be served in place, and
+	 * otherwise the module's publish directory.
+	 * 
+	 * @param module a module
+	 * @return the folders to serve the module from, in overlay order
+	 */
+	protected IPath[] getModuleServeDirectories(IModule module) {
+		IPath[] roots = getModuleRoots(module);
+		if (roots != null)
+			return roots;
 		
+		return new IPath[] { getModulePublishDirectory(module) };
+	}
+
+	/**
+	 * Returns the module's publish path. This is always a directory below
+	 * the server's temp directory, so it is safe to delete.
+	 * 
+	 * @param module a module
+	 * @return the publish directory for the module
+	 */
+	protected IPath getModulePublishDirectory(IModule module) {
 		return getTempDirectory().append(module.getName());
 	}
 
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2026 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.preview.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+/**
+ * A bounded in-memory cache of the content of static files, shared by all
+ * contexts of the preview server.
+ * <p>
+ * Entries are checked against the file's timestamp and size each time they
+ * are used, and are read again if the file has changed. When the total size
+ * of the cache would exceed its maximum, the least recently used entries are
+ * discarded.
+ * </p>
+ */
+public class ContentCache {
+	/**
+	 * The cached content of a file.
+	 */
+	public static class Content {
+		protected File file;
+		protected long lastModified;
+		protected long length;
+		protected byte[] bytes;
+		protected byte[] gzipped;
+
+		protected Content(File file, long lastModified, long length, byte[] bytes) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.bytes = bytes;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		protected int getSize() {
+			return bytes.length + (gzipped == null ? 0 : gzipped.length);
+		}
+	}
+
+	private int maxSize;
+	private int maxFileSize;
+
+	// file -> content, in access order; guarded by this
+	private Map<File, Content> map = new LinkedHashMap<File, Content>(32, 0.75f, true);
+	private long size;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxSize the maximum total size of the cache, in bytes
+	 * @param maxFileSize the maximum size of a single cached file, in bytes
+	 */
+	public ContentCache(int maxSize, int maxFileSize) {
+		this.maxSize = maxSize;
+		this.maxFileSize = Math.min(maxSize, maxFileSize);
+	}
+
+	/**
+	 * Returns the content of the given file, reading it if it is not cached or
+	 * has changed since it was cached. Returns <code>null</code> if the file is
+	 * too large to be cached, or changed while it was being read.
+	 *
+	 * @param file a file
+	 * @return the content, or <code>null</code>
+	 * @throws IOException if the file could not be read
+	 */
+	public Content get(File file) throws IOException {
+		long lastModified = file.lastModified();
+		long length = file.length();
+		synchronized (this) {
+			Content content = map.get(file);
+			if (content != null) {
+				if (content.lastModified == lastModified && content.length == length)
+					return content;
+				remove(file);
+			}
+		}
+
+		if (length > maxFileSize)
+			return null;
+
+		byte[] bytes = read(file, (int) length);
+		if (bytes == null || file.lastModified() != lastModified || file.length() != length)
+			return null;
+
+		Content content = new Content(file, lastModified, length, bytes);
+		synchronized (this) {
+			remove(file);
+			map.put(file, content);
+			size += content.getSize();
+			trim();
+		}
+		return content;
+	}
+
+	/**
+	 * Returns the gzipped bytes of the given content, compressing and caching
+	 * them the first time they are needed.
+	 *
+	 * @param content cached content
+	 * @return the gzipped bytes
+	 * @throws IOException if the content could not be compressed
+	 */
+	public byte[] getGzipped(Content content) throws IOException {
+		synchronized (this) {
+			if (content.gzipped != null)
+				return content.gzipped;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.bytes.length / 3 + 64);
+		GZIPOutputStream gout = new GZIPOutputStream(out);
+		gout.write(content.bytes);
+		gout.close();
+		byte[] gzipped = out.toByteArray();
+
+		synchronized (this) {
+			if (content.gzipped == null) {
+				content.gzipped = gzipped;
+				if (map.get(content.file) == content) {
+					size += gzipped.length;
+					trim();
+				}
+			}
+			return content.gzipped;
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public synchronized void clear() {
+		map.clear();
+		size = 0;
+	}
+
+	private void remove(File file) {
+		Content content = map.remove(file);
+		if (content != null)
+			size -= content.getSize();
+	}
+
+	private void trim() {
+		Iterator<Content> iterator = map.values().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			Content content = iterator.next();
+			iterator.remove();
+			size -= content.getSize();
+		}
+	}
+
+	private static byte[] read(File file, int length) throws IOException {
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				int n = in.read(bytes, offset, length - offset);
+				if (n < 0) // truncated while reading
+					return null;
+				offset += n;
+			}
+			return bytes;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+}
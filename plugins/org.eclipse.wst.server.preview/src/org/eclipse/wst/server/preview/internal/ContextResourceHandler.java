@@ -1,32 +1,312 @@
 /*******************************************************************************
- * Copyright (c) 2008 IBM Corporation and others.
+ * Copyright (c) 2008, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     IBM Corporation - Initial API and implementation
  *******************************************************************************/
 package org.eclipse.wst.server.preview.internal;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.util.resource.Resource;
-
+/**
+ * Serves the static files of a module.
+ * <p>
+ * Files are served from a shared in-memory cache when one is set, with strong
+ * ETags and conditional GET support. If the client accepts it, a precompressed
+ * sibling file (e.g. <code>app.js.br</code> or <code>app.js.gz</code>) is sent
+ * in place of the file, or else compressible content is gzipped on the fly.
+ * Directories, and requests other than GET and HEAD, are left to Jetty's
+ * ResourceHandler.
+ * </p>
+ */
 public class ContextResourceHandler extends ResourceHandler {
+	// smallest file that is worth gzipping
+	private static final int MIN_GZIP_LENGTH = 256;
+
+	private static final String[] COMPRESSIBLE_TYPES = new String[] {
+		"application/javascript", "application/x-javascript", "application/json",
+		"application/xml", "application/xhtml+xml", "image/svg+xml"
+	};
+
 	protected String context;
+	protected ContentCache cache;
+	protected boolean precompressed;
+	protected boolean gzip;
 
+	/**
+	 * Sets the context that request paths must start with. If the handler is
+	 * used within a ContextHandler, which has already removed the context from
+	 * the path, the context should not be set.
+	 *
+	 * @param context a context, or <code>null</code>
+	 */
 	public void setContext(String context) {
 		this.context = context;
 	}
 
+	/**
+	 * Sets the cache used to serve file content.
+	 *
+	 * @param cache a content cache, or <code>null</code> to always read files
+	 *    from disk
+	 */
+	public void setCache(ContentCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets whether precompressed .br and .gz siblings of files are served to
+	 * clients that accept them.
+	 *
+	 * @param precompressed <code>true</code> to serve precompressed files
+	 */
+	public void setPrecompressed(boolean precompressed) {
+		this.precompressed = precompressed;
+	}
+
+	/**
+	 * Sets whether compressible files are gzipped on the fly. Only files that
+	 * fit in the cache are compressed.
+	 *
+	 * @param gzip <code>true</code> to gzip content
+	 */
+	public void setGzip(boolean gzip) {
+		this.gzip = gzip;
+	}
+
 	public Resource getResource(String path) throws MalformedURLException {
+		if (context == null)
+			return super.getResource(path);
+
 		if (path == null || !path.startsWith(context + "/"))
 			return null;
-		
+
 		path = path.substring(context.length());
 		return super.getResource(path);
 	}
+
+	public void handle(String target, Request baseRequest, HttpServletRequest request,
+			HttpServletResponse response) throws IOException, ServletException {
+		if (baseRequest.isHandled())
+			return;
+
+		String method = request.getMethod();
+		boolean head = "HEAD".equals(method);
+		if ((!head && !"GET".equals(method)) || target.endsWith("/")) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+
+		Resource resource = getResource(request);
+		File file = resource == null ? null : resource.getFile();
+		if (file == null || !file.isFile()) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+
+		baseRequest.setHandled(true);
+		String contentType = getMimeTypes().getMimeByExtension(file.getName());
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		boolean compressible = gzip && isCompressible(contentType);
+
+		// pick the representation to send
+		File sent = file;
+		String encoding = null;
+		boolean vary = compressible;
+		if (precompressed) {
+			File br = getSibling(file, ".br");
+			File gz = getSibling(file, ".gz");
+			vary |= br != null || gz != null;
+			if (br != null && accepts(acceptEncoding, "br")) {
+				sent = br;
+				encoding = "br";
+			} else if (gz != null && accepts(acceptEncoding, "gzip")) {
+				sent = gz;
+				encoding = "gzip";
+			}
+		}
+
+		ContentCache.Content content = null;
+		if (cache != null)
+			content = cache.get(sent);
+
+		long lastModified = content != null ? content.getLastModified() : sent.lastModified();
+		byte[] bytes = content != null ? content.getBytes() : null;
+		long length = bytes != null ? bytes.length : sent.length();
+		String etag = getETag(lastModified, length);
+		if (encoding != null)
+			etag = etag + "-" + encoding;
+
+		if (encoding == null && compressible && content != null && bytes.length >= MIN_GZIP_LENGTH
+				&& accepts(acceptEncoding, "gzip")) {
+			byte[] gzipped = cache.getGzipped(content);
+			if (gzipped.length < bytes.length) {
+				bytes = gzipped;
+				length = gzipped.length;
+				encoding = "gzip";
+				etag = etag + "-gzip";
+			}
+		}
+		etag = "\"" + etag + "\"";
+
+		// conditional requests
+		boolean notModified;
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null)
+			notModified = isEtags() && matches(ifNoneMatch, etag);
+		else
+			notModified = isNotModifiedSince(request, lastModified);
+
+		if (vary)
+			response.setHeader("Vary", "Accept-Encoding");
+		if (isEtags())
+			response.setHeader("ETag", etag);
+		if (getCacheControl() != null)
+			response.setHeader("Cache-Control", getCacheControl());
+		response.setDateHeader("Last-Modified", lastModified);
+
+		if (notModified) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		if (contentType != null)
+			response.setContentType(contentType);
+		if (encoding != null)
+			response.setHeader("Content-Encoding", encoding);
+		if (length < Integer.MAX_VALUE)
+			response.setContentLength((int) length);
+		else
+			response.setHeader("Content-Length", Long.toString(length));
+
+		if (head)
+			return;
+
+		OutputStream out = response.getOutputStream();
+		if (bytes != null)
+			out.write(bytes);
+		else
+			copy(sent, out);
+	}
+
+	/**
+	 * Returns the given sibling of a file if it exists and is at least as new
+	 * as the file, and <code>null</code> otherwise.
+	 */
+	private static File getSibling(File file, String extension) {
+		File sibling = new File(file.getPath() + extension);
+		if (sibling.isFile() && sibling.lastModified() >= file.lastModified())
+			return sibling;
+		return null;
+	}
+
+	private static String getETag(long lastModified, long length) {
+		return Long.toHexString(lastModified) + Long.toHexString(length);
+	}
+
+	/**
+	 * Returns true if the Accept-Encoding header accepts the given encoding.
+	 */
+	protected static boolean accepts(String acceptEncoding, String encoding) {
+		if (acceptEncoding == null)
+			return false;
+
+		String[] codings = acceptEncoding.split(",");
+		for (String coding : codings) {
+			String value = coding;
+			String q = null;
+			int ind = coding.indexOf(';');
+			if (ind >= 0) {
+				value = coding.substring(0, ind);
+				q = coding.substring(ind + 1).trim();
+			}
+			value = value.trim();
+			if (encoding.equalsIgnoreCase(value) || "*".equals(value)) {
+				if (q == null || !q.startsWith("q="))
+					return true;
+				try {
+					return Float.parseFloat(q.substring(2).trim()) > 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the If-None-Match header matches the given entity tag.
+	 */
+	protected static boolean matches(String ifNoneMatch, String etag) {
+		String[] tags = ifNoneMatch.split(",");
+		for (String tag : tags) {
+			tag = tag.trim();
+			if ("*".equals(tag) || etag.equals(tag) || ("W/" + etag).equals(tag))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isNotModifiedSince(HttpServletRequest request, long lastModified) {
+		long ifModifiedSince;
+		try {
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	private static boolean isCompressible(String contentType) {
+		if (contentType == null)
+			return false;
+
+		int ind = contentType.indexOf(';');
+		if (ind >= 0)
+			contentType = contentType.substring(0, ind).trim();
+		if (contentType.startsWith("text/") || contentType.endsWith("+xml"))
+			return true;
+		for (String type : COMPRESSIBLE_TYPES) {
+			if (type.equals(contentType))
+				return true;
+		}
+		return false;
+	}
+
+	private static void copy(File file, OutputStream out) throws IOException {
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			byte[] buf = new byte[8192];
+			int n = in.read(buf);
+			while (n >= 0) {
+				out.write(buf, 0, n);
+				n = in.read(buf);
+			}
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,6 +9,8 @@
  *     IBM Corporation - Initial API and implementation
  *******************************************************************************/
 package org.eclipse.wst.server.preview.internal;
+
+import java.util.Arrays;
 /**
  * 
  */
@@ -17,12 +19,35 @@ public class Module {
 	private boolean isStatic;
 	private String context;
 	private String projectPath;
+	private String[] paths;
+	private String stamp;
 
 	public Module(String name, boolean isStatic, String context, String projectPath) {
+		this(name, isStatic, context, projectPath, null);
+	}
+
+	public Module(String name, boolean isStatic, String context, String projectPath, String stamp) {
+		this(name, isStatic, context, new String[] { projectPath }, stamp);
+	}
+
+	/**
+	 * Creates a module that is served from one or more folders. Files in
+	 * earlier folders take precedence over files at the same path in later
+	 * ones.
+	 * 
+	 * @param name the module name
+	 * @param isStatic <code>true</code> if the module is a static web module
+	 * @param context the context root
+	 * @param paths the folders that the module is served from
+	 * @param stamp the publish stamp, or <code>null</code>
+	 */
+	public Module(String name, boolean isStatic, String context, String[] paths, String stamp) {
 		this.name = name;
 		this.isStatic = isStatic;
 		this.context = context;
-		this.projectPath = projectPath;
+		this.projectPath = paths[0];
+		this.paths = paths;
+		this.stamp = stamp;
 	}
 
 	public String getName() {
@@ -40,4 +65,44 @@ public class Module {
 	public String getPath() {
 		return projectPath;
 	}
+
+	/**
+	 * Returns the folders that the module is served from. The first folder is
+	 * the module's path.
+	 * 
+	 * @return the folders
+	 */
+	public String[] getPaths() {
+		return paths;
+	}
+
+	/**
+	 * Returns the publish stamp of the module. The stamp changes when the
+	 * module has been published and needs to be redeployed.
+	 * 
+	 * @return the stamp, or <code>null</code> if the module doesn't have one
+	 */
+	public String getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given module can keep running in place
+	 * of this one, i.e. it has the same name, type, paths, and publish stamp.
+	 * 
+	 * @param module a module
+	 * @return <code>true</code> if the modules are deployed the same way, and
+	 *    <code>false</code> otherwise
+	 */
+	public boolean isSameDeployment(Module module) {
+		return isStatic == module.isStatic && equals(name, module.name)
+				&& equals(context, module.context) && Arrays.equals(paths, module.paths)
+				&& equals(stamp, module.stamp);
+	}
+
+	private static boolean equals(String a, String b) {
+		if (a == null)
+			return b == null;
+		return a.equals(b);
+	}
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,15 +10,50 @@
  *******************************************************************************/
 package org.eclipse.wst.server.preview.internal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.util.resource.ResourceCollection;
 import org.eclipse.jetty.webapp.WebAppContext;
-
+/**
+ * Starts the preview server.
+ * <p>
+ * Each module is deployed as a separate context in a ContextHandlerCollection.
+ * While the server is running, the config file is checked for changes and
+ * modules are added, removed, or redeployed (when their path or publish stamp
+ * changes) without restarting the server.
+ * </p>
+ */
 public class PreviewStarter {
+	// how often to check the config file for changes, in ms
+	private static final long WATCH_INTERVAL = 1000;
+
 	protected String configPath;
 	protected Server server;
+	protected ContextHandlerCollection contexts;
+	protected WTPDefaultHandler defaultHandler;
+	protected WTPErrorHandler errorHandler;
+	protected int port;
+	protected ServerConfig config;
+	protected ContentCache cache;
+
+	// context -> deployed module and its handler, guarded by this
+	protected Map<String, Module> modules = new HashMap<String, Module>();
+	protected Map<String, Handler> handlers = new HashMap<String, Handler>();
+
+	protected Thread watcher;
+	protected volatile boolean stopped;
 
 	public PreviewStarter(String configPath) {
 		this.configPath = configPath;
@@ -32,10 +67,15 @@ public class PreviewStarter {
 	protected void run() {
 		try {
 			System.setProperty("org.mortbay.log.class", "org.eclipse.wst.server.preview.internal.WTPLogger");
-			ServerConfig config = new ServerConfig(configPath);
-			System.out.println("Starting preview server on port " + config.getPort());
+			File configFile = new File(configPath);
+			byte[] content = readFile(configFile);
+			config = new ServerConfig(configPath);
+			port = config.getPort();
+			System.out.println("Starting preview server on port " + port);
 			System.out.println();
 			Module[] m = config.getModules();
+			if (m == null)
+				m = new Module[0];
 			int size = m.length;
 			if (size > 0) {
 				System.out.println("Modules:");
@@ -44,43 +84,204 @@ public class PreviewStarter {
 				System.out.println();
 			}
 			
-			server = new Server(config.getPort());
+			server = new Server(port);
 			server.setStopAtShutdown(true);
 			
-			WTPErrorHandler errorHandler = new WTPErrorHandler();
-			
-			HandlerList handlers = new HandlerList();
-			for (Module module : m) {
-				if (module.isStaticWeb()) {
-					ContextResourceHandler resourceHandler = new ContextResourceHandler();
-					resourceHandler.setResourceBase(module.getPath());
-					resourceHandler.setContext(module.getContext());
-					handlers.addHandler(resourceHandler);
-				} else {
-					WebAppContext wac = new WebAppContext();
-					wac.setContextPath(module.getContext());
-					wac.setWar(module.getPath());
-					wac.setErrorHandler(errorHandler);
-					handlers.addHandler(wac);
-				}
+			errorHandler = new WTPErrorHandler();
+			if (config.getCacheSize() > 0)
+				cache = new ContentCache(config.getCacheSize(), config.getMaxCachedFileSize());
+			contexts = new ContextHandlerCollection();
+			synchronized (this) {
+				for (Module module : m)
+					deploy(module);
 			}
 			
-			handlers.addHandler(new WTPDefaultHandler(config.getPort(), m));
-			server.setHandler(handlers);
+			defaultHandler = new WTPDefaultHandler(port, m);
+			HandlerList handlerList = new HandlerList();
+			handlerList.addHandler(contexts);
+			handlerList.addHandler(defaultHandler);
+			server.setHandler(handlerList);
 			
 			try {
 				server.start();
 			} catch (Exception e) {
 				e.printStackTrace();
+				return;
 			}
+			
+			startWatcher(configFile, content);
 		} catch (Throwable e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Creates the handler for a module and adds it to the server. If the server
+	 * is running, the handler is started.
+	 */
+	protected void deploy(Module module) throws Exception {
+		Handler handler;
+		if (module.isStaticWeb()) {
+			ContextResourceHandler resourceHandler = new ContextResourceHandler();
+			String[] paths = module.getPaths();
+			if (paths.length > 1)
+				resourceHandler.setBaseResource(new ResourceCollection(paths));
+			else
+				resourceHandler.setResourceBase(module.getPath());
+			resourceHandler.setCache(cache);
+			resourceHandler.setEtags(config.isETags());
+			resourceHandler.setPrecompressed(config.isPrecompressed());
+			resourceHandler.setGzip(config.isGzip());
+			ContextHandler contextHandler = new ContextHandler();
+			contextHandler.setContextPath(module.getContext());
+			contextHandler.setHandler(resourceHandler);
+			handler = contextHandler;
+		} else {
+			WebAppContext wac = new WebAppContext();
+			wac.setContextPath(module.getContext());
+			wac.setWar(module.getPath());
+			wac.setErrorHandler(errorHandler);
+			handler = wac;
+		}
+		
+		contexts.addHandler(handler);
+		if (contexts.isStarted() && !handler.isStarted())
+			handler.start();
+		contexts.mapContexts();
+		
+		modules.put(module.getContext(), module);
+		handlers.put(module.getContext(), handler);
+	}
+
+	/**
+	 * Stops the handler of the module with the given context and removes it
+	 * from the server.
+	 */
+	protected void undeploy(String context) throws Exception {
+		modules.remove(context);
+		Handler handler = handlers.remove(context);
+		if (handler == null)
+			return;
+		
+		contexts.removeHandler(handler);
+		contexts.mapContexts();
+		handler.stop();
+		handler.destroy();
+	}
+
+	/**
+	 * Reads the config file again, and deploys, undeploys or redeploys modules
+	 * to match it.
+	 */
+	protected synchronized void update() {
+		ServerConfig newConfig = new ServerConfig(configPath);
+		Module[] m = newConfig.getModules();
+		if (m == null)
+			return;
+		
+		if (newConfig.getPort() != port)
+			System.out.println("Port changed to " + newConfig.getPort() + ", restart the server to use it");
+		if (newConfig.getCacheSize() != config.getCacheSize() || newConfig.getMaxCachedFileSize() != config.getMaxCachedFileSize())
+			System.out.println("Resource cache size changed, restart the server to use it");
+		// other resource settings apply to modules deployed from now on
+		config = newConfig;
+		
+		Map<String, Module> newModules = new HashMap<String, Module>();
+		for (Module module : m)
+			newModules.put(module.getContext(), module);
+		
+		String[] deployed = modules.keySet().toArray(new String[modules.size()]);
+		for (String context : deployed) {
+			Module module = newModules.get(context);
+			if (module == null || !module.isSameDeployment(modules.get(context))) {
+				try {
+					System.out.println("Removing " + modules.get(context).getName() + " (" + context + ")");
+					undeploy(context);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		for (Module module : m) {
+			if (modules.containsKey(module.getContext()))
+				continue;
+			try {
+				System.out.println("Adding " + module.getName() + " (" + module.getContext() + ")");
+				deploy(module);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		
+		defaultHandler.setModules(m);
+	}
+
+	/**
+	 * Starts a daemon thread that checks the config file for changes. The
+	 * contents of the file are compared, since a file rewritten within the
+	 * timestamp resolution may keep the same time and length.
+	 */
+	protected void startWatcher(final File configFile, final byte[] content) {
+		watcher = new Thread("Preview Server Config Watcher") {
+			public void run() {
+				byte[] content2 = content;
+				while (!stopped) {
+					try {
+						Thread.sleep(WATCH_INTERVAL);
+					} catch (InterruptedException e) {
+						// ignore
+					}
+					if (stopped)
+						return;
+					
+					byte[] b = readFile(configFile);
+					if (b != null && !Arrays.equals(b, content2)) {
+						content2 = b;
+						update();
+					}
+				}
+			}
+		};
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Returns the contents of the given file, or <code>null</code> if it
+	 * can't be read.
+	 */
+	protected static byte[] readFile(File file) {
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buf = new byte[4096];
+			int n = in.read(buf);
+			while (n >= 0) {
+				out.write(buf, 0, n);
+				n = in.read(buf);
+			}
+			return out.toByteArray();
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
 	public void stop() {
 		try {
 			System.out.println("Stop!");
+			stopped = true;
+			if (watcher != null)
+				watcher.interrupt();
 			server.stop();
 		} catch (Exception e) {
 			e.printStackTrace();
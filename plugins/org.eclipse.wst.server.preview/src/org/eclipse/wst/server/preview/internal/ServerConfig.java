@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,13 @@ public class ServerConfig {
 	private Module[] modules;
 	private int port = 8080;
 
+	// static resource settings, from the optional <resources> element
+	private int cacheSize = 16 * 1024 * 1024;
+	private int maxCachedFileSize = 1024 * 1024;
+	private boolean etags = true;
+	private boolean precompressed = true;
+	private boolean gzip = true;
+
 	public ServerConfig(String configPath) {
 		this.configPath = configPath;
 		init();
@@ -35,6 +42,19 @@ public class ServerConfig {
 				if (prt != null)
 					port = prt.intValue();
 				
+				IMemento resources = memento.getChild("resources");
+				if (resources != null) {
+					Integer size = resources.getInteger("cacheSize");
+					if (size != null)
+						cacheSize = size.intValue();
+					size = resources.getInteger("maxCachedFileSize");
+					if (size != null)
+						maxCachedFileSize = size.intValue();
+					etags = getBoolean(resources, "etags", etags);
+					precompressed = getBoolean(resources, "precompressed", precompressed);
+					gzip = getBoolean(resources, "gzip", gzip);
+				}
+				
 				IMemento[] modules2 = memento.getChildren("module");
 				int size = modules2.length;
 				List<Module> list = new ArrayList<Module>(size);
@@ -45,7 +65,15 @@ public class ServerConfig {
 					String context = mod.getString("context");
 					if (context != null && !context.startsWith("/"))
 						context = "/" + context;
-					Module module = new Module(name, isStatic, context, path);
+					String stamp = mod.getString("stamp");
+					
+					// additional folders that static modules are served from
+					IMemento[] roots = mod.getChildren("root");
+					String[] paths = new String[roots.length + 1];
+					paths[0] = path;
+					for (int i = 0; i < roots.length; i++)
+						paths[i + 1] = roots[i].getString("path");
+					Module module = new Module(name, isStatic, context, paths, stamp);
 					list.add(module);
 				}
 				
@@ -57,6 +85,13 @@ public class ServerConfig {
 		}
 	}
 
+	private static boolean getBoolean(IMemento memento, String key, boolean defaultValue) {
+		String s = memento.getString(key);
+		if (s == null)
+			return defaultValue;
+		return "true".equalsIgnoreCase(s);
+	}
+
 	public int getPort() {
 		return port;
 	}
@@ -64,4 +99,35 @@ public class ServerConfig {
 	public Module[] getModules() {
 		return modules;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the maximum total size of the static resource cache, in bytes.
+	 * A size of 0 or less disables the cache.
+	 * 
+	 * @return the cache size
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Returns the maximum size of a single cached file, in bytes.
+	 * 
+	 * @return the maximum cached file size
+	 */
+	public int getMaxCachedFileSize() {
+		return maxCachedFileSize;
+	}
+
+	public boolean isETags() {
+		return etags;
+	}
+
+	public boolean isPrecompressed() {
+		return precompressed;
+	}
+
+	public boolean isGzip() {
+		return gzip;
+	}
+}
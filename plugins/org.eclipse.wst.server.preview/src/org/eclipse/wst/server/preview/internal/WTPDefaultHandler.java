@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008,2014 IBM Corporation and others.
+ * Copyright (c) 2008, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,13 +25,17 @@ import org.eclipse.jetty.util.StringUtil;
 
 public class WTPDefaultHandler extends AbstractHandler {
 	protected int port;
-	protected Module[] modules;
+	protected volatile Module[] modules;
 
 	public WTPDefaultHandler(int port, Module[] modules) {
 		this.port = port;
 		this.modules = modules;
 	}
 
+	public void setModules(Module[] modules) {
+		this.modules = modules;
+	}
+
 	public void handle(String target, Request baseRequest, HttpServletRequest request,
       HttpServletResponse response) throws IOException, ServletException {
 		if (response.isCommitted() || baseRequest.isHandled())
@@ -52,7 +56,8 @@ public class WTPDefaultHandler extends AbstractHandler {
 		writer.write("No context on this server matched or handled this request.<BR>");
 		writer.write("Contexts known to this server are: <ul>");
 		
-		for (Module module : modules) {
+		Module[] modules2 = modules;
+		for (Module module : modules2) {
 			writer.write("<li>");
 			writer.write(module.getName());
 			writer.write("(<a href=\"http://localhost:" + port + module.getContext() + "\">");
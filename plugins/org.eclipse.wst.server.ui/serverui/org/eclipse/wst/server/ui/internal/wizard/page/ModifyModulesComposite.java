@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2014 IBM Corporation and others.
+ * Copyright (c) 2003, 2026 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -284,8 +284,6 @@ public class ModifyModulesComposite extends Composite {
 		if (server == null)
 			return;
 		
-		System.setProperty("J2EEcache", "" + Math.random());
-		
 		// get currently deployed modules
 		IModule[] currentModules = server.getModules();
 		if ((currentModules != null) && (currentModules.length > 0)) {
@@ -406,8 +404,6 @@ public class ModifyModulesComposite extends Composite {
 			}
 		}
 		
-		System.setProperty("J2EEcache", "");
-		
 		updateTaskModel();
 	}
 